@@ -1,9 +1,14 @@
 package com.csg.airtel.aaa4j.application.listener;
 
 
+import com.csg.airtel.aaa4j.application.tracing.AccountingTracing;
 import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
 import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
+import com.csg.airtel.aaa4j.domain.produce.PendingAcks;
+import com.csg.airtel.aaa4j.domain.profiling.EventCost;
+import com.csg.airtel.aaa4j.domain.profiling.EventCostRecorder;
 import com.csg.airtel.aaa4j.domain.service.AccountingHandlerFactory;
+import com.csg.airtel.aaa4j.domain.service.HeavyHitterTracker;
 import io.smallrye.mutiny.Uni;
 import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -23,15 +28,27 @@ public class AccountingConsumer {
 
     final AccountProducer accountingProdEvent;
     final AccountingHandlerFactory accountingHandlerFactory;
+    final HeavyHitterTracker heavyHitterTracker;
+    final AccountingTracing accountingTracing;
+    final EventCostRecorder eventCostRecorder;
 
     @Inject
-    public AccountingConsumer(AccountProducer accountingProdEvent, AccountingHandlerFactory accountingHandlerFactory) {
+    public AccountingConsumer(AccountProducer accountingProdEvent, AccountingHandlerFactory accountingHandlerFactory,
+                              HeavyHitterTracker heavyHitterTracker, AccountingTracing accountingTracing,
+                              EventCostRecorder eventCostRecorder) {
         this.accountingProdEvent = accountingProdEvent;
         this.accountingHandlerFactory = accountingHandlerFactory;
+        this.heavyHitterTracker = heavyHitterTracker;
+        this.accountingTracing = accountingTracing;
+        this.eventCostRecorder = eventCostRecorder;
     }
 
     @Incoming("accounting-events")
     public Uni<Void> consumeAccountingEvent(Message<AccountingRequestDto> message) {
+        return accountingTracing.traceConsume(message, () -> process(message));
+    }
+
+    private Uni<Void> process(Message<AccountingRequestDto> message) {
         long startTime = System.currentTimeMillis();
         LOG.infof("Start consumeAccountingEvent process");
         AccountingRequestDto request = message.getPayload();
@@ -40,16 +57,58 @@ public class AccountingConsumer {
                     .ifPresent(metadata -> LOG.debugf("Partition: %d, Offset: %d",
                             metadata.getPartition(), metadata.getOffset()));
         }
+        heavyHitterTracker.onEvent(request);
+        if (heavyHitterTracker.shouldThrottle(request)) {
+            LOG.debugf("Throttled interim of hot user: %s, session: %s", request.username(), request.sessionId());
+            return Uni.createFrom().completionStage(message.ack());
+        }
+        PendingAcks pendingAcks = PendingAcks.open();
+        EventCost cost = EventCost.open();
         return accountingHandlerFactory.getHandler(request,request.eventId())
+                .onTermination().invoke(() -> eventCostRecorder.record(request, cost))
                 .onItem().transformToUni(v ->{
                     long duration = System.currentTimeMillis() - startTime;
                     LOG.infof("Complete consumeAccountingEvent process %s ms",duration);
-                  return  Uni.createFrom().completionStage(message.ack());
+                    if (pendingAcks == null) {
+                        return Uni.createFrom().completionStage(message.ack());
+                    }
+                    if (accountingProdEvent.isPipelined()) {
+                        ackWhenProduced(message, pendingAcks);
+                        return Uni.createFrom().voidItem();
+                    }
+                    // the handler's sends are acked already, wait for its queued group writes
+                    return Uni.createFrom().completionStage(pendingAcks.seal())
+                            .onItemOrFailure().transformToUni((ignored, throwable) -> throwable == null
+                                    ? Uni.createFrom().completionStage(message.ack())
+                                    : nackUnwritten(message, throwable));
                 })
                 .onFailure().recoverWithUni(e -> {
                     LOG.errorf(e, "Failed processing session: %s", request.sessionId());
+                    if (pendingAcks != null) {
+                        pendingAcks.seal();
+                    }
                     return Uni.createFrom().completionStage(message.nack(e));
                 });
     }
+
+    private static Uni<Void> nackUnwritten(Message<AccountingRequestDto> message, Throwable throwable) {
+        LOG.errorf(throwable, "Group write failed for session: %s", message.getPayload().sessionId());
+        return Uni.createFrom().completionStage(message.nack(throwable));
+    }
+
+    /**
+     * Pipelined mode: the next event is processed right away, this one is acked (and its
+     * offset becomes committable) only when every message produced for it was acked.
+     */
+    private void ackWhenProduced(Message<AccountingRequestDto> message, PendingAcks pendingAcks) {
+        pendingAcks.seal().whenComplete((v, throwable) -> {
+            if (throwable == null) {
+                message.ack();
+            } else {
+                LOG.errorf(throwable, "Produce failed for session: %s", message.getPayload().sessionId());
+                message.nack(throwable);
+            }
+        });
+    }
 }
 
@@ -1,20 +1,32 @@
 package com.csg.airtel.aaa4j.application.resources;
 
 import com.csg.airtel.aaa4j.domain.model.response.ApiResponse;
+import com.csg.airtel.aaa4j.domain.model.response.BulkBucketResult;
 import com.csg.airtel.aaa4j.domain.model.session.Balance;
 import com.csg.airtel.aaa4j.domain.service.BucketService;
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.metrics.annotation.Timed;
 import org.jboss.logging.Logger;
+import org.jboss.resteasy.reactive.RestStreamElementType;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 
 @Path("/cache")
 @ApplicationScoped
 public class BucketResource {
     private static final Logger log = Logger.getLogger(BucketResource.class);
+    private static final String NDJSON = "application/x-ndjson";
     private final BucketService bucketService;
 
     public BucketResource(BucketService bucketService) {
@@ -44,4 +56,37 @@ public class BucketResource {
         log.infof("update bucket  Completed %s", userName);
         return apiResponseUni;
     }
+
+    /**
+     * Bulk add/update of buckets. The body is NDJSON of {@code BulkBucketOperation}; the response
+     * streams one {@code BulkBucketResult} per line as the lines are applied. The body is read line
+     * by line as it arrives, so memory stays bounded by the apply windows whatever the upload size;
+     * the global {@code quarkus.http.limits.max-body-size} (10M, about 50,000 lines) still caps one
+     * upload, and since every line is an independent operation a larger file is sent in parts.
+     */
+    @POST
+    @Path("/buckets/bulk")
+    @Blocking
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<BulkBucketResult> bulkBuckets(InputStream body) {
+        log.infof("Bulk bucket provisioning Start");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        Multi<String> lines = Multi.createFrom().items(reader::lines)
+                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        return bucketService.applyBulk(lines)
+                .onTermination().invoke(() -> {
+                    closeQuietly(reader);
+                    log.infof("Bulk bucket provisioning Completed");
+                });
+    }
+
+    private static void closeQuietly(BufferedReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warnf(e, "Failed to close bulk bucket upload");
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package com.csg.airtel.aaa4j.application.resources;
+
+import com.csg.airtel.aaa4j.external.fault.FaultInjector;
+import com.csg.airtel.aaa4j.external.fault.FaultProfile;
+import com.csg.airtel.aaa4j.external.fault.FaultTarget;
+import io.quarkus.arc.profile.IfBuildProfile;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.Map;
+
+/**
+ * Fault injection control for the load harness. Only part of builds made with the
+ * {@code loadtest} profile, and even there every operation requires {@code fault.enabled}.
+ */
+@Path("/admin/faults")
+@IfBuildProfile("loadtest")
+@ApplicationScoped
+public class FaultResource {
+
+    private final FaultInjector faultInjector;
+
+    public FaultResource(FaultInjector faultInjector) {
+        this.faultInjector = faultInjector;
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<FaultTarget, FaultProfile> profiles() {
+        requireEnabled();
+        return faultInjector.profiles();
+    }
+
+    @PUT
+    @Path("/{target}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<FaultTarget, FaultProfile> setProfile(@PathParam("target") FaultTarget target, FaultProfile profile) {
+        requireEnabled();
+        if (profile == null) {
+            throw new BadRequestException("profile is required");
+        }
+        faultInjector.setProfile(target, profile);
+        return faultInjector.profiles();
+    }
+
+    @DELETE
+    @Path("/{target}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<FaultTarget, FaultProfile> clear(@PathParam("target") FaultTarget target) {
+        requireEnabled();
+        faultInjector.clear(target);
+        return faultInjector.profiles();
+    }
+
+    private void requireEnabled() {
+        if (!faultInjector.isEnabled()) {
+            throw new ForbiddenException("Fault injection is disabled");
+        }
+    }
+}
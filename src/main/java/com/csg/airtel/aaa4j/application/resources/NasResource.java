@@ -0,0 +1,36 @@
+package com.csg.airtel.aaa4j.application.resources;
+
+import com.csg.airtel.aaa4j.domain.model.response.NasTermination;
+import com.csg.airtel.aaa4j.domain.service.NasSessionTerminator;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.metrics.annotation.Timed;
+
+import java.time.LocalDateTime;
+
+@Path("/admin/nas")
+@ApplicationScoped
+public class NasResource {
+
+    private final NasSessionTerminator nasSessionTerminator;
+
+    public NasResource(NasSessionTerminator nasSessionTerminator) {
+        this.nasSessionTerminator = nasSessionTerminator;
+    }
+
+    /**
+     * Close all current sessions of a NAS that went down without sending Accounting-On/Off.
+     */
+    @DELETE
+    @Path("/{nasIp}/sessions")
+    @Timed(name = "process_time", description = "Time to process request")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<NasTermination> terminate(@PathParam("nasIp") String nasIp) {
+        return nasSessionTerminator.terminate(nasIp, LocalDateTime.now());
+    }
+}
@@ -3,6 +3,7 @@ package com.csg.airtel.aaa4j.application.resources;
 import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
 import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
 import com.csg.airtel.aaa4j.domain.service.AccountingHandlerFactory;
+import com.csg.airtel.aaa4j.domain.service.UserMutationMailbox;
 import com.csg.airtel.aaa4j.external.clients.CacheClient;
 import com.csg.airtel.aaa4j.external.repository.UserBucketRepository;
 import io.smallrye.mutiny.Uni;
@@ -29,10 +30,14 @@ public class RedisDebugResource {
 
     final AccountingHandlerFactory accountingHandlerFactory;
 
-    public RedisDebugResource(UserBucketRepository userRepository, CacheClient cacheClient, AccountingHandlerFactory accountingHandlerFactory) {
+    final UserMutationMailbox mailbox;
+
+    public RedisDebugResource(UserBucketRepository userRepository, CacheClient cacheClient, AccountingHandlerFactory accountingHandlerFactory,
+                              UserMutationMailbox mailbox) {
         this.userRepository = userRepository;
         this.cacheClient = cacheClient;
         this.accountingHandlerFactory = accountingHandlerFactory;
+        this.mailbox = mailbox;
     }
 
     @GET
@@ -74,8 +79,7 @@ public class RedisDebugResource {
     @Consumes(MediaType.APPLICATION_JSON)
     public Uni<Map<String, Object>> deleteKeyCache(@QueryParam("username") String key) {
 
-        return cacheClient
-                .deleteKey(key)
+        return mailbox.submit(key, () -> cacheClient.deleteKey(key))
                 .onItem().transform(result -> {
                     Map<String, Object> res = new HashMap<>();
                     res.put("accounting_result", result);
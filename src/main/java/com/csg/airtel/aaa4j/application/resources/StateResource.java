@@ -0,0 +1,71 @@
+package com.csg.airtel.aaa4j.application.resources;
+
+import com.csg.airtel.aaa4j.domain.model.StateQuery;
+import com.csg.airtel.aaa4j.domain.service.UserStateProjector;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.metrics.annotation.Timed;
+
+import java.util.Map;
+
+/**
+ * Read API over the cached user documents returning only the requested part of a document.
+ */
+@Path("/state")
+@ApplicationScoped
+public class StateResource {
+
+    private final UserStateProjector projector;
+
+    public StateResource(UserStateProjector projector) {
+        this.projector = projector;
+    }
+
+    @GET
+    @Path("/{userName}/sessions")
+    @Timed(name = "state_read_time", description = "Time to read projected user state")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> sessions(@PathParam("userName") String userName) {
+        return respond(projector.project(userName, StateQuery.View.SESSIONS, null));
+    }
+
+    @GET
+    @Path("/{userName}/buckets/{bucketId}")
+    @Timed(name = "state_read_time", description = "Time to read projected user state")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> bucket(@PathParam("userName") String userName, @PathParam("bucketId") String bucketId) {
+        return respond(projector.project(userName, StateQuery.View.BUCKET, bucketId));
+    }
+
+    @GET
+    @Path("/{userName}/summary")
+    @Timed(name = "state_read_time", description = "Time to read projected user state")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<Response> summary(@PathParam("userName") String userName) {
+        return respond(projector.project(userName, StateQuery.View.SUMMARY, null));
+    }
+
+    /**
+     * Same view for many users in one request; users that are not cached are left out.
+     */
+    @POST
+    @Path("/batch")
+    @Timed(name = "state_read_time", description = "Time to read projected user state")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Uni<Map<String, Object>> batch(StateQuery query) {
+        if (query == null || query.view() == null) {
+            throw new BadRequestException("view is required");
+        }
+        return projector.projectBatch(query);
+    }
+
+    private static Uni<Response> respond(Uni<Object> projection) {
+        return projection.onItem().transform(body -> body == null
+                ? Response.status(Response.Status.NOT_FOUND).build()
+                : Response.ok(body).build());
+    }
+}
@@ -0,0 +1,54 @@
+package com.csg.airtel.aaa4j.application.resources;
+
+import com.csg.airtel.aaa4j.domain.model.response.HeavyHitter;
+import com.csg.airtel.aaa4j.domain.model.response.SessionStatsSnapshot;
+import com.csg.airtel.aaa4j.domain.service.HeavyHitterTracker;
+import com.csg.airtel.aaa4j.domain.service.SessionStatistics;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import org.eclipse.microprofile.metrics.annotation.Timed;
+
+import java.util.List;
+
+@Path("/stats")
+@ApplicationScoped
+public class StatsResource {
+
+    private final SessionStatistics sessionStatistics;
+    private final HeavyHitterTracker heavyHitterTracker;
+
+    public StatsResource(SessionStatistics sessionStatistics, HeavyHitterTracker heavyHitterTracker) {
+        this.sessionStatistics = sessionStatistics;
+        this.heavyHitterTracker = heavyHitterTracker;
+    }
+
+    /**
+     * Active sessions per NAS, per plan and in total, read from the incrementally maintained counters.
+     */
+    @GET
+    @Path("/sessions")
+    @Timed(name = "process_time", description = "Time to process request")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Uni<SessionStatsSnapshot> sessions() {
+        return sessionStatistics.snapshot();
+    }
+
+    /**
+     * Top keys of one dimension, from the last completed window unless {@code ongoing} is set.
+     */
+    @GET
+    @Path("/heavy-hitters")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<HeavyHitter> heavyHitters(@QueryParam("dimension") @DefaultValue("USERNAME") HeavyHitterTracker.Dimension dimension,
+                                          @QueryParam("measure") @DefaultValue("EVENTS") HeavyHitterTracker.Measure measure,
+                                          @QueryParam("limit") @DefaultValue("20") int limit,
+                                          @QueryParam("ongoing") @DefaultValue("false") boolean ongoing) {
+        return heavyHitterTracker.top(dimension, measure, limit, ongoing);
+    }
+}
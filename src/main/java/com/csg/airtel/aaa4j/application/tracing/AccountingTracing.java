@@ -0,0 +1,107 @@
+package com.csg.airtel.aaa4j.application.tracing;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.kafka.api.IncomingKafkaRecordMetadata;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.eclipse.microprofile.reactive.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Root span of a consumed accounting event. The connector's own receive span is disabled for the
+ * accounting channel because it starts before the payload is decoded; this span starts after,
+ * carries the action type so {@link ActionTypeSampler} can sample per action, and continues the
+ * trace found in the record headers.
+ */
+@ApplicationScoped
+public class AccountingTracing {
+
+    public static final AttributeKey<String> ACTION_TYPE = AttributeKey.stringKey("aaa.action_type");
+
+    private static final TextMapGetter<Headers> HEADERS = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(Headers headers) {
+            List<String> keys = new ArrayList<>();
+            for (Header header : headers) {
+                keys.add(header.key());
+            }
+            return keys;
+        }
+
+        @Override
+        public String get(Headers headers, String key) {
+            if (headers == null) {
+                return null;
+            }
+            Header header = headers.lastHeader(key);
+            return header == null || header.value() == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+        }
+    };
+
+    private final OpenTelemetry openTelemetry;
+    private final Tracer tracer;
+
+    public AccountingTracing(OpenTelemetry openTelemetry, Tracer tracer) {
+        this.openTelemetry = openTelemetry;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Run the processing of a consumed event inside its consumer span. The span stays current on
+     * the event's Vert.x context until the processing terminates, so spans of the handler stages
+     * and the produced records become its children.
+     */
+    public <T> Uni<T> traceConsume(Message<AccountingRequestDto> message, Supplier<Uni<T>> processing) {
+        AccountingRequestDto request = message.getPayload();
+        IncomingKafkaRecordMetadata<?, ?> metadata = message.getMetadata(IncomingKafkaRecordMetadata.class).orElse(null);
+        Context parent = metadata == null
+                ? Context.current()
+                : openTelemetry.getPropagators().getTextMapPropagator().extract(Context.current(), metadata.getHeaders(), HEADERS);
+        var builder = tracer.spanBuilder("accounting-events process")
+                .setParent(parent)
+                .setSpanKind(SpanKind.CONSUMER)
+                .setAttribute("messaging.system", "kafka");
+        if (request.actionType() != null) {
+            builder.setAttribute(ACTION_TYPE, request.actionType().name());
+        }
+        if (metadata != null) {
+            builder.setAttribute("messaging.destination.name", metadata.getTopic())
+                    .setAttribute("messaging.kafka.destination.partition", metadata.getPartition())
+                    .setAttribute("messaging.kafka.message.offset", metadata.getOffset());
+        }
+        Span span = builder.startSpan();
+        Scope scope = span.makeCurrent();
+        Uni<T> processed;
+        try {
+            processed = processing.get();
+        } catch (RuntimeException e) {
+            end(span, scope, e);
+            throw e;
+        }
+        return processed.onTermination().invoke((item, failure, cancelled) -> end(span, scope, failure));
+    }
+
+    private static void end(Span span, Scope scope, Throwable failure) {
+        if (failure != null) {
+            span.recordException(failure);
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+        scope.close();
+    }
+}
@@ -0,0 +1,51 @@
+package com.csg.airtel.aaa4j.application.tracing;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+import jakarta.inject.Singleton;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Samples root spans by ratio, with a separate ratio per accounting action type read from the
+ * {@link AccountingTracing#ACTION_TYPE} attribute of the consumer span. Child spans follow the
+ * decision of their parent, so a trace is either recorded completely or not at all and unsampled
+ * events only pay for non-recording spans.
+ */
+@Singleton
+public class ActionTypeSampler implements Sampler {
+
+    private final Sampler defaultSampler;
+    private final Map<String, Sampler> actionSamplers;
+
+    public ActionTypeSampler(@ConfigProperty(name = "tracing.sampler.ratio", defaultValue = "0.01") double ratio,
+                             @ConfigProperty(name = "tracing.sampler.start-ratio", defaultValue = "0.1") double startRatio,
+                             @ConfigProperty(name = "tracing.sampler.interim-ratio", defaultValue = "0.001") double interimRatio,
+                             @ConfigProperty(name = "tracing.sampler.stop-ratio", defaultValue = "0.1") double stopRatio) {
+        this.defaultSampler = Sampler.parentBased(Sampler.traceIdRatioBased(ratio));
+        this.actionSamplers = Map.of(
+                AccountingRequestDto.ActionType.START.name(), Sampler.parentBased(Sampler.traceIdRatioBased(startRatio)),
+                AccountingRequestDto.ActionType.INTERIM_UPDATE.name(), Sampler.parentBased(Sampler.traceIdRatioBased(interimRatio)),
+                AccountingRequestDto.ActionType.STOP.name(), Sampler.parentBased(Sampler.traceIdRatioBased(stopRatio)));
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                       Attributes attributes, List<LinkData> parentLinks) {
+        String actionType = attributes.get(AccountingTracing.ACTION_TYPE);
+        Sampler sampler = actionType == null ? defaultSampler : actionSamplers.getOrDefault(actionType, defaultSampler);
+        return sampler.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+    }
+
+    @Override
+    public String getDescription() {
+        return "ActionTypeSampler{default=" + defaultSampler.getDescription() + ", actions=" + actionSamplers + "}";
+    }
+}
@@ -21,7 +21,8 @@ public class SQLConstant {
                            u.SESSION_TIMEOUT,
                            b.TIME_WINDOW,
                            b.CONSUMPTION_LIMIT_WINDOW,
-                           b.EXPIRATION
+                           b.EXPIRATION,
+                           b.UPDATED_AT AS BUCKET_UPDATED_AT
                         FROM SERVICE_INSTANCE s
                         JOIN AAA_USER  u
                           ON s.USERNAME  = u.USER_NAME
@@ -30,4 +31,79 @@ public class SQLConstant {
                           ON s.ID  = b.service_id
                         WHERE u.USER_NAME = :1
             """;
+
+    /**
+     * Buckets changed after the (UPDATED_AT, ID) cursor, in cursor order. Only BUCKET_INSTANCE.UPDATED_AT
+     * is ranged, so the scan can use an index on (UPDATED_AT, ID).
+     */
+    public static final String QUERY_CHANGED_BUCKETS = """
+                        SELECT
+                           s.ID ,
+                           b.RULE,
+                           b.PRIORITY,
+                           b.INITIAL_BALANCE,
+                           b.CURRENT_BALANCE,
+                           b.USAGE,
+                           s.EXPIRY_DATE,
+                           s.SERVICE_START_DATE,
+                           s.PLAN_ID,
+                           b.ID AS BUCKET_ID,
+                           s.STATUS,
+                           s.USERNAME  AS BUCKET_USER,
+                           b.CONSUMPTION_LIMIT,
+                           NULL AS SESSION_TIMEOUT,
+                           b.TIME_WINDOW,
+                           b.CONSUMPTION_LIMIT_WINDOW,
+                           b.EXPIRATION,
+                           b.UPDATED_AT AS BUCKET_UPDATED_AT,
+                           b.UPDATED_AT AS CHANGED_AT
+                        FROM BUCKET_INSTANCE b
+                        JOIN SERVICE_INSTANCE s
+                          ON s.ID  = b.service_id
+                        WHERE b.UPDATED_AT >= :1
+                          AND (b.UPDATED_AT > :2 OR b.ID > :3)
+                        ORDER BY b.UPDATED_AT, b.ID
+                        FETCH FIRST :4 ROWS ONLY
+            """;
+
+    /**
+     * Buckets of services changed after the (UPDATED_AT, service ID, bucket ID) cursor, in cursor order.
+     * Only SERVICE_INSTANCE.UPDATED_AT is ranged, so the scan can use an index on (UPDATED_AT, ID).
+     */
+    public static final String QUERY_CHANGED_SERVICE_BUCKETS = """
+                        SELECT
+                           s.ID ,
+                           b.RULE,
+                           b.PRIORITY,
+                           b.INITIAL_BALANCE,
+                           b.CURRENT_BALANCE,
+                           b.USAGE,
+                           s.EXPIRY_DATE,
+                           s.SERVICE_START_DATE,
+                           s.PLAN_ID,
+                           b.ID AS BUCKET_ID,
+                           s.STATUS,
+                           s.USERNAME  AS BUCKET_USER,
+                           b.CONSUMPTION_LIMIT,
+                           NULL AS SESSION_TIMEOUT,
+                           b.TIME_WINDOW,
+                           b.CONSUMPTION_LIMIT_WINDOW,
+                           b.EXPIRATION,
+                           b.UPDATED_AT AS BUCKET_UPDATED_AT,
+                           s.UPDATED_AT AS CHANGED_AT
+                        FROM SERVICE_INSTANCE s
+                        JOIN BUCKET_INSTANCE b
+                          ON s.ID  = b.service_id
+                        WHERE s.UPDATED_AT >= :1
+                          AND (s.UPDATED_AT > :2 OR s.ID > :3 OR (s.ID = :4 AND b.ID > :5))
+                        ORDER BY s.UPDATED_AT, s.ID, b.ID
+                        FETCH FIRST :6 ROWS ONLY
+            """;
+
+    /**
+     * Current time of the database, the clock external writers stamp UPDATED_AT with.
+     */
+    public static final String QUERY_DATABASE_TIME = """
+                        SELECT CAST(SYSTIMESTAMP AS TIMESTAMP) AS DB_TIME FROM DUAL
+            """;
 }
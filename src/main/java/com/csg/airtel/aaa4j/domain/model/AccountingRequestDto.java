@@ -24,6 +24,8 @@ public record AccountingRequestDto(
     public enum ActionType {
         START,
         INTERIM_UPDATE,
-        STOP
+        STOP,
+        ACCOUNTING_ON,
+        ACCOUNTING_OFF
     }
 }
\ No newline at end of file
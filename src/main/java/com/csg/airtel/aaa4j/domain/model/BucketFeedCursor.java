@@ -0,0 +1,34 @@
+package com.csg.airtel.aaa4j.domain.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position of the bucket change feed: the last row read, in (change time, service, bucket) order.
+ * The ids break ties between rows changed at the same time, so a batch can end mid-timestamp
+ * without skipping or re-reading rows.
+ * @param changedAt change time of the last row read
+ * @param serviceId service id of the last row read
+ * @param bucketId bucket id of the last row read
+ */
+public record BucketFeedCursor(LocalDateTime changedAt, long serviceId, long bucketId) {
+
+    public static BucketFeedCursor startingAt(LocalDateTime changedAt) {
+        return new BucketFeedCursor(changedAt, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    public static BucketFeedCursor after(ServiceBucketInfo row) {
+        return new BucketFeedCursor(row.getChangedAt(), row.getServiceId(), row.getBucketId());
+    }
+
+    public static BucketFeedCursor parse(String value) {
+        String[] parts = value.split("\\|");
+        if (parts.length == 1) {
+            return startingAt(LocalDateTime.parse(parts[0]));
+        }
+        return new BucketFeedCursor(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+    }
+
+    public String format() {
+        return changedAt + "|" + serviceId + "|" + bucketId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.csg.airtel.aaa4j.domain.model;
+
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One line of a bulk bucket provisioning request.
+ */
+public record BulkBucketOperation(
+        @JsonProperty("userName") String userName,
+        @JsonProperty("operation") Operation operation,
+        @JsonProperty("serviceId") String serviceId,
+        @JsonProperty("balance") Balance balance
+) {
+    public enum Operation {
+        ADD,
+        UPDATE
+    }
+}
@@ -0,0 +1,20 @@
+package com.csg.airtel.aaa4j.domain.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Batch lookup of a projected view for several users.
+ */
+public record StateQuery(
+        @JsonProperty("view") View view,
+        @JsonProperty("usernames") List<String> usernames,
+        @JsonProperty("bucketId") String bucketId
+) {
+    public enum View {
+        SESSIONS,
+        BUCKET,
+        SUMMARY
+    }
+}
@@ -0,0 +1,21 @@
+package com.csg.airtel.aaa4j.domain.model.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Outcome of one line of a bulk bucket provisioning request; {@code line} is 1-based.
+ */
+public record BulkBucketResult(
+        @JsonProperty("line") long line,
+        @JsonProperty("userName") String userName,
+        @JsonProperty("success") boolean success,
+        @JsonProperty("message") String message
+) {
+    public static BulkBucketResult success(long line, String userName, String message) {
+        return new BulkBucketResult(line, userName, true, message);
+    }
+
+    public static BulkBucketResult failure(long line, String userName, String message) {
+        return new BulkBucketResult(line, userName, false, message);
+    }
+}
@@ -0,0 +1,15 @@
+package com.csg.airtel.aaa4j.domain.model.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * One key of a heavy-hitter summary. {@code count} may overestimate the true value by at most {@code error}.
+ */
+public record HeavyHitter(
+        @JsonProperty("key") String key,
+        @JsonProperty("count") long count,
+        @JsonProperty("error") long error,
+        @JsonProperty("perSecond") double perSecond,
+        @JsonProperty("share") double share
+) {
+}
@@ -0,0 +1,16 @@
+package com.csg.airtel.aaa4j.domain.model.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Outcome of closing the sessions of a NAS.
+ */
+public record NasTermination(
+        @JsonProperty("nasIp") String nasIp,
+        @JsonProperty("closedSessions") int closedSessions,
+        @JsonProperty("keptSessions") int keptSessions,
+        @JsonProperty("staleEntries") int staleEntries,
+        @JsonProperty("failedSessions") int failedSessions,
+        @JsonProperty("durationMs") long durationMs
+) {
+}
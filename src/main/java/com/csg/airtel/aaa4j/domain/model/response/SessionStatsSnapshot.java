@@ -0,0 +1,20 @@
+package com.csg.airtel.aaa4j.domain.model.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Active-session counters and today's approximate distinct counts.
+ */
+public record SessionStatsSnapshot(
+        @JsonProperty("activeSessions") long activeSessions,
+        @JsonProperty("perNas") Map<String, Long> perNas,
+        @JsonProperty("perPlan") Map<String, Long> perPlan,
+        @JsonProperty("distinctUsersToday") long distinctUsersToday,
+        @JsonProperty("distinctNasToday") long distinctNasToday
+) {
+    public static SessionStatsSnapshot empty() {
+        return new SessionStatsSnapshot(0, Map.of(), Map.of(), 0, 0);
+    }
+}
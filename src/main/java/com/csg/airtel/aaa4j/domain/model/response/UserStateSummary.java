@@ -0,0 +1,26 @@
+package com.csg.airtel.aaa4j.domain.model.response;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Remaining-quota view of a cached user.
+ */
+public record UserStateSummary(
+        @JsonProperty("userName") String userName,
+        @JsonProperty("totalQuota") long totalQuota,
+        @JsonProperty("activeSessions") int activeSessions,
+        @JsonProperty("buckets") List<BucketQuota> buckets
+) {
+    public record BucketQuota(
+            @JsonProperty("bucketId") String bucketId,
+            @JsonProperty("serviceId") String serviceId,
+            @JsonProperty("quota") Long quota,
+            @JsonProperty("initialBalance") Long initialBalance,
+            @JsonProperty("priority") Long priority,
+            @JsonProperty("serviceStatus") String serviceStatus,
+            @JsonProperty("bucketExpiryDate") String bucketExpiryDate
+    ) {
+    }
+}
@@ -1,11 +1,14 @@
 package com.csg.airtel.aaa4j.domain.model.session;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -25,5 +28,99 @@ public class Balance {
     private String bucketUsername;
     private List<ConsumptionRecord> consumptionHistory = new ArrayList<>();
     private boolean isGroup;
+    /** outstanding quota grants of a shared bucket, by session id */
+    private Map<String, GrantReservation> grantReservations;
+    /** CURRENT_BALANCE of the bucket row as this service last wrote or read it */
+    private Long storedBalance;
+    /** UPDATED_AT of the bucket row as this service last wrote or read it */
+    private LocalDateTime storedAt;
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient TimeWindow compiledTimeWindow;
+
+    @JsonIgnore
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient BalanceSnapshot readState;
+
+    public void setTimeWindow(String timeWindow) {
+        this.timeWindow = timeWindow;
+        this.compiledTimeWindow = null;
+    }
+
+    /**
+     * @return quota reserved by outstanding grants, already taken out of {@link #quota}
+     */
+    public long reservedQuota() {
+        if (grantReservations == null) {
+            return 0L;
+        }
+        long reserved = 0L;
+        for (GrantReservation reservation : grantReservations.values()) {
+            reserved += reservation.getAmount();
+        }
+        return reserved;
+    }
+
+    /**
+     * Record the bucket row as written to Oracle.
+     * @param currentBalance CURRENT_BALANCE written
+     * @param at UPDATED_AT written
+     */
+    public void markStored(long currentBalance, LocalDateTime at) {
+        this.storedBalance = currentBalance;
+        this.storedAt = at;
+    }
+
+    /**
+     * @return CURRENT_BALANCE this bucket is known to have in Oracle: the last one written or
+     *         read, or, if neither was recorded, the quota including reservations
+     */
+    public long storedBalanceOrQuota() {
+        return storedBalance != null ? storedBalance : quota + reservedQuota();
+    }
+
+    /**
+     * Take over the state that only lives in the cache from an earlier copy of this bucket.
+     */
+    public void copyCacheState(Balance cached) {
+        this.consumptionHistory = cached.consumptionHistory;
+        this.isGroup = cached.isGroup;
+        this.grantReservations = cached.grantReservations;
+        this.storedBalance = cached.storedBalance;
+        this.storedAt = cached.storedAt;
+        this.readState = cached.readState;
+    }
+
+    /**
+     * Remember the current state as the one read from the cache, so a writer can apply only the
+     * changes made since.
+     */
+    public void markRead() {
+        readState = new BalanceSnapshot(quota == null ? 0L : quota,
+                grantReservations == null ? Map.of() : Map.copyOf(grantReservations),
+                consumptionHistory == null ? 0 : consumptionHistory.size(), storedAt);
+    }
+
+    /**
+     * @return state at the last {@link #markRead()}, null if it was never marked
+     */
+    public BalanceSnapshot readState() {
+        return readState;
+    }
+
+    /**
+     * @return the interned compiled form of {@link #timeWindow}, resolved once per balance
+     */
+    public TimeWindow compiledTimeWindow() {
+        TimeWindow compiled = compiledTimeWindow;
+        if (compiled == null) {
+            compiled = TimeWindow.of(timeWindow);
+            compiledTimeWindow = compiled;
+        }
+        return compiled;
+    }
 
 }
@@ -0,0 +1,15 @@
+package com.csg.airtel.aaa4j.domain.model.session;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Parts of a shared bucket a group member can change, as they were read from the group document.
+ * @param quota quota read
+ * @param grantReservations copy of the reservations read, empty if there were none
+ * @param consumptionRecords number of consumption records read
+ * @param storedAt time of the last Oracle write of the bucket read, null if none was recorded
+ */
+public record BalanceSnapshot(long quota, Map<String, GrantReservation> grantReservations, int consumptionRecords,
+                              LocalDateTime storedAt) {
+}
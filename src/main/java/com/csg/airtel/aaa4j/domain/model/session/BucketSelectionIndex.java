@@ -0,0 +1,30 @@
+package com.csg.airtel.aaa4j.domain.model.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bucket selection state cached in memory per user. Holds the positions, in the combined
+ * user + group balance list, of the buckets whose time-based eligibility (status, start
+ * date, expiry, time window) holds, ordered by (priority, bucket expiry). It stays valid
+ * while the balance list keeps the version it was built for and until {@code validUntil}, the
+ * next instant at which any of those conditions can flip.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BucketSelectionIndex {
+    private long version;
+    private int[] candidates;
+    private LocalDateTime validUntil;
+
+    public boolean isValid(long currentVersion, LocalDateTime now) {
+        return candidates != null && validUntil != null
+                && version != 0 && version == currentVersion && now.isBefore(validUntil);
+    }
+}
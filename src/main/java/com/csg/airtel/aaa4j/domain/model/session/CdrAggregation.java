@@ -0,0 +1,24 @@
+package com.csg.airtel.aaa4j.domain.model.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Interim CDR aggregation state of a session: counters as of the last emitted interim CDR,
+ * stored with the session so any instance can continue the aggregation.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CdrAggregation {
+    private int interimsSinceEmit;
+    private LocalDateTime lastEmittedAt;
+    private int lastSessionTime;
+    private long lastInputBytes;
+    private long lastOutputBytes;
+}
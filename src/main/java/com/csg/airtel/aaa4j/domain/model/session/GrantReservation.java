@@ -0,0 +1,21 @@
+package com.csg.airtel.aaa4j.domain.model.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Record, kept on the shared bucket, of a slice reserved by one session. It lets the bucket
+ * take the slice back when the session stops reporting without a STOP.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class GrantReservation {
+    private Long amount;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,25 @@
+package com.csg.airtel.aaa4j.domain.model.session;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Slice of a shared bucket reserved for one session. The slice has already been
+ * taken out of the bucket quota; interims debit {@code remaining} locally until it
+ * runs out or expires, and whatever is left goes back to the bucket on STOP.
+ */
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuotaGrant {
+    private String bucketId;
+    private Long remaining;
+    /** size of the slice when reserved, null for grants taken before it was recorded */
+    private Long granted;
+    private LocalDateTime expiresAt;
+}
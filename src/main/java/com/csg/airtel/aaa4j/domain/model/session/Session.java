@@ -18,5 +18,11 @@ public class Session {
     private Long previousTotalUsageQuotaValue;
     private String framedId;
     private String nasIp;
+    private QuotaGrant quotaGrant;
+    private CdrAggregation cdrAggregation;
+    private String planId;
+    // input and output totals of the last accounted event, null for sessions cached before they were kept
+    private Long previousInputBytes;
+    private Long previousOutputBytes;
 
 }
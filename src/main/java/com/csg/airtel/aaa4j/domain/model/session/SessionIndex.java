@@ -0,0 +1,70 @@
+package com.csg.airtel.aaa4j.domain.model.session;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sessions of a user keyed by session id in insertion order, for O(1) lookup, replace and
+ * remove on accounts with many concurrent sessions. It is a plain collection to Jackson, so
+ * it is stored as the same JSON array of sessions as before.
+ */
+public class SessionIndex extends AbstractCollection<Session> {
+
+    private final Map<String, Session> bySessionId;
+
+    public SessionIndex() {
+        this.bySessionId = new LinkedHashMap<>();
+    }
+
+    public SessionIndex(Collection<Session> sessions) {
+        this.bySessionId = new LinkedHashMap<>();
+        sessions.forEach(this::add);
+    }
+
+    public Session get(String sessionId) {
+        return bySessionId.get(sessionId);
+    }
+
+    public boolean containsSessionId(String sessionId) {
+        return bySessionId.containsKey(sessionId);
+    }
+
+    /**
+     * Add the session, replacing any session with the same id.
+     */
+    @Override
+    public boolean add(Session session) {
+        return bySessionId.put(session.getSessionId(), session) != session;
+    }
+
+    /**
+     * Remove this session instance.
+     */
+    @Override
+    public boolean remove(Object o) {
+        return o instanceof Session session && bySessionId.remove(session.getSessionId(), session);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Session session && bySessionId.get(session.getSessionId()) == session;
+    }
+
+    @Override
+    public Iterator<Session> iterator() {
+        return bySessionId.values().iterator();
+    }
+
+    @Override
+    public int size() {
+        return bySessionId.size();
+    }
+
+    @Override
+    public void clear() {
+        bySessionId.clear();
+    }
+}
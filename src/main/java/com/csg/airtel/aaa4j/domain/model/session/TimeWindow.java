@@ -0,0 +1,113 @@
+package com.csg.airtel.aaa4j.domain.model.session;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiled form of a bucket time window such as "18-6" or "00-24".
+ * Instances are immutable and interned per distinct window string, so every
+ * balance with the same rule shares one object and evaluation does not allocate.
+ */
+public final class TimeWindow {
+
+    private static final ConcurrentHashMap<String, TimeWindow> INTERNED = new ConcurrentHashMap<>();
+
+    private final String expression;
+    private final long startNanos;
+    private final long endNanos;
+    private final boolean overnight;
+
+    private TimeWindow(String expression, LocalTime start, LocalTime end) {
+        this.expression = expression;
+        this.startNanos = start.toNanoOfDay();
+        this.endNanos = end.toNanoOfDay();
+        this.overnight = start.isAfter(end);
+    }
+
+    /**
+     * @param timeWindow time window string in format "HH-HH" where HH is 0-24
+     * @return the shared compiled window for this string
+     * @throws IllegalArgumentException if the format is invalid
+     */
+    public static TimeWindow of(String timeWindow) {
+        if (timeWindow == null || timeWindow.trim().isEmpty()) {
+            throw new IllegalArgumentException("Time window string cannot be null or empty");
+        }
+        TimeWindow window = INTERNED.get(timeWindow);
+        if (window == null) {
+            window = INTERNED.computeIfAbsent(timeWindow, TimeWindow::compile);
+        }
+        return window;
+    }
+
+    private static TimeWindow compile(String timeWindow) {
+        String[] times = timeWindow.split("-");
+        if (times.length != 2) {
+            throw new IllegalArgumentException("Invalid time window format. Expected format: 'HH-HH' (e.g., '00-24', '08-18', '0-12')");
+        }
+        return new TimeWindow(timeWindow, parseHourOnly(times[0].trim()), parseHourOnly(times[1].trim()));
+    }
+
+    /**
+     * @param time time of day to evaluate
+     * @return true if the time falls inside the window (both ends inclusive)
+     */
+    public boolean contains(LocalTime time) {
+        long now = time.toNanoOfDay();
+        if (overnight) {
+            return now >= startNanos || now <= endNanos;
+        }
+        return now >= startNanos && now <= endNanos;
+    }
+
+    /**
+     * @param now instant to start from
+     * @return the first instant after {@code now} at which {@link #contains} can change value
+     */
+    public LocalDateTime nextEdgeAfter(LocalDateTime now) {
+        long current = now.toLocalTime().toNanoOfDay();
+        LocalDateTime opens = nextOccurrence(now, current, startNanos);
+        LocalDateTime closes = nextOccurrence(now, current, endNanos + 1);
+        return opens.isBefore(closes) ? opens : closes;
+    }
+
+    private static LocalDateTime nextOccurrence(LocalDateTime now, long currentNanos, long edgeNanos) {
+        LocalDate day = edgeNanos > currentNanos ? now.toLocalDate() : now.toLocalDate().plusDays(1);
+        return day.atTime(LocalTime.ofNanoOfDay(edgeNanos));
+    }
+
+    public String expression() {
+        return expression;
+    }
+
+    /**
+     * @param timeStr the time string (e.g., "0", "8", "24")
+     * @return LocalTime representing the hour (24 becomes 23:59:59)
+     * @throws IllegalArgumentException if format is invalid or hour is out of range
+     */
+    private static LocalTime parseHourOnly(String timeStr) {
+        if (timeStr.isEmpty()) {
+            throw new IllegalArgumentException("Time string cannot be empty");
+        }
+        try {
+            int hour = Integer.parseInt(timeStr);
+            if (hour == 24) {
+                return LocalTime.of(23, 59, 59);
+            }
+            if (hour < 0 || hour > 23) {
+                throw new IllegalArgumentException("Hour must be between 0 and 24, got: " + hour);
+            }
+            return LocalTime.of(hour, 0);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Unable to parse hour: " + timeStr +
+                    ". Expected format: single or double digit hour (0-24)", e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -3,6 +3,7 @@ package com.csg.airtel.aaa4j.domain.model.session;
 import lombok.*;
 
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Getter
 @Setter
@@ -14,7 +15,19 @@ public class UserSessionData {
     private String userName;
     private String groupId;
     private List<Balance> balance;
-    private List<Session> sessions;
+    private SessionIndex sessions;
     private QosParam qosParam;
+    // version of the bucket list, 0 until first assigned; selection indexes are cached per version
+    private long bucketsVersion;
+
+    /**
+     * Give the bucket list a new version, invalidating the selection indexes built for the old
+     * one. Called by every writer that adds, removes, reorders or re-plans buckets. The version
+     * is random rather than incremented, so a document rebuilt from Oracle never reuses the
+     * version of an earlier one.
+     */
+    public void bucketsChanged() {
+        bucketsVersion = ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+    }
 
 }
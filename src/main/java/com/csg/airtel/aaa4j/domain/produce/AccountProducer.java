@@ -3,112 +3,304 @@ package com.csg.airtel.aaa4j.domain.produce;
 import com.csg.airtel.aaa4j.domain.model.AccountingResponseEvent;
 import com.csg.airtel.aaa4j.domain.model.DBWriteRequest;
 import com.csg.airtel.aaa4j.domain.model.cdr.AccountingCDREvent;
+import com.csg.airtel.aaa4j.domain.profiling.EventCost;
+import com.csg.airtel.aaa4j.domain.profiling.ProduceEvent;
+import com.csg.airtel.aaa4j.external.fault.FaultInjector;
+import com.csg.airtel.aaa4j.external.fault.FaultTarget;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.smallrye.mutiny.Uni;
+import io.smallrye.reactive.messaging.TracingMetadata;
 import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.eclipse.microprofile.reactive.messaging.Message;
 import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 
 @ApplicationScoped
 public class AccountProducer {
     private static final Logger LOG = Logger.getLogger(AccountProducer.class);
+
+    /**
+     * AWAIT_ACK: produce Unis complete on broker ack. PIPELINED: inside a consumer's
+     * {@link PendingAcks} scope DB-write and response sends complete on hand-off and the
+     * consumer acks its offset once all of them are acked.
+     */
+    public enum Mode {
+        AWAIT_ACK,
+        PIPELINED
+    }
+
+    final Mode mode;
+    final OutboundSpool spool;
+    final ObjectMapper objectMapper;
+    final ProducerMetrics metrics;
+    final FaultInjector faultInjector;
+    final Duration ackTimeout;
     Emitter<DBWriteRequest> dbWriteRequestEmitter;
     Emitter<AccountingResponseEvent> accountingResponseEmitter;
     Emitter<AccountingCDREvent> accountingCDREventEmitter;
+    Emitter<byte[]> accountingCDRBinaryEmitter;
 
     public AccountProducer(@Channel("db-write-events")Emitter<DBWriteRequest> dbWriteRequestEmitter,
                            @Channel("accounting-resp-events")Emitter<AccountingResponseEvent> accountingResponseEmitter,
-                           @Channel("accounting-cdr-events") Emitter<AccountingCDREvent> accountingCDREventEmitter) {
+                           @Channel("accounting-cdr-events") Emitter<AccountingCDREvent> accountingCDREventEmitter,
+                           @Channel("accounting-cdr-binary-events") Emitter<byte[]> accountingCDRBinaryEmitter,
+                           @ConfigProperty(name = "accounting.producer.mode", defaultValue = "AWAIT_ACK") Mode mode,
+                           @ConfigProperty(name = "accounting.spool.ack-timeout", defaultValue = "PT10S") Duration ackTimeout,
+                           OutboundSpool spool,
+                           ObjectMapper objectMapper,
+                           ProducerMetrics metrics,
+                           FaultInjector faultInjector) {
+        this.mode = mode;
+        this.ackTimeout = ackTimeout;
+        this.spool = spool;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.faultInjector = faultInjector;
         this.dbWriteRequestEmitter = dbWriteRequestEmitter;
         this.accountingResponseEmitter = accountingResponseEmitter;
         this.accountingCDREventEmitter = accountingCDREventEmitter;
+        this.accountingCDRBinaryEmitter = accountingCDRBinaryEmitter;
+    }
+    public boolean isPipelined() {
+        return mode == Mode.PIPELINED;
     }
+
+    @WithSpan("produce.db-write")
     public Uni<Void> produceDBWriteEvent(DBWriteRequest request) {
-        long startTime = System.currentTimeMillis();
         LOG.infof("Start produceDBWriteEvent process");
-        return Uni.createFrom().emitter(emitter -> {
-            try {
-
-                var metadata = OutgoingKafkaRecordMetadata.<String>builder()
-                        .withKey(request.getSessionId())
-                        .build();
-
-                var message = Message.of(request)
-                        .addMetadata(metadata)
-                        .withAck(() -> {
-                            LOG.infof("Successfully sent accounting DB create event for session: %s,  %d ms", request.getSessionId(),System.currentTimeMillis()-startTime);
-                            emitter.complete(null);
-                            return CompletableFuture.completedFuture(null);
-                        })
-                        .withNack(throwable -> {
-                            LOG.errorf("Failed to send accounting DB create event: %s", throwable.getMessage());
-                            emitter.fail(throwable);
-                            return CompletableFuture.completedFuture(null);
-                        });
-
-                dbWriteRequestEmitter.send(message);
-            } catch (Exception e) {
-                LOG.errorf(e, "Error producing accounting DB create event for session: %s",
-                        request.getSessionId());
-                emitter.fail(e);
-            }
-        });
+        Uni<Void> send = emit(OutboundChannel.DB_WRITE, dbWriteRequestEmitter, request, request.getSessionId(), true);
+        PendingAcks scope = pendingScope();
+        return scope == null ? send : handOff(send, scope);
     }
 
     /**
      * @param event request
      */
 
+    @WithSpan("produce.response")
     public Uni<Void> produceAccountingResponseEvent(AccountingResponseEvent event) {
-        long startTime = System.currentTimeMillis();
         LOG.infof("Start produceAccountingResponseEvent process");
-        return Uni.createFrom().emitter(em -> {
-            Message<AccountingResponseEvent> message = Message.of(event)
-                    .addMetadata(OutgoingKafkaRecordMetadata.<String>builder()
-                            .withKey(event.sessionId())
-                            .build())
-                    .withAck(() -> {
-                        em.complete(null);
-                        LOG.infof("Successfully sent accounting response event for session: %s, %d ms", event.sessionId(),System.currentTimeMillis()-startTime);
-                        return CompletableFuture.completedFuture(null);
-                    })
-                    .withNack(throwable -> {
-                        LOG.errorf("Send failed: %s", throwable.getMessage());
-                        em.fail(throwable);
-                        return CompletableFuture.completedFuture(null);
-                    });
+        Uni<Void> send = emit(OutboundChannel.RESPONSE, accountingResponseEmitter, event, event.sessionId(), true);
+        PendingAcks scope = pendingScope();
+        return scope == null ? send : handOff(send, scope);
+    }
 
-            accountingResponseEmitter.send(message);
-        });
+
+    /**
+     * Send a batch of response events back-to-back and wait for each one to be acked or nacked once.
+     * Always waits for the acks, also in pipelined mode, because callers retry the failures.
+     * @param events events to send
+     * @return the events whose send failed, empty when all were acked
+     */
+    @WithSpan("produce.response-batch")
+    public Uni<List<AccountingResponseEvent>> produceAccountingResponseEvents(List<AccountingResponseEvent> events) {
+        if (events.isEmpty()) {
+            return Uni.createFrom().item(List.of());
+        }
+        List<Uni<AccountingResponseEvent>> sends = new ArrayList<>(events.size());
+        for (AccountingResponseEvent event : events) {
+            sends.add(emit(OutboundChannel.RESPONSE, accountingResponseEmitter, event, event.sessionId(), true)
+                    .onItem().transform(v -> (AccountingResponseEvent) null)
+                    .onFailure().recoverWithItem(event));
+        }
+        return Uni.join().all(sends).andFailFast()
+                .onItem().transform(results -> {
+                    List<AccountingResponseEvent> failed = new ArrayList<>();
+                    for (AccountingResponseEvent result : results) {
+                        if (result != null) {
+                            failed.add(result);
+                        }
+                    }
+                    return failed;
+                });
     }
 
 
+    @WithSpan("produce.cdr")
     public Uni<Void> produceAccountingCDREvent(AccountingCDREvent event) {
-        long startTime = System.currentTimeMillis();
         LOG.infof("Start produce Accounting CDR Event process");
-        return Uni.createFrom().emitter(em -> {
-            Message<AccountingCDREvent> message = Message.of(event)
+        return tracked(emit(OutboundChannel.CDR, accountingCDREventEmitter, event,
+                event.getPayload().getSession().getSessionId(), true));
+    }
+
+    /**
+     * @param sessionId record key
+     * @param payload CDR already encoded in the binary schema format
+     */
+    @WithSpan("produce.cdr-binary")
+    public Uni<Void> produceAccountingCDRBytes(String sessionId, byte[] payload) {
+        return tracked(emit(OutboundChannel.CDR_BINARY, accountingCDRBinaryEmitter, payload, sessionId, true));
+    }
+
+    /**
+     * Send a message taken from the spool, bypassing the spool.
+     */
+    Uni<Void> relay(OutboundSpool.SpoolRecord spoolRecord) {
+        metrics.retried(spoolRecord.channel());
+        try {
+            return switch (spoolRecord.channel()) {
+                case DB_WRITE -> emit(OutboundChannel.DB_WRITE, dbWriteRequestEmitter,
+                        objectMapper.readValue(spoolRecord.payload(), DBWriteRequest.class), spoolRecord.key(), false);
+                case RESPONSE -> emit(OutboundChannel.RESPONSE, accountingResponseEmitter,
+                        objectMapper.readValue(spoolRecord.payload(), AccountingResponseEvent.class), spoolRecord.key(), false);
+                case CDR -> emit(OutboundChannel.CDR, accountingCDREventEmitter,
+                        objectMapper.readValue(spoolRecord.payload(), AccountingCDREvent.class), spoolRecord.key(), false);
+                case CDR_BINARY -> emit(OutboundChannel.CDR_BINARY, accountingCDRBinaryEmitter,
+                        spoolRecord.payload(), spoolRecord.key(), false);
+            };
+        } catch (IOException e) {
+            // a record that cannot be read back would block the spool forever, drop it
+            LOG.errorf(e, "Dropping unreadable spooled %s for key: %s", spoolRecord.channel().description(), spoolRecord.key());
+            return Uni.createFrom().voidItem();
+        }
+    }
+
+    /**
+     * Send one message and complete on its ack. When the spool is enabled, a message is appended
+     * to the spool instead if the channel is backed up, and also if the emitter refuses it, it is
+     * nacked or no ack arrives within {@code ack-timeout}; the Uni then completes once it is
+     * stored locally. A message that timed out may still be delivered late and then again by the
+     * relay, so spooled delivery is at-least-once. Resubscribing (retry) sends it again.
+     */
+    private <T> Uni<Void> emit(OutboundChannel channel, Emitter<T> emitter, T payload, String key, boolean spoolable) {
+        EventCost.kafkaSend();
+        if (spoolable && spool.shouldSpool(metrics.inFlight(channel)) && spoolMessage(channel, payload, key)) {
+            return Uni.createFrom().voidItem();
+        }
+        Uni<Void> send = send(channel, emitter, payload, key);
+        if (!spool.isEnabled()) {
+            return send;
+        }
+        // also bounds relayed sends, so a stalled broker cannot hold a relay run forever
+        Uni<Void> acked = send.ifNoItem().after(ackTimeout).failWith(() -> new TimeoutException(
+                "No ack for " + channel.description() + " within " + ackTimeout));
+        if (!spoolable) {
+            return acked;
+        }
+        return acked
+                .onFailure().recoverWithUni(throwable -> {
+                    if (spoolMessage(channel, payload, key)) {
+                        LOG.warnf("Spooled %s for session: %s after failed send: %s",
+                                channel.description(), key, throwable.getMessage());
+                        return Uni.createFrom().voidItem();
+                    }
+                    return Uni.createFrom().failure(throwable);
+                });
+    }
+
+    private <T> Uni<Void> send(OutboundChannel channel, Emitter<T> emitter, T payload, String key) {
+        // captured now: the caller's span is no longer current when the Uni is subscribed
+        Context traceContext = Context.current();
+        AtomicInteger attempts = new AtomicInteger();
+        return faultInjector.apply(FaultTarget.KAFKA, Uni.createFrom().emitter(em -> {
+            if (attempts.getAndIncrement() > 0) {
+                metrics.retried(channel);
+            }
+            long startTime = System.currentTimeMillis();
+            ProduceEvent event = ProduceEvent.start(channel.channelName(), key);
+            Message<T> message = Message.of(payload)
                     .addMetadata(OutgoingKafkaRecordMetadata.<String>builder()
-                            .withKey(event.getPayload().getSession().getSessionId())
+                            .withKey(key)
                             .build())
+                    .addMetadata(TracingMetadata.withCurrent(traceContext))
                     .withAck(() -> {
+                        long latency = System.currentTimeMillis() - startTime;
+                        metrics.acked(channel, latency);
+                        event.complete(true, latency);
                         em.complete(null);
-                        LOG.infof("Successfully sent accounting CDR event for session: %s, %d ms", event.getPayload().getSession().getSessionId(),System.currentTimeMillis()-startTime);
+                        LOG.infof("Successfully sent %s for session: %s, %d ms", channel.description(), key, latency);
                         return CompletableFuture.completedFuture(null);
                     })
                     .withNack(throwable -> {
-                        LOG.errorf("CDR Send failed: %s", throwable.getMessage());
+                        metrics.nacked(channel);
+                        event.complete(false, System.currentTimeMillis() - startTime);
+                        LOG.errorf("Failed to send %s: %s", channel.description(), throwable.getMessage());
                         em.fail(throwable);
                         return CompletableFuture.completedFuture(null);
                     });
 
-            accountingCDREventEmitter.send(message);
+            metrics.sent(channel);
+            try {
+                emitter.send(message);
+            } catch (Exception e) {
+                metrics.rejected(channel);
+                LOG.errorf(e, "Error producing %s for session: %s", channel.description(), key);
+                em.fail(e);
+            }
+        }));
+    }
+
+    private boolean spoolMessage(OutboundChannel channel, Object payload, String key) {
+        if (!spool.isEnabled()) {
+            return false;
+        }
+        try {
+            byte[] bytes = payload instanceof byte[] raw ? raw : objectMapper.writeValueAsBytes(payload);
+            return spool.append(channel, key, bytes);
+        } catch (JsonProcessingException e) {
+            LOG.errorf(e, "Unable to spool %s for session: %s", channel.description(), key);
+            return false;
+        }
+    }
+
+    private PendingAcks pendingScope() {
+        return mode == Mode.PIPELINED ? PendingAcks.current() : null;
+    }
+
+    /**
+     * Send now and complete immediately; the ack outcome is reported to the consumer's scope.
+     */
+    private static Uni<Void> handOff(Uni<Void> send, PendingAcks scope) {
+        scope.track();
+        send.subscribe().with(v -> scope.acked(), scope::nacked);
+        return Uni.createFrom().voidItem();
+    }
+
+    /**
+     * Fire-and-forget sends keep completing on ack for their callers, but are also held by
+     * the consumer's scope so the inbound offset is not committed before they are acked. Every
+     * subscription (a retry, a second subscriber) is one tracked message released exactly once;
+     * a Uni never subscribed is not tracked. A failed attempt nacks the scope even if it is
+     * retried, so the inbound event is redelivered rather than committed.
+     */
+    private Uni<Void> tracked(Uni<Void> send) {
+        PendingAcks scope = pendingScope();
+        if (scope == null) {
+            return send;
+        }
+        return Uni.createFrom().deferred(() -> {
+            AtomicBoolean released = new AtomicBoolean();
+            scope.track();
+            return send.onTermination().invoke((v, throwable, cancelled) -> {
+                if (!released.compareAndSet(false, true)) {
+                    return;
+                }
+                if (throwable != null) {
+                    scope.nacked(throwable);
+                } else if (cancelled) {
+                    scope.nacked(new CancellationException("Send cancelled before its ack"));
+                } else {
+                    scope.acked();
+                }
+            });
         });
     }
 
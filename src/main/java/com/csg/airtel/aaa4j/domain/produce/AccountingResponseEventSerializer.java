@@ -0,0 +1,223 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingResponseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.kafka.client.serialization.ObjectMapperSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Kafka serializer for {@link AccountingResponseEvent}. CoA events whose attributes are the
+ * usual username/sessionId/nasIP/framedIP set are written from pre-encoded byte templates,
+ * one per (action, message), filling in only the variable fields. The output is equivalent to
+ * the JSON Jackson produces, but attributes are always written in username, sessionId, nasIP,
+ * framedIP order, whereas Jackson follows the iteration order of the attribute map. Anything
+ * else falls back to the ObjectMapper serializer.
+ */
+public class AccountingResponseEventSerializer extends ObjectMapperSerializer<AccountingResponseEvent> {
+
+    private static final String ATTR_USERNAME = "username";
+    private static final String ATTR_SESSION_ID = "sessionId";
+    private static final String ATTR_NAS_IP = "nasIP";
+    private static final String ATTR_FRAMED_IP = "framedIP";
+
+    private static final byte[] EVENT_TIME = ascii("{\"eventType\":\"COA\",\"eventTime\":\"");
+    private static final byte[] SESSION_ID = ascii("\",\"sessionId\":\"");
+    private static final byte[] QUOTA = ascii(",\"totalQuotaBalance\":");
+    private static final byte[] ATTRIBUTES_START = ascii(",\"fupProfileId\":{\"username\":\"");
+    private static final byte[] ATTR_SESSION = ascii("\",\"sessionId\":\"");
+    private static final byte[] ATTR_NAS = ascii("\",\"nasIP\":\"");
+    private static final byte[] ATTR_FRAMED = ascii("\",\"framedIP\":\"");
+    private static final byte[] ATTRIBUTES_END = ascii("\"}}");
+    private static final byte[] NO_ATTRIBUTES = ascii(",\"fupProfileId\":{}}");
+    private static final byte[] NULL = ascii("null");
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    // ","action":"<action>","message":<message> per action and message text
+    private static final Map<TemplateKey, byte[]> TEMPLATES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private record TemplateKey(AccountingResponseEvent.ResponseAction action, String message) {
+    }
+
+    public AccountingResponseEventSerializer() {
+        super();
+    }
+
+    public AccountingResponseEventSerializer(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    public byte[] serialize(String topic, AccountingResponseEvent event) {
+        if (event == null || !isTemplated(event)) {
+            return super.serialize(topic, event);
+        }
+        Buffer buf = BUFFERS.get();
+        buf.reset();
+        buf.write(EVENT_TIME);
+        buf.writeTime(event.eventTime());
+        buf.write(SESSION_ID);
+        buf.writeEscaped(event.sessionId());
+        buf.write('"');
+        buf.write(TEMPLATES.computeIfAbsent(new TemplateKey(event.action(), event.message()),
+                AccountingResponseEventSerializer::actionAndMessage));
+        buf.write(QUOTA);
+        if (event.totalQuotaBalance() == null) {
+            buf.write(NULL);
+        } else {
+            buf.writeAscii(Long.toString(event.totalQuotaBalance()));
+        }
+        Map<String, String> attributes = event.qosParameters();
+        if (attributes.isEmpty()) {
+            buf.write(NO_ATTRIBUTES);
+        } else {
+            buf.write(ATTRIBUTES_START);
+            buf.writeEscaped(attributes.get(ATTR_USERNAME));
+            buf.write(ATTR_SESSION);
+            buf.writeEscaped(attributes.get(ATTR_SESSION_ID));
+            buf.write(ATTR_NAS);
+            buf.writeEscaped(attributes.get(ATTR_NAS_IP));
+            buf.write(ATTR_FRAMED);
+            buf.writeEscaped(attributes.get(ATTR_FRAMED_IP));
+            buf.write(ATTRIBUTES_END);
+        }
+        return buf.toByteArray();
+    }
+
+    private static boolean isTemplated(AccountingResponseEvent event) {
+        Map<String, String> attributes = event.qosParameters();
+        if (event.eventType() != AccountingResponseEvent.EventType.COA || event.eventTime() == null
+                || event.sessionId() == null || event.action() == null || attributes == null) {
+            return false;
+        }
+        return attributes.isEmpty()
+                || (attributes.size() == 4
+                && attributes.get(ATTR_USERNAME) != null
+                && attributes.get(ATTR_SESSION_ID) != null
+                && attributes.get(ATTR_NAS_IP) != null
+                && attributes.get(ATTR_FRAMED_IP) != null);
+    }
+
+    private static byte[] actionAndMessage(TemplateKey key) {
+        Buffer buf = new Buffer();
+        buf.writeAscii(",\"action\":\"");
+        buf.writeAscii(key.action().name());
+        buf.writeAscii("\",\"message\":");
+        if (key.message() == null) {
+            buf.write(NULL);
+        } else {
+            buf.write('"');
+            buf.writeEscaped(key.message());
+            buf.write('"');
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Growable per-thread scratch buffer; only the final copy is allocated per record.
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[384];
+        private int position;
+        private final StringBuilder time = new StringBuilder(32);
+
+        void reset() {
+            position = 0;
+        }
+
+        void write(int b) {
+            ensure(1);
+            bytes[position++] = (byte) b;
+        }
+
+        void write(byte[] chunk) {
+            ensure(chunk.length);
+            System.arraycopy(chunk, 0, bytes, position, chunk.length);
+            position += chunk.length;
+        }
+
+        void writeAscii(CharSequence value) {
+            int length = value.length();
+            ensure(length);
+            for (int i = 0; i < length; i++) {
+                bytes[position++] = (byte) value.charAt(i);
+            }
+        }
+
+        void writeTime(LocalDateTime value) {
+            time.setLength(0);
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME.formatTo(value, time);
+            writeAscii(time);
+        }
+
+        /**
+         * JSON string content with the escapes Jackson uses, without the surrounding quotes.
+         */
+        void writeEscaped(String value) {
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c >= 0x80) {
+                    write(value.substring(i).getBytes(StandardCharsets.UTF_8), true);
+                    return;
+                }
+                writeEscapedAscii(c);
+            }
+        }
+
+        private void write(byte[] utf8, boolean escape) {
+            for (byte b : utf8) {
+                if (escape && b >= 0) {
+                    writeEscapedAscii((char) b);
+                } else {
+                    write(b);
+                }
+            }
+        }
+
+        private void writeEscapedAscii(char c) {
+            if (c == '"' || c == '\\') {
+                write('\\');
+                write(c);
+            } else if (c < 0x20) {
+                switch (c) {
+                    case '\n' -> { write('\\'); write('n'); }
+                    case '\r' -> { write('\\'); write('r'); }
+                    case '\t' -> { write('\\'); write('t'); }
+                    case '\b' -> { write('\\'); write('b'); }
+                    case '\f' -> { write('\\'); write('f'); }
+                    default -> {
+                        write('\\');
+                        write('u');
+                        write('0');
+                        write('0');
+                        write(HEX[c >> 4]);
+                        write(HEX[c & 0xF]);
+                    }
+                }
+            } else {
+                write(c);
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + extra));
+            }
+        }
+    }
+}
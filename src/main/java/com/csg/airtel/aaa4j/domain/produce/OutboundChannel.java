@@ -0,0 +1,37 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingResponseEvent;
+import com.csg.airtel.aaa4j.domain.model.DBWriteRequest;
+import com.csg.airtel.aaa4j.domain.model.cdr.AccountingCDREvent;
+
+/**
+ * Outgoing channels of {@link AccountProducer}.
+ */
+public enum OutboundChannel {
+    DB_WRITE("db-write-events", "accounting DB create event", DBWriteRequest.class),
+    RESPONSE("accounting-resp-events", "accounting response event", AccountingResponseEvent.class),
+    CDR("accounting-cdr-events", "accounting CDR event", AccountingCDREvent.class),
+    CDR_BINARY("accounting-cdr-binary-events", "binary CDR event", byte[].class);
+
+    private final String channelName;
+    private final String description;
+    private final Class<?> payloadType;
+
+    OutboundChannel(String channelName, String description, Class<?> payloadType) {
+        this.channelName = channelName;
+        this.description = description;
+        this.payloadType = payloadType;
+    }
+
+    public String channelName() {
+        return channelName;
+    }
+
+    public String description() {
+        return description;
+    }
+
+    public Class<?> payloadType() {
+        return payloadType;
+    }
+}
@@ -0,0 +1,192 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only, memory-mapped local spool for outbound messages while Kafka is degraded.
+ * The file starts with the write and read positions (two longs) followed by records of
+ * {@code [int length][byte channel][short keyLength][key][payload]}. Records are drained in
+ * append order; the file is rewound once everything appended has been drained.
+ * Writes go to the page cache, so they survive a process crash but not a host crash.
+ */
+@ApplicationScoped
+public class OutboundSpool {
+
+    private static final Logger log = Logger.getLogger(OutboundSpool.class);
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_OVERHEAD = 4 + 1 + 2;
+
+    public record SpoolRecord(OutboundChannel channel, String key, byte[] payload, int nextPosition) {
+    }
+
+    private final boolean enabled;
+    private final int inFlightThreshold;
+    private final int capacity;
+    private final FileChannel file;
+    private final MappedByteBuffer buffer;
+    private final Counter appended;
+    private final Counter drained;
+    private final Counter rejected;
+
+    private volatile int writePosition = HEADER_BYTES;
+    private volatile int readPosition = HEADER_BYTES;
+
+    public OutboundSpool(MetricRegistry metricRegistry,
+                         @ConfigProperty(name = "accounting.spool.enabled", defaultValue = "false") boolean enabled,
+                         @ConfigProperty(name = "accounting.spool.path", defaultValue = "spool/outbound.spool") String path,
+                         @ConfigProperty(name = "accounting.spool.size-bytes", defaultValue = "268435456") int capacity,
+                         @ConfigProperty(name = "accounting.spool.in-flight-threshold", defaultValue = "1000") int inFlightThreshold) {
+        this.enabled = enabled;
+        this.inFlightThreshold = inFlightThreshold;
+        this.capacity = capacity;
+        this.appended = metricRegistry.counter("spool_appended_total");
+        this.drained = metricRegistry.counter("spool_drained_total");
+        this.rejected = metricRegistry.counter("spool_rejected_total");
+        if (!enabled) {
+            this.file = null;
+            this.buffer = null;
+            return;
+        }
+        try {
+            Path spoolPath = Path.of(path);
+            if (spoolPath.getParent() != null) {
+                Files.createDirectories(spoolPath.getParent());
+            }
+            this.file = FileChannel.open(spoolPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = file.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to open outbound spool " + path, e);
+        }
+        recoverPositions();
+        metricRegistry.gauge("spool_used_bytes", this::usedBytes);
+        metricRegistry.gauge("spool_fill_ratio", () -> (double) usedBytes() / (capacity - HEADER_BYTES));
+        log.infof("Outbound spool %s opened, %d bytes pending", path, usedBytes());
+    }
+
+    private void recoverPositions() {
+        long write = buffer.getLong(0);
+        long read = buffer.getLong(8);
+        if (write < HEADER_BYTES || write > capacity || read < HEADER_BYTES || read > write) {
+            writeHeader(HEADER_BYTES, HEADER_BYTES);
+        } else {
+            writePosition = (int) write;
+            readPosition = (int) read;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * New messages go to the spool only while the channel is backed up; otherwise they take the
+     * live path even when older messages are still spooled, and the relay drains those alongside.
+     * Spooled messages can therefore arrive after newer ones with the same key.
+     */
+    public boolean shouldSpool(int inFlight) {
+        return enabled && inFlight >= inFlightThreshold;
+    }
+
+    public boolean isEmpty() {
+        return readPosition == writePosition;
+    }
+
+    public long usedBytes() {
+        return (long) writePosition - readPosition;
+    }
+
+    /**
+     * @return false if the spool is disabled or has no room left
+     */
+    public synchronized boolean append(OutboundChannel channel, String key, byte[] payload) {
+        if (!enabled) {
+            return false;
+        }
+        byte[] keyBytes = key != null ? key.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        int length = RECORD_OVERHEAD + keyBytes.length + payload.length;
+        if (keyBytes.length > Short.MAX_VALUE || writePosition + length > capacity) {
+            rejected.inc();
+            log.warnf("Outbound spool full, %d bytes pending; %s not spooled", usedBytes(), channel.description());
+            return false;
+        }
+        int position = writePosition;
+        buffer.put(position + 4, (byte) channel.ordinal());
+        buffer.putShort(position + 5, (short) keyBytes.length);
+        buffer.put(position + RECORD_OVERHEAD, keyBytes);
+        buffer.put(position + RECORD_OVERHEAD + keyBytes.length, payload);
+        // length last: a record torn by a crash is beyond the stored write position and ignored
+        buffer.putInt(position, length);
+        writeHeader(position + length, readPosition);
+        appended.inc();
+        return true;
+    }
+
+    /**
+     * @return up to {@code max} of the oldest records, without removing them
+     */
+    public synchronized List<SpoolRecord> peek(int max) {
+        List<SpoolRecord> records = new ArrayList<>(Math.min(max, 64));
+        int position = readPosition;
+        OutboundChannel[] channels = OutboundChannel.values();
+        while (records.size() < max && position < writePosition) {
+            int length = buffer.getInt(position);
+            OutboundChannel channel = channels[buffer.get(position + 4)];
+            int keyLength = buffer.getShort(position + 5);
+            byte[] key = new byte[keyLength];
+            buffer.get(position + RECORD_OVERHEAD, key);
+            byte[] payload = new byte[length - RECORD_OVERHEAD - keyLength];
+            buffer.get(position + RECORD_OVERHEAD + keyLength, payload);
+            position += length;
+            records.add(new SpoolRecord(channel, keyLength > 0 ? new String(key, StandardCharsets.UTF_8) : null, payload, position));
+        }
+        return records;
+    }
+
+    /**
+     * Drop every record up to and including {@code last}.
+     */
+    public synchronized void commit(SpoolRecord last, int count) {
+        int read = last.nextPosition();
+        if (read >= writePosition) {
+            writeHeader(HEADER_BYTES, HEADER_BYTES);
+        } else {
+            writeHeader(writePosition, read);
+        }
+        drained.inc(count);
+    }
+
+    private void writeHeader(int write, int read) {
+        buffer.putLong(0, write);
+        buffer.putLong(8, read);
+        writePosition = write;
+        readPosition = read;
+    }
+
+    @PreDestroy
+    void close() {
+        if (file == null) {
+            return;
+        }
+        try {
+            buffer.force();
+            file.close();
+        } catch (IOException e) {
+            log.errorf(e, "Error closing outbound spool");
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.common.vertx.VertxContext;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Tracks the outbound messages and group document writes derived from one consumed event,
+ * whatever the producer mode; only pipelined producers track their sends. The scope is bound to the
+ * event's duplicated Vert.x context, so producers can find it without it being passed through
+ * the handlers. {@link #seal()} completes once every tracked send was acked, or fails with
+ * the first nack, which lets the consumer ack the inbound offset only after its outputs are durable.
+ */
+public final class PendingAcks {
+
+    private static final String CONTEXT_KEY = "aaa.pending-acks";
+
+    // starts at 1 for the handler itself, released by seal()
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    private PendingAcks() {
+    }
+
+    /**
+     * Open a scope for the event processed on the current context.
+     * @return the scope, or null if not running on a duplicated context
+     */
+    public static PendingAcks open() {
+        if (!VertxContext.isOnDuplicatedContext()) {
+            return null;
+        }
+        PendingAcks scope = new PendingAcks();
+        ContextLocals.put(CONTEXT_KEY, scope);
+        return scope;
+    }
+
+    /**
+     * @return the scope of the event processed on the current context, or null if there is none
+     */
+    public static PendingAcks current() {
+        if (!VertxContext.isOnDuplicatedContext()) {
+            return null;
+        }
+        return ContextLocals.<PendingAcks>get(CONTEXT_KEY).orElse(null);
+    }
+
+    /**
+     * Register one more outbound message or write; must be followed by exactly one {@link #acked()} or {@link #nacked(Throwable)}.
+     */
+    public void track() {
+        pending.incrementAndGet();
+    }
+
+    public void acked() {
+        release();
+    }
+
+    public void nacked(Throwable throwable) {
+        failure.compareAndSet(null, throwable);
+        release();
+    }
+
+    /**
+     * Called once the handler finished producing.
+     * @return stage completing when all tracked messages are acked, failing on the first nack
+     */
+    public CompletionStage<Void> seal() {
+        if (VertxContext.isOnDuplicatedContext()) {
+            ContextLocals.remove(CONTEXT_KEY);
+        }
+        release();
+        return done;
+    }
+
+    private void release() {
+        if (pending.decrementAndGet() == 0) {
+            Throwable throwable = failure.get();
+            if (throwable == null) {
+                done.complete(null);
+            } else {
+                done.completeExceptionally(throwable);
+            }
+        }
+    }
+}
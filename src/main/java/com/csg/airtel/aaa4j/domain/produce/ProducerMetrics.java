@@ -0,0 +1,74 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-channel producer metrics, tagged with the channel name: messages in flight (sent, not yet
+ * acked or nacked), emitter buffer occupancy, send-to-ack latency, nacks and re-sends.
+ * Buffer occupancy is in-flight over the emitter buffer size; the emitter does not expose its
+ * queue depth, and in-flight is an upper bound of it.
+ */
+@ApplicationScoped
+public class ProducerMetrics {
+
+    private final AtomicInteger[] inFlight;
+    private final Histogram[] ackLatency;
+    private final Counter[] nacks;
+    private final Counter[] retries;
+
+    public ProducerMetrics(MetricRegistry metricRegistry,
+                           @ConfigProperty(name = "mp.messaging.emitter.default-buffer-size", defaultValue = "128") int bufferSize) {
+        OutboundChannel[] channels = OutboundChannel.values();
+        this.inFlight = new AtomicInteger[channels.length];
+        this.ackLatency = new Histogram[channels.length];
+        this.nacks = new Counter[channels.length];
+        this.retries = new Counter[channels.length];
+        for (OutboundChannel channel : channels) {
+            int i = channel.ordinal();
+            Tag tag = new Tag("channel", channel.channelName());
+            AtomicInteger count = new AtomicInteger();
+            inFlight[i] = count;
+            ackLatency[i] = metricRegistry.histogram("producer_ack_latency_ms", tag);
+            nacks[i] = metricRegistry.counter("producer_nack_total", tag);
+            retries[i] = metricRegistry.counter("producer_retry_total", tag);
+            metricRegistry.gauge("producer_in_flight", count::get, tag);
+            metricRegistry.gauge("producer_buffer_occupancy", () -> Math.min(1.0, (double) count.get() / bufferSize), tag);
+        }
+    }
+
+    public int inFlight(OutboundChannel channel) {
+        return inFlight[channel.ordinal()].get();
+    }
+
+    public void sent(OutboundChannel channel) {
+        inFlight[channel.ordinal()].incrementAndGet();
+    }
+
+    /**
+     * The emitter refused the message, it never became in flight.
+     */
+    public void rejected(OutboundChannel channel) {
+        inFlight[channel.ordinal()].decrementAndGet();
+    }
+
+    public void acked(OutboundChannel channel, long latencyMs) {
+        inFlight[channel.ordinal()].decrementAndGet();
+        ackLatency[channel.ordinal()].update(latencyMs);
+    }
+
+    public void nacked(OutboundChannel channel) {
+        inFlight[channel.ordinal()].decrementAndGet();
+        nacks[channel.ordinal()].inc();
+    }
+
+    public void retried(OutboundChannel channel) {
+        retries[channel.ordinal()].inc();
+    }
+}
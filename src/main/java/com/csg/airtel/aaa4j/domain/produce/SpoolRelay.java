@@ -0,0 +1,81 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drains the {@link OutboundSpool} back to Kafka in append order, alongside the live sends. Each
+ * run sends batches back-to-back until the spool is empty, doubling the batch size after every
+ * acked batch so a large backlog is drained at broker speed, and stops early when a channel is
+ * backed up so the live path keeps priority. A batch is only dropped from the spool once all of
+ * it was acked; a failed batch is sent again on the next run, so delivery stays at-least-once.
+ */
+@ApplicationScoped
+public class SpoolRelay {
+
+    private static final Logger log = Logger.getLogger(SpoolRelay.class);
+
+    private final OutboundSpool spool;
+    private final AccountProducer accountProducer;
+    private final ProducerMetrics metrics;
+    private final int batchSize;
+    private final int maxBatchSize;
+
+    public SpoolRelay(OutboundSpool spool, AccountProducer accountProducer, ProducerMetrics metrics,
+                      @ConfigProperty(name = "accounting.spool.relay-batch-size", defaultValue = "200") int batchSize,
+                      @ConfigProperty(name = "accounting.spool.relay-max-batch-size", defaultValue = "5000") int maxBatchSize) {
+        this.spool = spool;
+        this.accountProducer = accountProducer;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.maxBatchSize = Math.max(batchSize, maxBatchSize);
+    }
+
+    @Scheduled(every = "${accounting.spool.relay-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> drain() {
+        if (!spool.isEnabled() || spool.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        return drainBatches(batchSize)
+                .onFailure().recoverWithItem(throwable -> {
+                    log.warnf("Spool relay paused, %d bytes pending: %s", spool.usedBytes(), throwable.getMessage());
+                    return null;
+                });
+    }
+
+    private Uni<Void> drainBatches(int size) {
+        if (liveBackedUp()) {
+            log.debugf("Spool relay yielding to live sends, %d bytes pending", spool.usedBytes());
+            return Uni.createFrom().voidItem();
+        }
+        List<OutboundSpool.SpoolRecord> records = spool.peek(size);
+        if (records.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<Uni<Void>> sends = new ArrayList<>(records.size());
+        for (OutboundSpool.SpoolRecord spoolRecord : records) {
+            sends.add(accountProducer.relay(spoolRecord));
+        }
+        return Uni.join().all(sends).andFailFast()
+                .invoke(() -> {
+                    spool.commit(records.get(records.size() - 1), records.size());
+                    log.debugf("Relayed %d spooled messages", records.size());
+                })
+                .chain(() -> drainBatches(Math.min(size * 2, maxBatchSize)));
+    }
+
+    private boolean liveBackedUp() {
+        for (OutboundChannel channel : OutboundChannel.values()) {
+            if (spool.shouldSpool(metrics.inFlight(channel))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
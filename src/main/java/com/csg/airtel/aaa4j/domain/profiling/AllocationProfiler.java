@@ -0,0 +1,75 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.jboss.logging.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampled bytes allocated by synchronous stages, read from the current thread's allocation
+ * counter. A stage must start and end on the same thread without yielding, so only the
+ * synchronous parts of the reactive pipeline (decode, encode, bucket selection, balance
+ * computation) are measured, not whole events. Reads are skipped for unsampled stages.
+ */
+@ApplicationScoped
+public class AllocationProfiler {
+
+    private static final Logger log = Logger.getLogger(AllocationProfiler.class);
+    public static final long NOT_SAMPLED = -1;
+
+    private final com.sun.management.ThreadMXBean threads;
+    private final MetricRegistry metricRegistry;
+    private final long sampleEvery;
+    private final AtomicLong calls = new AtomicLong();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public AllocationProfiler(MetricRegistry metricRegistry,
+                              @ConfigProperty(name = "profiling.allocation.sample-every", defaultValue = "0") long sampleEvery) {
+        this.metricRegistry = metricRegistry;
+        this.threads = supportedThreadBean(sampleEvery > 0);
+        this.sampleEvery = threads == null ? 0 : sampleEvery;
+    }
+
+    /**
+     * @return allocation counter of the current thread, or {@link #NOT_SAMPLED}
+     */
+    public long begin() {
+        if (sampleEvery <= 0 || calls.incrementAndGet() % sampleEvery != 0) {
+            return NOT_SAMPLED;
+        }
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Record the bytes allocated on the current thread since {@link #begin()}.
+     */
+    public void end(String stage, long begin) {
+        if (begin == NOT_SAMPLED) {
+            return;
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - begin;
+        histograms.computeIfAbsent(stage,
+                        s -> metricRegistry.histogram("stage_allocated_bytes", new Tag("stage", s)))
+                .update(allocated);
+    }
+
+    private static com.sun.management.ThreadMXBean supportedThreadBean(boolean requested) {
+        if (!requested) {
+            return null;
+        }
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
+        }
+        log.warn("Thread allocation counters are not supported, allocation profiling disabled");
+        return null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Selection of the bucket an event is charged to.
+ */
+@Name("aaa.BucketSelection")
+@Label("Bucket Selection")
+@Category({"AAA", "Accounting"})
+@Description("Selection of the bucket an event is charged to")
+public class BucketSelectionEvent extends Event {
+
+    @Label("Bucket Count")
+    int bucketCount;
+
+    @Label("Selected Bucket")
+    String selectedBucketId;
+
+    @Label("Index Rebuilt")
+    boolean indexRebuilt;
+
+    public static BucketSelectionEvent start(int bucketCount) {
+        BucketSelectionEvent event = new BucketSelectionEvent();
+        event.begin();
+        event.bucketCount = bucketCount;
+        return event;
+    }
+
+    public void indexRebuilt() {
+        this.indexRebuilt = true;
+    }
+
+    public void complete(String selectedBucketId) {
+        end();
+        if (shouldCommit()) {
+            this.selectedBucketId = selectedBucketId;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Read or write of a cached user document.
+ */
+@Name("aaa.CacheAccess")
+@Label("Cache Access")
+@Category({"AAA", "Redis"})
+@Description("Read or write of a cached user document")
+public class CacheAccessEvent extends Event {
+
+    public static final String GET = "get";
+    public static final String SET = "set";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Key")
+    String key;
+
+    @Label("Payload Size")
+    @DataAmount
+    long payloadBytes;
+
+    public static CacheAccessEvent start(String operation, String key) {
+        CacheAccessEvent event = new CacheAccessEvent();
+        event.begin();
+        event.operation = operation;
+        event.key = key;
+        return event;
+    }
+
+    /**
+     * @param payloadBytes size of the JSON read or written, 0 on a miss
+     */
+    public void complete(long payloadBytes) {
+        end();
+        if (shouldCommit()) {
+            this.payloadBytes = payloadBytes;
+            commit();
+        }
+    }
+}
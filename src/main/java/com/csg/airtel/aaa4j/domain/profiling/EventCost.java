@@ -0,0 +1,96 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.common.vertx.VertxContext;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Backend round trips and bytes spent on one consumed event. Like the pending acks, the cost is
+ * bound to the event's duplicated Vert.x context, so the clients add to it without it being
+ * passed through the handlers. Outside an event (REST, scheduled jobs) nothing is recorded.
+ */
+public final class EventCost {
+
+    private static final String CONTEXT_KEY = "aaa.event-cost";
+
+    private final AtomicInteger redisCommands = new AtomicInteger();
+    private final AtomicLong redisBytesRead = new AtomicLong();
+    private final AtomicLong redisBytesWritten = new AtomicLong();
+    private final AtomicInteger oracleQueries = new AtomicInteger();
+    private final AtomicInteger kafkaSends = new AtomicInteger();
+
+    private EventCost() {
+    }
+
+    /**
+     * Start recording the cost of the event processed on the current context.
+     * @return the cost, or null if not running on a duplicated context
+     */
+    public static EventCost open() {
+        if (!VertxContext.isOnDuplicatedContext()) {
+            return null;
+        }
+        EventCost cost = new EventCost();
+        ContextLocals.put(CONTEXT_KEY, cost);
+        return cost;
+    }
+
+    public static void redis(int commands, long bytesRead, long bytesWritten) {
+        EventCost cost = current();
+        if (cost != null) {
+            cost.redisCommands.addAndGet(commands);
+            cost.redisBytesRead.addAndGet(bytesRead);
+            cost.redisBytesWritten.addAndGet(bytesWritten);
+        }
+    }
+
+    public static void oracleQuery() {
+        EventCost cost = current();
+        if (cost != null) {
+            cost.oracleQueries.incrementAndGet();
+        }
+    }
+
+    public static void kafkaSend() {
+        EventCost cost = current();
+        if (cost != null) {
+            cost.kafkaSends.incrementAndGet();
+        }
+    }
+
+    private static EventCost current() {
+        if (!VertxContext.isOnDuplicatedContext()) {
+            return null;
+        }
+        return ContextLocals.<EventCost>get(CONTEXT_KEY).orElse(null);
+    }
+
+    public int redisCommands() {
+        return redisCommands.get();
+    }
+
+    public long redisBytesRead() {
+        return redisBytesRead.get();
+    }
+
+    public long redisBytesWritten() {
+        return redisBytesWritten.get();
+    }
+
+    public int oracleQueries() {
+        return oracleQueries.get();
+    }
+
+    public int kafkaSends() {
+        return kafkaSends.get();
+    }
+
+    @Override
+    public String toString() {
+        return "redisCommands=" + redisCommands + ", redisBytesRead=" + redisBytesRead
+                + ", redisBytesWritten=" + redisBytesWritten + ", oracleQueries=" + oracleQueries
+                + ", kafkaSends=" + kafkaSends;
+    }
+}
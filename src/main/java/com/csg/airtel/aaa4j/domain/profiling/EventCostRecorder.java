@@ -0,0 +1,76 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.Histogram;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.jboss.logging.Logger;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Publishes the {@link EventCost} of each consumed event as histograms per action type and
+ * flags events exceeding the round-trip budget.
+ */
+@ApplicationScoped
+public class EventCostRecorder {
+
+    private static final Logger log = Logger.getLogger(EventCostRecorder.class);
+
+    private record ActionMetrics(Histogram redisCommands, Histogram redisBytesRead, Histogram redisBytesWritten,
+                                 Histogram oracleQueries, Histogram kafkaSends, Counter overBudget) {
+    }
+
+    private final Map<AccountingRequestDto.ActionType, ActionMetrics> metrics =
+            new EnumMap<>(AccountingRequestDto.ActionType.class);
+    private final int maxRedisCommands;
+    private final int maxOracleQueries;
+    private final int maxKafkaSends;
+
+    public EventCostRecorder(MetricRegistry metricRegistry,
+                             @ConfigProperty(name = "event-cost.budget.redis-commands", defaultValue = "6") int maxRedisCommands,
+                             @ConfigProperty(name = "event-cost.budget.oracle-queries", defaultValue = "1") int maxOracleQueries,
+                             @ConfigProperty(name = "event-cost.budget.kafka-sends", defaultValue = "3") int maxKafkaSends) {
+        this.maxRedisCommands = maxRedisCommands;
+        this.maxOracleQueries = maxOracleQueries;
+        this.maxKafkaSends = maxKafkaSends;
+        for (AccountingRequestDto.ActionType actionType : AccountingRequestDto.ActionType.values()) {
+            Tag action = new Tag("action", actionType.name().toLowerCase(Locale.ROOT));
+            metrics.put(actionType, new ActionMetrics(
+                    metricRegistry.histogram("event_redis_commands", action),
+                    metricRegistry.histogram("event_redis_bytes_read", action),
+                    metricRegistry.histogram("event_redis_bytes_written", action),
+                    metricRegistry.histogram("event_oracle_queries", action),
+                    metricRegistry.histogram("event_kafka_sends", action),
+                    metricRegistry.counter("event_cost_over_budget_total", action)));
+        }
+    }
+
+    public void record(AccountingRequestDto request, EventCost cost) {
+        if (cost == null || request.actionType() == null) {
+            return;
+        }
+        ActionMetrics action = metrics.get(request.actionType());
+        action.redisCommands().update(cost.redisCommands());
+        action.redisBytesRead().update(cost.redisBytesRead());
+        action.redisBytesWritten().update(cost.redisBytesWritten());
+        action.oracleQueries().update(cost.oracleQueries());
+        action.kafkaSends().update(cost.kafkaSends());
+        if (isOverBudget(cost)) {
+            action.overBudget().inc();
+            log.warnf("%s of session %s exceeded the round-trip budget: %s",
+                    request.actionType(), request.sessionId(), cost);
+        }
+    }
+
+    public boolean isOverBudget(EventCost cost) {
+        return cost.redisCommands() > maxRedisCommands
+                || cost.oracleQueries() > maxOracleQueries
+                || cost.kafkaSends() > maxKafkaSends;
+    }
+}
@@ -0,0 +1,42 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Processing of one accounting event by its handler, from dispatch until the handler's Uni completes.
+ */
+@Name("aaa.HandlerDispatch")
+@Label("Handler Dispatch")
+@Category({"AAA", "Accounting"})
+@Description("Processing of one accounting event by its handler")
+public class HandlerDispatchEvent extends Event {
+
+    @Label("Action Type")
+    String actionType;
+
+    @Label("Session Id")
+    String sessionId;
+
+    @Label("Failed")
+    boolean failed;
+
+    public static HandlerDispatchEvent start(String actionType, String sessionId) {
+        HandlerDispatchEvent event = new HandlerDispatchEvent();
+        event.begin();
+        event.actionType = actionType;
+        event.sessionId = sessionId;
+        return event;
+    }
+
+    public void complete(boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.failed = failed;
+            commit();
+        }
+    }
+}
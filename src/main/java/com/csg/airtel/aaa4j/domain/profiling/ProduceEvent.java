@@ -0,0 +1,48 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * One outbound Kafka message, from hand-off to the emitter until the broker acked or nacked it.
+ */
+@Name("aaa.Produce")
+@Label("Produce")
+@Category({"AAA", "Kafka"})
+@Description("Outbound message from send until ack or nack")
+public class ProduceEvent extends Event {
+
+    @Label("Channel")
+    String channel;
+
+    @Label("Key")
+    String key;
+
+    @Label("Ack Latency")
+    @Timespan(Timespan.MILLISECONDS)
+    long ackLatencyMs;
+
+    @Label("Acked")
+    boolean acked;
+
+    public static ProduceEvent start(String channel, String key) {
+        ProduceEvent event = new ProduceEvent();
+        event.begin();
+        event.channel = channel;
+        event.key = key;
+        return event;
+    }
+
+    public void complete(boolean acked, long ackLatencyMs) {
+        end();
+        if (shouldCommit()) {
+            this.acked = acked;
+            this.ackLatencyMs = ackLatencyMs;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.csg.airtel.aaa4j.domain.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Oracle query issued by the bucket repository.
+ */
+@Name("aaa.RepositoryQuery")
+@Label("Repository Query")
+@Category({"AAA", "Oracle"})
+@Description("Oracle query issued by the bucket repository")
+public class RepositoryQueryEvent extends Event {
+
+    @Label("Query")
+    String query;
+
+    @Label("Row Count")
+    int rowCount;
+
+    @Label("Failed")
+    boolean failed;
+
+    public static RepositoryQueryEvent start(String query) {
+        RepositoryQueryEvent event = new RepositoryQueryEvent();
+        event.begin();
+        event.query = query;
+        return event;
+    }
+
+    public void complete(int rowCount) {
+        end();
+        if (shouldCommit()) {
+            this.rowCount = rowCount;
+            commit();
+        }
+    }
+
+    public void failed() {
+        end();
+        if (shouldCommit()) {
+            this.failed = true;
+            commit();
+        }
+    }
+}
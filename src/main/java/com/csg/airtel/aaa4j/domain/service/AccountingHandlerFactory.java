@@ -2,6 +2,7 @@ package com.csg.airtel.aaa4j.domain.service;
 
 
 import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.profiling.HandlerDispatchEvent;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -14,22 +15,31 @@ public class AccountingHandlerFactory {
     final StartHandler startHandler;
     final InterimHandler interimHandler;
     final StopHandler stopHandler;
+    final UserMutationMailbox mailbox;
+    final NasSessionTerminator nasSessionTerminator;
 
     @Inject
-    public AccountingHandlerFactory(StartHandler startHandler, InterimHandler interimHandler, StopHandler stopHandler) {
+    public AccountingHandlerFactory(StartHandler startHandler, InterimHandler interimHandler, StopHandler stopHandler,
+                                    UserMutationMailbox mailbox, NasSessionTerminator nasSessionTerminator) {
         this.startHandler = startHandler;
         this.interimHandler = interimHandler;
         this.stopHandler = stopHandler;
+        this.mailbox = mailbox;
+        this.nasSessionTerminator = nasSessionTerminator;
     }
 
     public Uni<Void> getHandler(AccountingRequestDto request,String traceId) {
         LOG.infof("[traceId: %s] Received accounting request for user: %s with action type: %s",
                 traceId, request.username(), request.actionType());
-        return switch (request.actionType()) {
-            case START -> startHandler.processAccountingStart(request,traceId);
-            case INTERIM_UPDATE -> interimHandler.handleInterim(request,traceId);
-            case STOP -> stopHandler.stopProcessing(request, null,traceId);
+        HandlerDispatchEvent event = HandlerDispatchEvent.start(request.actionType().name(), request.sessionId());
+        Uni<Void> handler = switch (request.actionType()) {
+            case START -> mailbox.submit(request.username(), () -> startHandler.processAccountingStart(request,traceId));
+            case INTERIM_UPDATE -> mailbox.submit(request.username(), () -> interimHandler.handleInterim(request,traceId));
+            case STOP -> mailbox.submit(request.username(), () -> stopHandler.stopProcessing(request, null,traceId));
+            // NAS-wide, serialized per user of each closed session
+            case ACCOUNTING_ON, ACCOUNTING_OFF -> nasSessionTerminator.onAccountingOnOff(request, traceId);
         };
+        return handler.onItemOrFailure().invoke((v, failure) -> event.complete(failure != null));
     }
 
 }
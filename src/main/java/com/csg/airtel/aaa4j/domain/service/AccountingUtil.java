@@ -5,19 +5,22 @@ import com.csg.airtel.aaa4j.domain.model.DBWriteRequest;
 import com.csg.airtel.aaa4j.domain.model.EventType;
 import com.csg.airtel.aaa4j.domain.model.UpdateResult;
 import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.BucketSelectionIndex;
 import com.csg.airtel.aaa4j.domain.model.session.ConsumptionRecord;
+import com.csg.airtel.aaa4j.domain.model.session.QuotaGrant;
 import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.model.session.TimeWindow;
 import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
 import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
+import com.csg.airtel.aaa4j.domain.profiling.AllocationProfiler;
+import com.csg.airtel.aaa4j.domain.profiling.BucketSelectionEvent;
 import com.csg.airtel.aaa4j.external.clients.CacheClient;
-import io.smallrye.mutiny.Multi;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.smallrye.mutiny.Uni;
-import io.smallrye.mutiny.infrastructure.Infrastructure;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.jboss.logging.Logger;
 
-import java.time.Duration;
-import java.time.LocalDate;
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
@@ -28,27 +31,76 @@ public class AccountingUtil {
 
     private static final Logger log = Logger.getLogger(AccountingUtil.class);
     private static final long GIGAWORD_MULTIPLIER = 4294967296L;
+    private static final Comparator<Balance> SELECTION_ORDER = Comparator
+            .comparingLong(Balance::getPriority)
+            .thenComparing(Balance::getBucketExpiryDate, Comparator.nullsLast(Comparator.naturalOrder()));
+    // users whose selection index is kept in memory; beyond that they are rebuilt on demand
+    private static final int SELECTION_INDEX_CACHE_SIZE = 100_000;
     private final AccountProducer accountProducer;
     private final CacheClient cacheClient;
+    private final Clock clock;
+    private final QuotaGrantManager quotaGrantManager;
+    private final CoaDispatcher coaDispatcher;
+    private final ExecutionPolicy executionPolicy;
+    private final SessionStatistics sessionStatistics;
+    private final ActiveSessionIndex activeSessionIndex;
+    private final AllocationProfiler allocationProfiler;
+    private final GroupBalanceWriter groupBalanceWriter;
+    private final SelectionIndexCache selectionIndexes = new SelectionIndexCache(SELECTION_INDEX_CACHE_SIZE);
 
+    /**
+     * The user's buckets followed by those of the user's group.
+     * @param version version of this combined list, 0 if it has none and its selection index is not cached
+     */
+    record CombinedBalances(List<Balance> balances, long version) {
+    }
 
-    public AccountingUtil(AccountProducer accountProducer, CacheClient utilCache) {
+    public AccountingUtil(AccountProducer accountProducer, CacheClient utilCache, Clock clock,
+                          QuotaGrantManager quotaGrantManager, CoaDispatcher coaDispatcher,
+                          ExecutionPolicy executionPolicy, SessionStatistics sessionStatistics,
+                          AllocationProfiler allocationProfiler, ActiveSessionIndex activeSessionIndex,
+                          GroupBalanceWriter groupBalanceWriter) {
         this.accountProducer = accountProducer;
         this.cacheClient = utilCache;
+        this.clock = clock;
+        this.quotaGrantManager = quotaGrantManager;
+        this.coaDispatcher = coaDispatcher;
+        this.executionPolicy = executionPolicy;
+        this.sessionStatistics = sessionStatistics;
+        this.allocationProfiler = allocationProfiler;
+        this.activeSessionIndex = activeSessionIndex;
+        this.groupBalanceWriter = groupBalanceWriter;
     }
 
     /**
+     * @param userName user whose cached selection index is used and refreshed
      * @param balances user related buckets balances
+     * @param bucketsVersion version of {@code balances}, see {@link UserSessionData#bucketsChanged()};
+     *                       0 to rebuild the selection index without caching it
      * @param bucketId specific bucket id to prioritize
+     * @param grant active quota grant of the session, counted as quota of its bucket; may be null
+     * @param now clock snapshot of the event being processed
      * @return return the balance with the highest priority
      */
-    public Uni<Balance> findBalanceWithHighestPriority(List<Balance> balances,String bucketId) {
+    @WithSpan("bucket.select")
+    public Uni<Balance> findBalanceWithHighestPriority(String userName, List<Balance> balances, long bucketsVersion,
+                                                       String bucketId, QuotaGrant grant, LocalDateTime now) {
         log.infof("Finding balance with highest priority from %d balances", balances.size());
-        return Uni.createFrom().item(() -> computeHighestPriority(balances,bucketId))
-                .runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+        return executionPolicy.run(() -> computeHighestPriority(userName, balances, bucketsVersion, bucketId, grant, now));
+    }
+
+    private Balance computeHighestPriority(String userName, List<Balance> balances, long bucketsVersion, String bucketId,
+                                           QuotaGrant grant, LocalDateTime now) {
+        BucketSelectionEvent event = BucketSelectionEvent.start(balances == null ? 0 : balances.size());
+        long allocation = allocationProfiler.begin();
+        Balance selected = selectHighestPriority(userName, balances, bucketsVersion, bucketId, grant, now, event);
+        allocationProfiler.end("bucket.select", allocation);
+        event.complete(selected == null ? null : selected.getBucketId());
+        return selected;
     }
 
-    private Balance computeHighestPriority(List<Balance> balances,String bucketId) {
+    private Balance selectHighestPriority(String userName, List<Balance> balances, long bucketsVersion, String bucketId,
+                                          QuotaGrant grant, LocalDateTime now, BucketSelectionEvent event) {
 
         if(bucketId!=null){
             for (Balance balance : balances) {
@@ -61,23 +113,32 @@ public class AccountingUtil {
             return null;
         }
 
-        return getBalance(balances);
+        BucketSelectionIndex index = selectionIndexes.get(userName, bucketsVersion, now);
+        if (index == null) {
+            index = buildSelectionIndex(balances, bucketsVersion, now);
+            selectionIndexes.put(userName, index);
+            event.indexRebuilt();
+        }
+
+        return getBalance(balances, index, grant, now);
 
     }
 
     /**
-     * Check if a balance is eligible for selection based on quota, time window, and consumption limit
+     * Check the parts of eligibility that change with every event: remaining quota and consumption limit.
+     * Status, start date, expiry and time window are covered by the selection index.
      * @param balance the balance to check
-     * @param timeWindow the time window string
+     * @param grant active quota grant of the session, whose remainder counts as quota of its bucket
+     * @param now clock snapshot of the event being processed
      * @return true if balance is eligible, false otherwise
      */
-    private  boolean isBalanceEligible(Balance balance, String timeWindow) {
+    private  boolean isBalanceEligible(Balance balance, QuotaGrant grant, LocalDateTime now) {
 
-        if (balance.getQuota() <= 0 || !isWithinTimeWindow(timeWindow)) {
-            return false;
+        long quota = balance.getQuota() + quotaGrantManager.reclaimable(balance, now);
+        if (grant != null && balance.getBucketId().equals(grant.getBucketId())) {
+            quota += grant.getRemaining();
         }
-
-        if(balance.getServiceExpiry().isBefore(LocalDateTime.now()) ) {
+        if (quota <= 0) {
             return false;
         }
 
@@ -85,7 +146,7 @@ public class AccountingUtil {
                 balance.getConsumptionLimitWindow() != null && balance.getConsumptionLimitWindow() > 0) {
 
             long windowHours = balance.getConsumptionLimitWindow();
-            long currentConsumption = calculateConsumptionInWindow(balance, windowHours);
+            long currentConsumption = calculateConsumptionInWindow(balance, windowHours, now);
 
             if (currentConsumption >= balance.getConsumptionLimit()) {
                 log.warnf("Skipping bucket %s: consumption limit already exceeded (current=%d, limit=%d)",
@@ -97,37 +158,66 @@ public class AccountingUtil {
         return true;
     }
 
-    private Balance getBalance(List<Balance> balances) {
+    private Balance getBalance(List<Balance> balances, BucketSelectionIndex index, QuotaGrant grant, LocalDateTime now) {
 
         Balance highest = null;
-        long highestPriority = Long.MIN_VALUE;
-        LocalDateTime highestExpiry = null;
-
-        for (Balance balance : balances) {
+        for (int position : index.getCandidates()) {
+            Balance balance = balances.get(position);
+            if (isBalanceEligible(balance, grant, now)) {
+                highest = balance;
+                break;
+            }
+        }
+        log.infof("Balance with highest priority selected: %s", highest != null ? highest.getBucketId() : "None");
+        return highest;
+    }
 
-            String timeWindow = balance.getTimeWindow(); // assume time window 6PM-6AM
+    /**
+     * Evaluate the time-based eligibility of every bucket once, keep the passing ones ordered by
+     * (priority, bucket expiry) and record the earliest instant at which any bucket can start or stop
+     * passing: a future start date, an expiry or the next time-window edge.
+     */
+    private BucketSelectionIndex buildSelectionIndex(List<Balance> balances, long version, LocalDateTime now) {
+        List<Integer> candidates = new ArrayList<>(balances.size());
+        LocalDateTime validUntil = now.plusDays(1);
 
-            // Skip balance if it doesn't meet all criteria
-            if (!isBalanceEligible(balance, timeWindow)) {
+        for (int i = 0; i < balances.size(); i++) {
+            Balance balance = balances.get(i);
+            if (!"Active".equals(balance.getServiceStatus())) {
                 continue;
             }
-
-            if((balance.getServiceStartDate().isBefore(LocalDateTime.now()) || balance.getServiceStartDate().isEqual(LocalDateTime.now()) )&& balance.getServiceStatus().equals("Active")) {
-                long priority = balance.getPriority();
-
-                LocalDateTime expiry = balance.getBucketExpiryDate();
-
-                if (highest == null || priority < highestPriority ||
-                        (priority == highestPriority && expiry != null &&
-                                (highestExpiry == null || expiry.isBefore(highestExpiry)))) {
-                    highest = balance;
-                    highestPriority = priority;
-                    highestExpiry = expiry;
+            LocalDateTime startDate = balance.getServiceStartDate();
+            if (startDate.isAfter(now)) {
+                validUntil = earliest(validUntil, startDate);
+                continue;
+            }
+            LocalDateTime expiry = balance.getServiceExpiry();
+            if (expiry.isBefore(now)) {
+                continue;
+            }
+            validUntil = earliest(validUntil, expiry);
+            try {
+                validUntil = earliest(validUntil, balance.compiledTimeWindow().nextEdgeAfter(now));
+                if (balance.compiledTimeWindow().contains(now.toLocalTime())) {
+                    candidates.add(i);
                 }
+            } catch (IllegalArgumentException e) {
+                log.warnf("Skipping bucket %s: invalid time window '%s'", balance.getBucketId(), balance.getTimeWindow());
             }
         }
-        log.infof("Balance with highest priority selected: %s", highest != null ? highest.getBucketId() : "None");
-        return highest;
+
+        candidates.sort((a, b) -> SELECTION_ORDER.compare(balances.get(a), balances.get(b)));
+        int[] ordered = new int[candidates.size()];
+        for (int i = 0; i < ordered.length; i++) {
+            ordered[i] = candidates.get(i);
+        }
+        log.debugf("Rebuilt bucket selection index: %d of %d candidates, valid until %s",
+                ordered.length, balances.size(), validUntil);
+        return new BucketSelectionIndex(version, ordered, validUntil);
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        return b.isBefore(a) ? b : a;
     }
 
 
@@ -137,23 +227,80 @@ public class AccountingUtil {
      * @param sessionData get individual session Data
      * @param request packet request
      * @param bucketId bucket id
+     * @param now clock snapshot of the event being processed
      * @return update results
      */
     public Uni<UpdateResult> updateSessionAndBalance(
             UserSessionData userData,
             Session sessionData,
             AccountingRequestDto request,
-            String bucketId) {
+            String bucketId,
+            LocalDateTime now) {
+        return getCombinedBalances(userData)
+                .onItem().transformToUni(combined ->
+                        updateSessionAndBalance(userData, sessionData, request, bucketId, now, combined));
+    }
+
+    /**
+     * As {@link #updateSessionAndBalance(UserSessionData, Session, AccountingRequestDto, String, LocalDateTime)},
+     * charging the buckets the caller already read with {@link #getCombinedBalances}.
+     */
+    Uni<UpdateResult> updateSessionAndBalance(
+            UserSessionData userData,
+            Session sessionData,
+            AccountingRequestDto request,
+            String bucketId,
+            LocalDateTime now,
+            CombinedBalances combined) {
 
         long totalUsage = calculateTotalUsage(request);
+        // a held grant counts as quota of its bucket, so the session keeps drawing from it only
+        // while that bucket is still the eligible one with the highest priority
+        QuotaGrant grant = quotaGrantManager.activeGrant(sessionData, now);
+
+        return findBalanceWithHighestPriority(request.username(), combined.balances(), combined.version(),
+                        bucketId, grant, now)
+                .onItem().transformToUni(foundBalance -> {
+                    long allocation = allocationProfiler.begin();
+                    Uni<UpdateResult> update = processBalanceUpdate(userData, sessionData, request, foundBalance, combined.balances(), totalUsage, now);
+                    allocationProfiler.end("balance.update", allocation);
+                    return update;
+                });
+    }
 
-        return getCombinedBalances(userData.getGroupId(), userData.getBalance())
-                .onItem().transformToUni(combinedBalances ->
-                        findBalanceWithHighestPriority(combinedBalances, bucketId)
-                                .onItem().transformToUni(foundBalance ->
-                                        processBalanceUpdate(userData, sessionData, request, foundBalance, combinedBalances, totalUsage)
-                                )
-                );
+    /**
+     * Close sessions that ended without a STOP, e.g. on a NAS reboot. Their usage was already
+     * accounted by the last interim: grants are handed back, the sessions are removed, every
+     * bucket they drew from gets one write through {@link #writeBalance}, the path a STOP takes,
+     * attributed to a session that drew from it, and the user's document is written once.
+     * @param userName user owning the sessions
+     * @param userData document of the user, updated in place
+     * @param sessions sessions of the document to close, not empty
+     */
+    public Uni<Void> closeSessions(String userName, UserSessionData userData, Collection<Session> sessions) {
+        return getCombinedBalances(userData)
+                .onItem().transformToUni(combined -> {
+                    List<Balance> combinedBalances = combined.balances();
+                    Map<Balance, String> touched = new LinkedHashMap<>();
+                    for (Session session : sessions) {
+                        Balance released = quotaGrantManager.release(session, combinedBalances);
+                        if (released != null) {
+                            touched.put(released, session.getSessionId());
+                        }
+                        Balance used = findBalanceByBucketId(combinedBalances, session.getPreviousUsageBucketId());
+                        if (used != null) {
+                            touched.putIfAbsent(used, session.getSessionId());
+                        }
+                        userData.getSessions().remove(session);
+                    }
+                    LocalDateTime now = LocalDateTime.now(clock);
+                    List<Uni<Void>> writes = new ArrayList<>(touched.size());
+                    touched.forEach((balance, sessionId) -> writes.add(writeBalance(balance, sessionId, userName, now)));
+                    Uni<Void> balanceWrites = writes.isEmpty()
+                            ? Uni.createFrom().voidItem()
+                            : Uni.join().all(writes).andCollectFailures().replaceWithVoid();
+                    return balanceWrites.chain(() -> cacheClient.updateUserAndRelatedCaches(userName, userData));
+                });
     }
 
     private long calculateTotalUsage(AccountingRequestDto request) {
@@ -171,24 +318,22 @@ public class AccountingUtil {
      * For other window sizes: falls back to simple sliding window
      *
      * @param windowHours number of hours for the consumption limit window (12 or 24)
+     * @param now clock snapshot of the event being processed
      * @return LocalDateTime representing the start of the consumption window
      */
-    private static LocalDateTime calculateWindowStartTime(long windowHours) {
-        LocalDateTime midnight = LocalDate.now().atTime(LocalTime.MIDNIGHT);
+    private static LocalDateTime calculateWindowStartTime(long windowHours, LocalDateTime now) {
+        LocalDateTime midnight = now.toLocalDate().atTime(LocalTime.MIDNIGHT);
 
         if (windowHours == 24) {
             return midnight;
         } else if (windowHours == 12) {
-            LocalTime noon = LocalTime.NOON;
-            LocalTime currentTime = LocalTime.now();
-
-            if (currentTime.isBefore(noon)) {
+            if (now.toLocalTime().isBefore(LocalTime.NOON)) {
                 return midnight;
             } else {
                 return midnight.plusHours(12);
             }
         } else {
-            return LocalDateTime.now().minusHours(windowHours);
+            return now.minusHours(windowHours);
         }
     }
 
@@ -196,13 +341,14 @@ public class AccountingUtil {
      * Clean up consumption records outside the time window
      * @param balance balance containing consumption history
      * @param windowHours number of hours for the consumption limit window
+     * @param now clock snapshot of the event being processed
      */
-    private void cleanupOldConsumptionRecords(Balance balance, long windowHours) {
+    private void cleanupOldConsumptionRecords(Balance balance, long windowHours, LocalDateTime now) {
         if (balance.getConsumptionHistory() == null || balance.getConsumptionHistory().isEmpty()) {
             return;
         }
 
-        LocalDateTime windowStartTime = calculateWindowStartTime(windowHours);
+        LocalDateTime windowStartTime = calculateWindowStartTime(windowHours, now);
         balance.getConsumptionHistory().removeIf(consumptionRecord ->
                 consumptionRecord.getTimestamp().isBefore(windowStartTime)
         );
@@ -215,15 +361,22 @@ public class AccountingUtil {
      * @return total bytes consumed within the window
      */
     public long calculateConsumptionInWindow(Balance balance, long windowHours) {
+        return calculateConsumptionInWindow(balance, windowHours, LocalDateTime.now(clock));
+    }
+
+    private long calculateConsumptionInWindow(Balance balance, long windowHours, LocalDateTime now) {
         if (balance.getConsumptionHistory() == null || balance.getConsumptionHistory().isEmpty()) {
             return 0L;
         }
 
-        LocalDateTime windowStartTime = calculateWindowStartTime(windowHours);
-        return balance.getConsumptionHistory().stream()
-                .filter(consumptionRecord -> consumptionRecord.getTimestamp().isAfter(windowStartTime))
-                .mapToLong(ConsumptionRecord::getBytesConsumed)
-                .sum();
+        LocalDateTime windowStartTime = calculateWindowStartTime(windowHours, now);
+        long total = 0L;
+        for (ConsumptionRecord consumptionRecord : balance.getConsumptionHistory()) {
+            if (consumptionRecord.getTimestamp().isAfter(windowStartTime)) {
+                total += consumptionRecord.getBytesConsumed();
+            }
+        }
+        return total;
     }
 
 
@@ -232,7 +385,7 @@ public class AccountingUtil {
      * @param balance balance to check
      * @return true if limit is exceeded, false otherwise
      */
-    private boolean isConsumptionLimitExceeded(Balance balance,long previousConsumption,long usageDelta) {
+    private boolean isConsumptionLimitExceeded(Balance balance,long previousConsumption,long usageDelta, LocalDateTime now) {
         // Check if consumption limit is configured
         if (balance.getConsumptionLimit() == null || balance.getConsumptionLimit() <= 0 ||
                 balance.getConsumptionLimitWindow() == null || balance.getConsumptionLimitWindow() <= 0) {
@@ -241,7 +394,7 @@ public class AccountingUtil {
 
         long windowHours = balance.getConsumptionLimitWindow();
 
-        cleanupOldConsumptionRecords(balance, windowHours);
+        cleanupOldConsumptionRecords(balance, windowHours, now);
 
         long currentConsumption = previousConsumption + usageDelta;
 
@@ -258,13 +411,14 @@ public class AccountingUtil {
      * Record new consumption in the balance's consumption history
      * @param balance balance to update
      * @param bytesConsumed bytes consumed in this update
+     * @param now clock snapshot of the event being processed
      */
-    private void recordConsumption(Balance balance, long bytesConsumed) {
+    private void recordConsumption(Balance balance, long bytesConsumed, LocalDateTime now) {
         if (balance.getConsumptionHistory() == null) {
             balance.setConsumptionHistory(new ArrayList<>());
         }
 
-        ConsumptionRecord consumptionRecord = new ConsumptionRecord(LocalDateTime.now(), bytesConsumed);
+        ConsumptionRecord consumptionRecord = new ConsumptionRecord(now, bytesConsumed);
         balance.getConsumptionHistory().add(consumptionRecord);
 
         log.debugf("Recorded consumption for bucket %s: %d bytes at %s",
@@ -272,14 +426,25 @@ public class AccountingUtil {
     }
 
 
-    private Uni<List<Balance>> getCombinedBalances(String groupId, List<Balance> userBalances) {
-        return getGroupBucket(groupId)
-                .onItem().transform(groupBalances -> {
-                    List<Balance> combined = new ArrayList<>(userBalances);
+    Uni<CombinedBalances> getCombinedBalances(UserSessionData userData) {
+        if (userData.getBucketsVersion() == 0) {
+            // document written before versions existed or rebuilt from Oracle; the version is
+            // stored with the document at the end of the event
+            userData.bucketsChanged();
+        }
+        return getGroupBucket(userData.getGroupId())
+                .onItem().transform(groupData -> {
+                    List<Balance> combined = new ArrayList<>(userData.getBalance());
+                    if (groupData == null) {
+                        return new CombinedBalances(combined, userData.getBucketsVersion());
+                    }
+                    List<Balance> groupBalances = groupData.getBalance();
                     if (groupBalances != null && !groupBalances.isEmpty()) {
                         combined.addAll(groupBalances);
                     }
-                    return combined;
+                    long groupVersion = groupData.getBucketsVersion();
+                    return new CombinedBalances(combined,
+                            groupVersion == 0 ? 0 : 31 * userData.getBucketsVersion() + groupVersion);
                 });
     }
 
@@ -289,11 +454,13 @@ public class AccountingUtil {
             AccountingRequestDto request,
             Balance foundBalance,
             List<Balance> combinedBalances,
-            long totalUsage) {
+            long totalUsage,
+            LocalDateTime now) {
 
         if (foundBalance == null) {
             log.warnf("No valid balance found for user: %s", request.username());
-            return Uni.createFrom().item(UpdateResult.failure("error"));
+            return releaseIneligibleGrant(userData, sessionData, request, combinedBalances, now)
+                    .replaceWith(UpdateResult.failure("error"));
         }
 
         String previousUsageBucketId = getPreviousUsageBucketId(sessionData, foundBalance);
@@ -316,6 +483,11 @@ public class AccountingUtil {
             usageDelta = 0;
         }
 
+        if (!bucketChanged && quotaGrantManager.appliesTo(foundBalance, request)) {
+            return processWithQuotaGrant(userData, sessionData, request, foundBalance, previousUsageBucketId, totalUsage, usageDelta, now);
+        }
+        // leaving grant accounting: hand any reserved slice back before debiting the bucket directly
+        quotaGrantManager.release(sessionData, combinedBalances);
 
         long newQuota = updateQuotaForBucketChange(
                 userData, sessionData, foundBalance, combinedBalances,
@@ -327,12 +499,12 @@ public class AccountingUtil {
             long windowHours = foundBalance.getConsumptionLimitWindow();
 
 
-            long previousConsumption = calculateConsumptionInWindow(foundBalance, windowHours);
+            long previousConsumption = calculateConsumptionInWindow(foundBalance, windowHours, now);
             if (previousConsumption < foundBalance.getConsumptionLimit()) {
-                recordConsumption(foundBalance, usageDelta);
+                recordConsumption(foundBalance, usageDelta, now);
             }
 
-            if (isConsumptionLimitExceeded(foundBalance,previousConsumption,usageDelta)) {
+            if (isConsumptionLimitExceeded(foundBalance,previousConsumption,usageDelta, now)) {
                 log.warnf("Consumption limit exceeded for user: %s, bucket: %s. Triggering disconnect.",
                         request.username(), foundBalance.getBucketId());
 
@@ -346,21 +518,97 @@ public class AccountingUtil {
 
                 // Trigger CoA disconnect due to consumption limit exceeded
 
-                return handleConsumptionLimitExceeded(userData, request, foundBalance, result);
+                return handleConsumptionLimitExceeded(userData, request, foundBalance, result, now);
             }
         }
 
-        updateSessionData(sessionData, foundBalance, totalUsage, request.sessionTime());
+        updateSessionData(sessionData, foundBalance, totalUsage, request);
 
         UpdateResult result = UpdateResult.success(newQuota, foundBalance.getBucketId(), foundBalance, previousUsageBucketId);
 
         if (shouldDisconnectSession(result, foundBalance, previousUsageBucketId)) {
-            return handleSessionDisconnect(userData, request, foundBalance, result);
+            return handleSessionDisconnect(userData, request, foundBalance, result, now);
+        }
+
+        return updateCacheForNormalOperation(userData, request, foundBalance, result);
+    }
+
+    /**
+     * Hand the grant of a session that no bucket is eligible for back to its bucket, so the
+     * slice is not locked up until the session stops.
+     */
+    private Uni<Void> releaseIneligibleGrant(UserSessionData userData, Session sessionData,
+                                             AccountingRequestDto request, List<Balance> combinedBalances,
+                                             LocalDateTime now) {
+        Balance released = quotaGrantManager.release(sessionData, combinedBalances);
+        if (released == null) {
+            return Uni.createFrom().voidItem();
+        }
+        log.infof("Released grant of session %s on ineligible bucket %s", sessionData.getSessionId(), released.getBucketId());
+        return updateBalanceInDatabase(released, released.getQuota(), request.sessionId(), released.getBucketUsername(), request.username(), now)
+                .chain(() -> cacheClient.updateUserAndRelatedCaches(request.username(), userData))
+                .onFailure().invoke(err ->
+                        log.errorf(err, "Error releasing grant for session: %s", sessionData.getSessionId()));
+    }
+
+    /**
+     * Interim/stop accounting for a shared bucket through the session's quota grant. While the
+     * grant covers the usage only the member's own document is written; the shared bucket is
+     * rewritten when the grant is exhausted, expired, or released on STOP.
+     */
+    private Uni<UpdateResult> processWithQuotaGrant(
+            UserSessionData userData,
+            Session sessionData,
+            AccountingRequestDto request,
+            Balance foundBalance,
+            String previousUsageBucketId,
+            long totalUsage,
+            long usageDelta,
+            LocalDateTime now) {
+
+        boolean stopping = request.actionType() == AccountingRequestDto.ActionType.STOP;
+
+        if (!stopping && quotaGrantManager.tryDebitLocally(sessionData, foundBalance, usageDelta, now)) {
+            updateSessionData(sessionData, foundBalance, totalUsage, request);
+            userData.getSessions().add(sessionData);
+            long available = foundBalance.getQuota() + sessionData.getQuotaGrant().getRemaining();
+            UpdateResult result = UpdateResult.success(available, foundBalance.getBucketId(), foundBalance, previousUsageBucketId);
+            return cacheClient.updateUserAndRelatedCaches(request.username(), userData)
+                    .onFailure().invoke(err ->
+                            log.errorf(err, "Error updating cache for user: %s", request.username()))
+                    .replaceWith(result);
+        }
+
+        long available = quotaGrantManager.settle(sessionData, foundBalance, usageDelta, now, stopping);
+        if (available <= 0) {
+            log.warnf("Quota depleted for session: %s", sessionData.getSessionId());
+        }
+        updateSessionData(sessionData, foundBalance, totalUsage, request);
+        userData.getSessions().add(sessionData);
+
+        UpdateResult result = UpdateResult.success(Math.max(available, 0), foundBalance.getBucketId(), foundBalance, previousUsageBucketId);
+
+        if (shouldDisconnectSession(result, foundBalance, previousUsageBucketId)) {
+            return handleSessionDisconnect(userData, request, foundBalance, result, now);
         }
 
         return updateCacheForNormalOperation(userData, request, foundBalance, result);
     }
 
+    /**
+     * Return the grants other sessions of this user hold on the bucket before the sessions are dropped.
+     * @return quota handed back to the bucket
+     */
+    private long releaseSessionGrants(UserSessionData userData, Balance balance) {
+        long released = 0;
+        for (Session session : userData.getSessions()) {
+            if (session.getQuotaGrant() != null && balance.getBucketId().equals(session.getQuotaGrant().getBucketId())) {
+                released += quotaGrantManager.takeBack(session, balance);
+            }
+        }
+        return released;
+    }
+
     private String getPreviousUsageBucketId(Session sessionData, Balance foundBalance) {
         String previousId = sessionData.getPreviousUsageBucketId();
         return previousId != null ? previousId : foundBalance.getBucketId();
@@ -402,7 +650,7 @@ public class AccountingUtil {
 
         long newQuota = getNewQuota(sessionData, previousBalance, totalUsage);
         previousBalance.setQuota(Math.max(newQuota, 0));
-        replaceInCollection(userData.getBalance(), previousBalance);
+        replaceBalance(userData, previousBalance);
 
         log.infof("Updated previous bucket %s quota to %d",
                 previousBalance.getBucketId(), previousBalance.getQuota());
@@ -423,15 +671,17 @@ public class AccountingUtil {
         }
 
         foundBalance.setQuota(Math.max(newQuota, 0));
-        replaceInCollection(userData.getBalance(), foundBalance);
-        replaceInCollection(userData.getSessions(), sessionData);
+        replaceBalance(userData, foundBalance);
+        userData.getSessions().add(sessionData);
 
         return newQuota;
     }
 
-    private void updateSessionData(Session sessionData, Balance foundBalance, long totalUsage, Integer sessionTime) {
+    private void updateSessionData(Session sessionData, Balance foundBalance, long totalUsage, AccountingRequestDto request) {
         sessionData.setPreviousTotalUsageQuotaValue(totalUsage);
-        sessionData.setSessionTime(sessionTime);
+        sessionData.setPreviousInputBytes(calculateTotalOctets(request.inputOctets(), request.inputGigaWords()));
+        sessionData.setPreviousOutputBytes(calculateTotalOctets(request.outputOctets(), request.outputGigaWords()));
+        sessionData.setSessionTime(request.sessionTime());
         sessionData.setPreviousUsageBucketId(foundBalance.getBucketId());
     }
 
@@ -443,17 +693,21 @@ public class AccountingUtil {
             UserSessionData userData,
             AccountingRequestDto request,
             Balance foundBalance,
-            UpdateResult result) {
+            UpdateResult result,
+            LocalDateTime now) {
 
         if (!foundBalance.getBucketUsername().equals(request.username())) {
-            userData.getBalance().remove(foundBalance);
+            removeBalance(userData, foundBalance);
         }
+        long remainingQuota = result.newQuota() + releaseSessionGrants(userData, foundBalance);
 
         // Clear all sessions and send COA disconnect for all sessions
         return clearAllSessionsAndSendCOA(userData, request.username())
-                .chain(() -> updateBalanceInDatabase(foundBalance, result.newQuota(), request.sessionId(), foundBalance.getBucketUsername(),request.username()))
+                .chain(() -> updateBalanceInDatabase(foundBalance, remainingQuota, request.sessionId(), foundBalance.getBucketUsername(),request.username(), now))
                 .invoke(() -> {
                     log.infof("Successfully cleared all sessions and updated balance for user: %s", request.username());
+                    sessionStatistics.sessionsClosed(List.copyOf(userData.getSessions()));
+                    activeSessionIndex.sessionsClosed(request.username(), userData.getGroupId(), List.copyOf(userData.getSessions()));
                     userData.getSessions().clear(); // Clear all sessions from userData
                 })
                 .chain(() -> cacheClient.updateUserAndRelatedCaches(request.username(), userData))
@@ -468,26 +722,30 @@ public class AccountingUtil {
      * @param request accounting request
      * @param foundBalance balance that exceeded the limit
      * @param result update result
+     * @param now clock snapshot of the event being processed
      * @return Uni<UpdateResult>
      */
     private Uni<UpdateResult> handleConsumptionLimitExceeded(
             UserSessionData userData,
             AccountingRequestDto request,
             Balance foundBalance,
-            UpdateResult result) {
+            UpdateResult result,
+            LocalDateTime now) {
 
         log.warnf("Consumption limit exceeded for user: %s, bucket: %s. Disconnecting all sessions.",
                 request.username(), foundBalance.getBucketId());
 
         if (!foundBalance.getBucketUsername().equals(request.username())) {
-            userData.getBalance().remove(foundBalance);
+            removeBalance(userData, foundBalance);
         }
 
         // Clear all sessions and send COA disconnect for all sessions due to consumption limit
         return clearAllSessionsAndSendCOA(userData, request.username())
-                .chain(() -> updateBalanceInDatabase(foundBalance, foundBalance.getQuota(), request.sessionId(), foundBalance.getBucketUsername(), request.username()))
+                .chain(() -> updateBalanceInDatabase(foundBalance, foundBalance.getQuota(), request.sessionId(), foundBalance.getBucketUsername(), request.username(), now))
                 .invoke(() -> {
                     log.infof("Successfully disconnected all sessions for user: %s due to consumption limit exceeded", request.username());
+                    sessionStatistics.sessionsClosed(List.copyOf(userData.getSessions()));
+                    activeSessionIndex.sessionsClosed(request.username(), userData.getGroupId(), List.copyOf(userData.getSessions()));
                     userData.getSessions().clear(); // Clear all sessions from userData
                 })
                 .chain(() -> cacheClient.updateUserAndRelatedCaches(request.username(), userData))
@@ -523,15 +781,11 @@ public class AccountingUtil {
 
     private Uni<UpdateResult> getUpdateResultUni(UserSessionData userData, AccountingRequestDto request, Balance foundBalance, UpdateResult success) {
         if(!foundBalance.getBucketUsername().equals(request.username())) {
-            userData.getBalance().remove(foundBalance);
-            UserSessionData userSessionGroupData = new UserSessionData();
-            userSessionGroupData.setBalance(List.of(foundBalance));
-            return cacheClient.updateUserAndRelatedCaches(foundBalance.getBucketUsername(), userSessionGroupData)
+            removeBalance(userData, foundBalance);
+            groupBalanceWriter.write(foundBalance.getBucketUsername(), foundBalance);
+            return cacheClient.updateUserAndRelatedCaches(request.username(), userData)
                     .onFailure().invoke(err ->
-                            log.errorf(err, "Error updating Group Balance cache for user: %s", foundBalance.getBucketUsername()))
-                    .chain(() -> cacheClient.updateUserAndRelatedCaches(request.username(), userData)
-                            .onFailure().invoke(err ->
-                                    log.errorf(err, "Error updating cache for user: %s", request.username())))
+                            log.errorf(err, "Error updating cache for user: %s", request.username()))
                     .replaceWith(success);
         }else {
             return cacheClient.updateUserAndRelatedCaches(request.username(), userData)
@@ -553,9 +807,23 @@ public class AccountingUtil {
         return foundBalance.getQuota() - usageDelta;
     }
 
-    private <T> void replaceInCollection(Collection<T> collection, T element) {
-        collection.removeIf(item -> item.equals(element));
-        collection.add(element);
+    /**
+     * Put a charged bucket back into the user's list in place, so the cached selection index
+     * keeps matching. A group's bucket is not in the list; it is written through
+     * {@link GroupBalanceWriter}.
+     */
+    private static void replaceBalance(UserSessionData userData, Balance balance) {
+        List<Balance> balances = userData.getBalance();
+        int position = balances.indexOf(balance);
+        if (position >= 0) {
+            balances.set(position, balance);
+        }
+    }
+
+    private static void removeBalance(UserSessionData userData, Balance balance) {
+        if (userData.getBalance().remove(balance)) {
+            userData.bucketsChanged();
+        }
     }
 
     /**
@@ -565,28 +833,7 @@ public class AccountingUtil {
      * @return Uni<Void>
      */
     private Uni<Void> clearAllSessionsAndSendCOA(UserSessionData userSessionData, String username) {
-        return Multi.createFrom().iterable(userSessionData.getSessions())
-                .onItem().transformToUniAndConcatenate(
-                        session -> accountProducer.produceAccountingResponseEvent(
-                                        MappingUtil.createResponse(
-                                                session.getSessionId(),
-                                                "Disconnect",
-                                                session.getNasIp(),
-                                                session.getFramedId(),
-                                                username
-                                        )
-                                )
-                                .onFailure().retry()
-                                .withBackOff(Duration.ofMillis(100), Duration.ofSeconds(2))
-                                .atMost(2)
-                                .onFailure().invoke(failure ->
-                                        log.errorf(failure, "Failed to produce disconnect event for session: %s", session.getSessionId())
-                                )
-                                .onFailure().recoverWithNull()
-                )
-                .collect().asList()
-                .ifNoItem().after(Duration.ofSeconds(45)).fail()
-                .replaceWithVoid();
+        return coaDispatcher.disconnectSessions(username, userSessionData.getSessions());
     }
 
     /**
@@ -595,23 +842,26 @@ public class AccountingUtil {
      * @param newQuota new quota value
      * @param sessionId session ID
      * @param userName username
+     * @param now clock snapshot of the event being processed
      * @return Uni<Void>
      */
-    private Uni<Void> updateBalanceInDatabase(Balance balance, long newQuota, String sessionId, String bucketUser, String userName) {
+    private Uni<Void> updateBalanceInDatabase(Balance balance, long newQuota, String sessionId, String bucketUser, String userName,
+                                              LocalDateTime now) {
         Map<String, Object> columnValues = new HashMap<>();
         Map<String, Object> whereConditions = new HashMap<>();
 
         // Update balance with new quota
         balance.setQuota(Math.max(newQuota, 0));
 
-        populateColumnValues(columnValues, balance);
+        populateColumnValues(columnValues, balance, now);
         populateWhereConditions(whereConditions, balance);
 
         DBWriteRequest dbWriteRequest = buildDBWriteRequest(
                 sessionId,
                 columnValues,
                 whereConditions,
-                userName
+                userName,
+                now
         );
 
         return updateGroupBalanceBucket(balance,bucketUser,userName)
@@ -622,91 +872,93 @@ public class AccountingUtil {
                 );
     }
 
+    /**
+     * Write a bucket as it stands after an event: one BUCKET_INSTANCE update event, and for a
+     * shared bucket its stored balance written back to the group.
+     * @param balance bucket charged by the event
+     * @param sessionId session of the event
+     * @param userName user of the event
+     * @param now clock snapshot of the event being processed
+     */
+    public Uni<Void> writeBalance(Balance balance, String sessionId, String userName, LocalDateTime now) {
+        return updateBalanceInDatabase(balance, balance.getQuota(), sessionId, balance.getBucketUsername(), userName, now);
+    }
+
     private long calculateTotalOctets(long octets, long gigawords) {
         return (gigawords * GIGAWORD_MULTIPLIER) + octets;
     }
 
     private Uni<Void> updateGroupBalanceBucket(Balance balance, String bucketUsername,String username) {
         if(!username.equals(bucketUsername)) {
-            UserSessionData userSessionData = new UserSessionData();
-            userSessionData.setBalance(List.of(balance));
-            return cacheClient.updateUserAndRelatedCaches(bucketUsername,userSessionData)
-                    .onFailure().invoke(throwable ->
-                            log.errorf(throwable, "Failed to Update Cache group for balance update, groupId: %s", bucketUsername)
-                    );
+            groupBalanceWriter.write(bucketUsername, balance);
         }
         return Uni.createFrom().voidItem();
     }
 
     /**
-     *
-     * @param timeWindow time window string in format "HH-HH" where HH is 0-24
-     * @return true if current time is within the window, false otherwise
-     * @throws IllegalArgumentException if the format is invalid
+     * @param balances buckets to check
+     * @param excludedBucketId bucket not to consider, may be null
+     * @return true if any other bucket is active, within its dates and time window, and has quota left
      */
-    public boolean isWithinTimeWindow(String timeWindow) {
-        if (timeWindow == null || timeWindow.trim().isEmpty()) {
-            throw new IllegalArgumentException("Time window string cannot be null or empty");
-        }
-
-        String[] times = timeWindow.split("-");
-
-        if (times.length != 2) {
-            log.errorf("Invalid time window: %s", timeWindow);
-            throw new IllegalArgumentException("Invalid time window format. Expected format: 'HH-HH' (e.g., '00-24', '08-18', '0-12')");
+    public boolean hasEligibleBalance(List<Balance> balances, String excludedBucketId) {
+        if (balances == null) {
+            return false;
         }
-
-        LocalTime startTime = parseHourOnly(times[0].trim());
-        LocalTime endTime = parseHourOnly(times[1].trim());
-        LocalTime currentTime = LocalTime.now();
-
-        if (startTime.isAfter(endTime)) {
-
-            return !currentTime.isBefore(startTime) || !currentTime.isAfter(endTime);
-        } else {
-            return !currentTime.isBefore(startTime) && !currentTime.isAfter(endTime);
+        LocalDateTime now = LocalDateTime.now(clock);
+        for (Balance balance : balances) {
+            if (!balance.getBucketId().equals(excludedBucketId) && isUsable(balance, now)
+                    && isBalanceEligible(balance, null, now)) {
+                return true;
+            }
         }
+        return false;
     }
 
     /**
-     *
-     * @param timeStr the time string (e.g., "0", "8", "24")
-     * @return LocalTime representing the hour (24 becomes 23:59:59)
-     * @throws IllegalArgumentException if format is invalid or hour is out of range
+     * Time-based eligibility of a bucket, regardless of its remaining quota.
+     * @return true if the bucket is active, within its start and expiry dates and inside its time window
      */
-    private static LocalTime parseHourOnly(String timeStr) {
-        timeStr = timeStr.trim();
-        if (timeStr.isEmpty()) {
-            throw new IllegalArgumentException("Time string cannot be empty");
+    public static boolean isUsable(Balance balance, LocalDateTime now) {
+        if (!"Active".equals(balance.getServiceStatus())
+                || balance.getServiceStartDate() == null || balance.getServiceStartDate().isAfter(now)
+                || balance.getServiceExpiry() == null || balance.getServiceExpiry().isBefore(now)) {
+            return false;
         }
         try {
-            int hour = Integer.parseInt(timeStr);
-            if (hour == 24) {
-                return LocalTime.of(23, 59, 59);
-            }
-            if (hour < 0 || hour > 23) {
-                throw new IllegalArgumentException("Hour must be between 0 and 24, got: " + hour);
-            }
-
-            return LocalTime.of(hour, 0);
-
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Unable to parse hour: " + timeStr +
-                    ". Expected format: single or double digit hour (0-24)", e);
+            return balance.compiledTimeWindow().contains(now.toLocalTime());
+        } catch (IllegalArgumentException e) {
+            log.warnf("Skipping bucket %s: invalid time window '%s'", balance.getBucketId(), balance.getTimeWindow());
+            return false;
         }
     }
 
-    private Uni<List<Balance>> getGroupBucket(String groupId) {
-        Uni<List<Balance>> balanceListUni;
+    /**
+     *
+     * @param timeWindow time window string in format "HH-HH" where HH is 0-24
+     * @return true if current time is within the window, false otherwise
+     * @throws IllegalArgumentException if the format is invalid
+     */
+    public boolean isWithinTimeWindow(String timeWindow) {
+        return TimeWindow.of(timeWindow).contains(LocalTime.now(clock));
+    }
+
+    private Uni<UserSessionData> getGroupBucket(String groupId) {
+        Uni<UserSessionData> groupDataUni;
 
         if (!Objects.equals(groupId, "1") &&  !Objects.equals(groupId, null)) {
-            balanceListUni = cacheClient.getUserData(groupId)
+            groupDataUni = cacheClient.getUserData(groupId)
                     .onItem()
-                    .transform(UserSessionData::getBalance);
+                    .invoke(groupData -> {
+                        List<Balance> groupBalances = groupData == null ? null : groupData.getBalance();
+                        if (groupBalances != null) {
+                            // written back through GroupBalanceWriter as changes since this read
+                            groupBalances.forEach(Balance::markRead);
+                        }
+                    });
         } else {
-            balanceListUni = Uni.createFrom().item(new ArrayList<>());
+            groupDataUni = Uni.createFrom().nullItem();
         }
-        return balanceListUni;
+        return groupDataUni;
     }
 
 
@@ -716,10 +968,14 @@ public class AccountingUtil {
         whereConditions.put("ID", balance.getBucketId());
     }
 
-    private void populateColumnValues(Map<String, Object> columnValues, Balance balance) {
-        columnValues.put("CURRENT_BALANCE", balance.getQuota());
-        columnValues.put("USAGE", balance.getInitialBalance()- balance.getQuota());
-        columnValues.put("UPDATED_AT", LocalDateTime.now());
+    private void populateColumnValues(Map<String, Object> columnValues, Balance balance, LocalDateTime now) {
+        // quota reserved by grants is not used yet, so it stays part of the stored balance
+        long currentBalance = balance.getQuota() + balance.reservedQuota();
+        columnValues.put("CURRENT_BALANCE", currentBalance);
+        columnValues.put("USAGE", balance.getInitialBalance() - currentBalance);
+        columnValues.put("UPDATED_AT", now);
+        // lets the change feed tell this write from changes made by other systems
+        balance.markStored(currentBalance, now);
     }
 
     // Extract to builder method for clarity and reusability
@@ -727,7 +983,8 @@ public class AccountingUtil {
             String sessionId,
             Map<String, Object> columnValues,
             Map<String, Object> whereConditions,
-            String userName) {
+            String userName,
+            LocalDateTime now) {
 
         DBWriteRequest dbWriteRequest = new DBWriteRequest();
         dbWriteRequest.setSessionId(sessionId);
@@ -736,8 +993,8 @@ public class AccountingUtil {
         dbWriteRequest.setWhereConditions(whereConditions);
         dbWriteRequest.setColumnValues(columnValues);
         dbWriteRequest.setTableName("BUCKET_INSTANCE");
-        dbWriteRequest.setEventId(UUID.randomUUID().toString());
-        dbWriteRequest.setTimestamp(LocalDateTime.now());
+        dbWriteRequest.setEventId(EventIdGenerator.nextId());
+        dbWriteRequest.setTimestamp(now);
 
         return dbWriteRequest;
     }
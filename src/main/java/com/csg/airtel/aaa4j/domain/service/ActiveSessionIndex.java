@@ -0,0 +1,76 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient.SessionRef;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the NAS and group indexes of (user, session) in step with the user documents, so all
+ * sessions of a NAS or of a group can be found without scanning every user. Updates are
+ * fire-and-forget; entries that are missed are dropped by {@link NasSessionTerminator} and
+ * {@link GroupExhaustionCoordinator} when they find the session gone.
+ */
+@ApplicationScoped
+public class ActiveSessionIndex {
+
+    private static final Logger log = Logger.getLogger(ActiveSessionIndex.class);
+    private static final String NO_GROUP = "1";
+
+    private final SessionIndexClient indexClient;
+
+    public ActiveSessionIndex(SessionIndexClient indexClient) {
+        this.indexClient = indexClient;
+    }
+
+    /**
+     * @return true if the id names a shared group, users without group carry "1" or null
+     */
+    public static boolean isGroup(String groupId) {
+        return groupId != null && !NO_GROUP.equals(groupId);
+    }
+
+    public void sessionOpened(String userName, String groupId, Session session) {
+        SessionRef ref = new SessionRef(userName, session.getSessionId());
+        if (session.getNasIp() != null) {
+            subscribe(indexClient.addNasSession(session.getNasIp(), ref), "index", 1, "NAS " + session.getNasIp());
+        }
+        if (isGroup(groupId)) {
+            subscribe(indexClient.addGroupSession(groupId, ref), "index", 1, "group " + groupId);
+        }
+    }
+
+    public void sessionsClosed(String userName, String groupId, Collection<Session> sessions) {
+        if (sessions == null || sessions.isEmpty()) {
+            return;
+        }
+        Map<String, List<SessionRef>> byNas = new LinkedHashMap<>();
+        List<SessionRef> refs = new ArrayList<>(sessions.size());
+        for (Session session : sessions) {
+            SessionRef ref = new SessionRef(userName, session.getSessionId());
+            refs.add(ref);
+            if (session.getNasIp() != null) {
+                byNas.computeIfAbsent(session.getNasIp(), k -> new ArrayList<>()).add(ref);
+            }
+        }
+        byNas.forEach((nasIp, nasRefs) ->
+                subscribe(indexClient.removeNasSessions(nasIp, nasRefs), "unindex", nasRefs.size(), "NAS " + nasIp));
+        if (isGroup(groupId)) {
+            subscribe(indexClient.removeGroupSessions(groupId, refs), "unindex", refs.size(), "group " + groupId);
+        }
+    }
+
+    private static void subscribe(Uni<Void> update, String action, int count, String index) {
+        update.subscribe().with(
+                v -> { },
+                e -> log.warnf("Failed to %s %d sessions of %s: %s", action, count, index, e.getMessage()));
+    }
+}
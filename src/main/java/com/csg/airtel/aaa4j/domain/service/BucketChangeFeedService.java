@@ -0,0 +1,267 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.BucketFeedCursor;
+import com.csg.airtel.aaa4j.domain.model.ServiceBucketInfo;
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.csg.airtel.aaa4j.external.repository.UserBucketRepository;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Polls BUCKET_INSTANCE/SERVICE_INSTANCE for rows changed since a persisted cursor
+ * and applies only those buckets to users that are already cached. Users without a
+ * cache entry are skipped; they pick up the change from Oracle on their next miss.
+ * Rows that only carry this service's own DB writes are skipped as well. A top-up that
+ * brings a group's exhausted bucket back lifts the group-wide cut-off of its members.
+ */
+@ApplicationScoped
+public class BucketChangeFeedService {
+
+    private static final Logger log = Logger.getLogger(BucketChangeFeedService.class);
+
+    private final UserBucketRepository userRepository;
+    private final CacheClient cacheClient;
+    private final UserMutationMailbox mailbox;
+    private final GroupExhaustionCoordinator groupExhaustionCoordinator;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration maxLag;
+
+    private final Counter appliedBuckets;
+    private final Counter skippedBuckets;
+    private final Map<Feed, Long> lagMs = new ConcurrentHashMap<>();
+
+    /**
+     * Bucket rows and service rows are polled separately, each on its own UPDATED_AT, so each
+     * query ranges over one indexed column; a service change reaches all of its buckets.
+     */
+    private enum Feed {
+        BUCKETS(""),
+        SERVICES(":service");
+
+        private final String key;
+
+        Feed(String key) {
+            this.key = key;
+        }
+    }
+
+    public BucketChangeFeedService(UserBucketRepository userRepository,
+                                   CacheClient cacheClient,
+                                   UserMutationMailbox mailbox,
+                                   GroupExhaustionCoordinator groupExhaustionCoordinator,
+                                   MetricRegistry metricRegistry,
+                                   @ConfigProperty(name = "bucket-feed.enabled", defaultValue = "true") boolean enabled,
+                                   @ConfigProperty(name = "bucket-feed.batch-size", defaultValue = "500") int batchSize,
+                                   @ConfigProperty(name = "bucket-feed.max-batches-per-run", defaultValue = "20") int maxBatchesPerRun,
+                                   @ConfigProperty(name = "bucket-feed.max-lag", defaultValue = "PT1M") Duration maxLag) {
+        this.userRepository = userRepository;
+        this.cacheClient = cacheClient;
+        this.mailbox = mailbox;
+        this.groupExhaustionCoordinator = groupExhaustionCoordinator;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.maxLag = maxLag;
+        this.appliedBuckets = metricRegistry.counter("bucket_feed_applied_buckets");
+        this.skippedBuckets = metricRegistry.counter("bucket_feed_skipped_buckets");
+        metricRegistry.gauge("bucket_feed_lag_ms",
+                () -> lagMs.values().stream().mapToLong(Long::longValue).max().orElse(0L));
+    }
+
+    @Scheduled(every = "${bucket-feed.interval:5s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> poll() {
+        if (!enabled) {
+            return Uni.createFrom().voidItem();
+        }
+        return cacheClient.getBucketFeedCursor(Feed.BUCKETS.key)
+                .onItem().transformToUni(bucketCursor -> {
+                    if (bucketCursor == null) {
+                        // UPDATED_AT of external changes comes from the database clock, not ours
+                        return userRepository.getDatabaseTime()
+                                .onItem().transformToUni(start -> {
+                                    log.infof("No bucket feed watermark found, starting from %s", start);
+                                    BucketFeedCursor cursor = BucketFeedCursor.startingAt(start);
+                                    return cacheClient.storeBucketFeedCursor(Feed.BUCKETS.key, cursor)
+                                            .chain(() -> cacheClient.storeBucketFeedCursor(Feed.SERVICES.key, cursor));
+                                });
+                    }
+                    return pollBatches(Feed.BUCKETS, bucketCursor, 0)
+                            .chain(() -> cacheClient.getBucketFeedCursor(Feed.SERVICES.key))
+                            .onItem().transformToUni(serviceCursor -> pollBatches(Feed.SERVICES,
+                                    serviceCursor != null ? serviceCursor : BucketFeedCursor.startingAt(bucketCursor.changedAt()),
+                                    0));
+                })
+                .onFailure().recoverWithItem(throwable -> {
+                    log.errorf(throwable, "Bucket change feed poll failed");
+                    return null;
+                });
+    }
+
+    /**
+     * Rows come in cursor order and the cursor moves to the last row of each batch, so rows
+     * sharing a change time with the end of a full batch are read by the next batch.
+     */
+    private Uni<Void> pollBatches(Feed feed, BucketFeedCursor cursor, int batchNumber) {
+        Uni<List<ServiceBucketInfo>> batch = feed == Feed.BUCKETS
+                ? userRepository.getChangedBuckets(cursor, batchSize)
+                : userRepository.getChangedServiceBuckets(cursor, batchSize);
+        return batch
+                .onItem().transformToUni(changes -> {
+                    if (changes.isEmpty()) {
+                        lagMs.put(feed, 0L);
+                        return Uni.createFrom().voidItem();
+                    }
+                    boolean fullBatch = changes.size() >= batchSize;
+                    BucketFeedCursor next = BucketFeedCursor.after(changes.get(changes.size() - 1));
+                    return applyChanges(changes)
+                            .chain(() -> cacheClient.storeBucketFeedCursor(feed.key, next))
+                            .chain(() -> {
+                                updateLag(feed, next.changedAt(), fullBatch);
+                                if (fullBatch && batchNumber + 1 < maxBatchesPerRun) {
+                                    return pollBatches(feed, next, batchNumber + 1);
+                                }
+                                return Uni.createFrom().voidItem();
+                            });
+                });
+    }
+
+    private void updateLag(Feed feed, LocalDateTime watermark, boolean behind) {
+        long lag = behind ? Math.max(0, Duration.between(watermark, LocalDateTime.now()).toMillis()) : 0;
+        lagMs.put(feed, lag);
+        if (lag > maxLag.toMillis()) {
+            log.warnf("Bucket change feed (%s) is %d ms behind, exceeding max lag of %d ms", feed, lag, maxLag.toMillis());
+        }
+    }
+
+    private Uni<Void> applyChanges(List<ServiceBucketInfo> changes) {
+        Map<String, List<ServiceBucketInfo>> changesByUser = new LinkedHashMap<>();
+        for (ServiceBucketInfo change : changes) {
+            changesByUser.computeIfAbsent(change.getBucketUser(), k -> new ArrayList<>()).add(change);
+        }
+
+        return mailbox.submitAll(changesByUser.keySet(), () -> cacheClient.getUserDataBatch(new ArrayList<>(changesByUser.keySet()))
+                .onItem().transformToUni(cachedUsers -> {
+                    Map<String, UserSessionData> updated = new HashMap<>(cachedUsers.size());
+                    Map<String, List<String>> restored = new HashMap<>();
+                    changesByUser.forEach((userName, userChanges) -> {
+                        UserSessionData userData = cachedUsers.get(userName);
+                        if (userData == null) {
+                            skippedBuckets.inc(userChanges.size());
+                            return;
+                        }
+                        int applied = applyToUser(userData, userChanges,
+                                bucketId -> restored.computeIfAbsent(userName, k -> new ArrayList<>()).add(bucketId));
+                        appliedBuckets.inc(applied);
+                        skippedBuckets.inc(userChanges.size() - applied);
+                        if (applied > 0) {
+                            updated.put(userName, userData);
+                        }
+                    });
+                    log.infof("Bucket change feed applied changes to %d of %d users",
+                            updated.size(), changesByUser.size());
+                    return cacheClient.updateUserDataBatch(updated)
+                            .invoke(() -> restored.forEach((userName, bucketIds) -> bucketIds.forEach(
+                                    bucketId -> groupExhaustionCoordinator.quotaRestored(userName, bucketId))));
+                }));
+    }
+
+    /**
+     * @param restored receives the ids of buckets whose quota went from zero to positive
+     * @return number of changes applied, the others were this service's own writes
+     */
+    private int applyToUser(UserSessionData userData, List<ServiceBucketInfo> userChanges, Consumer<String> restored) {
+        List<Balance> balances = userData.getBalance() != null
+                ? new ArrayList<>(userData.getBalance())
+                : new ArrayList<>();
+        int applied = 0;
+
+        for (ServiceBucketInfo change : userChanges) {
+            Balance incoming = MappingUtil.createBalance(change);
+            String bucketId = incoming.getBucketId();
+            Balance cached = null;
+            int index = -1;
+            for (int i = 0; i < balances.size(); i++) {
+                if (bucketId.equals(balances.get(i).getBucketId())) {
+                    cached = balances.get(i);
+                    index = i;
+                    break;
+                }
+            }
+            if (cached == null) {
+                balances.add(incoming);
+                applied++;
+                continue;
+            }
+            if (mergeBalance(cached, incoming)) {
+                balances.set(index, incoming);
+                applied++;
+                if (cached.getQuota() <= 0 && incoming.getQuota() > 0) {
+                    restored.accept(bucketId);
+                }
+            }
+        }
+        if (applied > 0) {
+            userData.setBalance(balances);
+            userData.bucketsChanged();
+        }
+        return applied;
+    }
+
+    /**
+     * Redis holds the live quota and Oracle only catches up through the DB-write events, so a
+     * row is this service's own write-back when it is not newer than the last write the bucket
+     * recorded, and must not roll the cached quota back. A newer row whose CURRENT_BALANCE
+     * differs from the last one written or read was changed by another system (top-up, plan
+     * change): the difference is added to the cached quota, which keeps the usage accounted
+     * since. The cache-only state (reservations, consumption history, read snapshot) is kept.
+     * @param incoming bucket as read from the row, replaces the cached one if merged
+     * @return false if the row carries no change for the cache
+     */
+    private static boolean mergeBalance(Balance cached, Balance incoming) {
+        long rowBalance = incoming.getStoredBalance();
+        LocalDateTime rowUpdatedAt = incoming.getStoredAt();
+        boolean ownWrite = cached.getStoredAt() != null
+                && (rowUpdatedAt == null || !rowUpdatedAt.isAfter(cached.getStoredAt()));
+        long topUp = ownWrite ? 0L : rowBalance - cached.storedBalanceOrQuota();
+        if (topUp == 0 && sameTerms(cached, incoming)) {
+            return false;
+        }
+        incoming.copyCacheState(cached);
+        incoming.setQuota(Math.max(cached.getQuota() + topUp, 0L));
+        if (!ownWrite) {
+            incoming.markStored(rowBalance, rowUpdatedAt);
+        }
+        if (topUp != 0) {
+            log.infof("Bucket %s of %s changed outside this service by %d", incoming.getBucketId(),
+                    incoming.getBucketUsername(), topUp);
+        }
+        return true;
+    }
+
+    private static boolean sameTerms(Balance cached, Balance incoming) {
+        return Objects.equals(cached.getInitialBalance(), incoming.getInitialBalance())
+                && Objects.equals(cached.getPriority(), incoming.getPriority())
+                && Objects.equals(cached.getServiceStatus(), incoming.getServiceStatus())
+                && Objects.equals(cached.getServiceStartDate(), incoming.getServiceStartDate())
+                && Objects.equals(cached.getServiceExpiry(), incoming.getServiceExpiry())
+                && Objects.equals(cached.getBucketExpiryDate(), incoming.getBucketExpiryDate())
+                && Objects.equals(cached.getTimeWindow(), incoming.getTimeWindow())
+                && Objects.equals(cached.getConsumptionLimit(), incoming.getConsumptionLimit())
+                && Objects.equals(cached.getConsumptionLimitWindow(), incoming.getConsumptionLimitWindow());
+    }
+}
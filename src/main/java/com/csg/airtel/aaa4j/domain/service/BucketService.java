@@ -1,26 +1,58 @@
 package com.csg.airtel.aaa4j.domain.service;
 
+import com.csg.airtel.aaa4j.domain.model.BulkBucketOperation;
 import com.csg.airtel.aaa4j.domain.model.response.ApiResponse;
+import com.csg.airtel.aaa4j.domain.model.response.BulkBucketResult;
 import com.csg.airtel.aaa4j.domain.model.session.Balance;
 
 import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
 import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.mutiny.Multi;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
 
+import java.time.Duration;
 import java.time.Instant;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @ApplicationScoped
 public class BucketService {
     private static final Logger log = Logger.getLogger(BucketService.class);
     private final CacheClient cacheClient;
+    private final UserMutationMailbox mailbox;
+    private final GroupExhaustionCoordinator groupExhaustionCoordinator;
+    private final ObjectMapper objectMapper;
+    private final int bulkWindowSize;
+    private final Duration bulkWindowTimeout;
+    private final int bulkConcurrency;
 
-    public BucketService(CacheClient cacheClient) {
+    public BucketService(CacheClient cacheClient, UserMutationMailbox mailbox,
+                         GroupExhaustionCoordinator groupExhaustionCoordinator, ObjectMapper objectMapper,
+                         @ConfigProperty(name = "bucket-bulk.window-size", defaultValue = "200") int bulkWindowSize,
+                         @ConfigProperty(name = "bucket-bulk.window-timeout", defaultValue = "PT0.2S") Duration bulkWindowTimeout,
+                         @ConfigProperty(name = "bucket-bulk.concurrency", defaultValue = "8") int bulkConcurrency) {
         this.cacheClient = cacheClient;
+        this.mailbox = mailbox;
+        this.groupExhaustionCoordinator = groupExhaustionCoordinator;
+        this.objectMapper = objectMapper;
+        this.bulkWindowSize = bulkWindowSize;
+        this.bulkWindowTimeout = bulkWindowTimeout;
+        this.bulkConcurrency = bulkConcurrency;
+    }
+
+    /**
+     * A parsed bulk line, or the reason it was rejected.
+     */
+    private record BulkLine(long line, BulkBucketOperation operation, String error) {
+        boolean isBlank() {
+            return operation == null && error == null;
+        }
     }
 
     public Uni<ApiResponse<Balance>> addBucketBalance(String userName, Balance balance) {
@@ -32,7 +64,7 @@ public class BucketService {
             return Uni.createFrom().item(createErrorResponse("Balance is required"));
         }
 
-        return cacheClient.getUserData(userName)
+        return mailbox.submit(userName, () -> cacheClient.getUserData(userName)
                 .onItem().transformToUni(userData -> {
                     // Create defensive copy with null-safe handling
                     List<Balance> newBalances = new ArrayList<>(
@@ -44,10 +76,11 @@ public class BucketService {
                     UserSessionData updatedUserData = userData.toBuilder()
                             .balance(Collections.unmodifiableList(newBalances))
                             .build();
+                    updatedUserData.bucketsChanged();
 
                     return cacheClient.updateUserAndRelatedCaches(userName, updatedUserData)
                             .onItem().transform(result -> createSuccessResponse(balance));
-                })
+                }))
                 .onFailure().recoverWithItem(throwable -> {
                     log.errorf("Failed to add balance for user {}: {}",
                             userName, throwable.getMessage(), throwable);
@@ -75,7 +108,7 @@ public class BucketService {
             return Uni.createFrom().item(createErrorResponse("Balance serviceId must match the provided serviceId"));
         }
 
-        return cacheClient.getUserData(userName)
+        return mailbox.submit(userName, () -> cacheClient.getUserData(userName)
                 .onItem().transformToUni(userData -> {
                     if (userData == null) {
                         return Uni.createFrom().item(createErrorResponse("User not found"));
@@ -85,6 +118,7 @@ public class BucketService {
                             ? new ArrayList<>(userData.getBalance())
                             : new ArrayList<>();
 
+                    List<String> exhausted = exhaustedBuckets(balanceList, serviceId);
                     balanceList.removeIf(b -> b.getServiceId().equals(serviceId));
 
                     balanceList.add(balance);
@@ -92,14 +126,16 @@ public class BucketService {
                     UserSessionData updatedUserData = userData.toBuilder()
                             .balance(Collections.unmodifiableList(balanceList))
                             .build();
+                    updatedUserData.bucketsChanged();
 
                     return cacheClient.updateUserAndRelatedCaches(userName, updatedUserData)
                             .onItem().transform(result -> {
                                 log.infof("Successfully updated balance for user %s, serviceId %s",
                                         userName, serviceId);
+                                quotaRestored(userName, exhausted, balance);
                                 return createSuccessResponse(balance);
                             });
-                })
+                }))
                 .onFailure().recoverWithItem(throwable -> {
                     log.errorf("Failed to update balance for user %s: %s",
                             userName, throwable.getMessage(), throwable);
@@ -110,6 +146,152 @@ public class BucketService {
     }
 
 
+    /**
+     * Apply NDJSON bucket operations. Lines are spread over {@code bucket-bulk.concurrency} lanes by
+     * user, so all operations of one user stay in order in a single lane. Each lane works in windows:
+     * one MGET for the users of the window, all of a user's operations applied to one copy, then the
+     * SETs of the window pipelined together.
+     * @param lines NDJSON lines of {@link BulkBucketOperation}
+     * @return one result per non-blank line, in completion order
+     */
+    public Multi<BulkBucketResult> applyBulk(Multi<String> lines) {
+        AtomicLong lineNumber = new AtomicLong();
+        return lines
+                .onItem().transform(line -> parseLine(lineNumber.incrementAndGet(), line))
+                .select().where(line -> !line.isBlank())
+                .group().by(line -> lane(line.operation()))
+                .onItem().transformToMulti(lane -> lane
+                        .group().intoLists().of(bulkWindowSize, bulkWindowTimeout)
+                        .onItem().transformToUniAndConcatenate(this::applyWindow)
+                        .onItem().transformToIterable(results -> results))
+                .merge(bulkConcurrency);
+    }
+
+    private int lane(BulkBucketOperation operation) {
+        String userName = operation != null ? operation.userName() : null;
+        return userName == null ? 0 : Math.floorMod(userName.hashCode(), bulkConcurrency);
+    }
+
+    private BulkLine parseLine(long line, String json) {
+        if (json == null || json.isBlank()) {
+            return new BulkLine(line, null, null);
+        }
+        BulkBucketOperation operation;
+        try {
+            operation = objectMapper.readValue(json, BulkBucketOperation.class);
+        } catch (Exception e) {
+            return new BulkLine(line, null, "Invalid line: " + e.getMessage());
+        }
+        return new BulkLine(line, operation, validate(operation));
+    }
+
+    private static String validate(BulkBucketOperation operation) {
+        if (operation.userName() == null || operation.userName().isBlank()) {
+            return "Username is required";
+        }
+        if (operation.operation() == null) {
+            return "Operation is required";
+        }
+        if (operation.balance() == null) {
+            return "Balance is required";
+        }
+        if (operation.operation() == BulkBucketOperation.Operation.UPDATE) {
+            if (operation.serviceId() == null || operation.serviceId().isBlank()) {
+                return "Service Id is required";
+            }
+            if (!operation.serviceId().equals(operation.balance().getServiceId())) {
+                return "Balance serviceId must match the provided serviceId";
+            }
+        }
+        return null;
+    }
+
+    private Uni<List<BulkBucketResult>> applyWindow(List<BulkLine> window) {
+        List<BulkBucketResult> results = new ArrayList<>(window.size());
+        Map<String, List<BulkLine>> byUser = new LinkedHashMap<>();
+        for (BulkLine line : window) {
+            if (line.error() != null) {
+                String userName = line.operation() != null ? line.operation().userName() : null;
+                results.add(BulkBucketResult.failure(line.line(), userName, line.error()));
+            } else {
+                byUser.computeIfAbsent(line.operation().userName(), k -> new ArrayList<>()).add(line);
+            }
+        }
+        if (byUser.isEmpty()) {
+            return Uni.createFrom().item(results);
+        }
+
+        return mailbox.submitAll(byUser.keySet(), () -> cacheClient.getUserDataBatch(new ArrayList<>(byUser.keySet()))
+                .onItem().transformToUni(cached -> {
+                    Map<String, UserSessionData> updated = new HashMap<>(byUser.size());
+                    List<BulkLine> applied = new ArrayList<>(window.size());
+                    List<Runnable> restored = new ArrayList<>();
+                    byUser.forEach((userName, userLines) -> {
+                        UserSessionData userData = cached.get(userName);
+                        if (userData == null) {
+                            userLines.forEach(line -> results.add(BulkBucketResult.failure(line.line(), userName, "User not found")));
+                            return;
+                        }
+                        List<Balance> balances = new ArrayList<>(Objects.requireNonNullElse(userData.getBalance(), List.of()));
+                        for (BulkLine line : userLines) {
+                            BulkBucketOperation operation = line.operation();
+                            if (operation.operation() == BulkBucketOperation.Operation.UPDATE) {
+                                List<String> exhausted = exhaustedBuckets(balances, operation.serviceId());
+                                balances.removeIf(b -> operation.serviceId().equals(b.getServiceId()));
+                                restored.add(() -> quotaRestored(userName, exhausted, operation.balance()));
+                            }
+                            balances.add(operation.balance());
+                            applied.add(line);
+                        }
+                        UserSessionData updatedUserData = userData.toBuilder().balance(balances).build();
+                        updatedUserData.bucketsChanged();
+                        updated.put(userName, updatedUserData);
+                    });
+
+                    return cacheClient.updateUserDataBatch(updated)
+                            .onItem().transform(v -> {
+                                restored.forEach(Runnable::run);
+                                applied.forEach(line -> results.add(BulkBucketResult.success(
+                                        line.line(), line.operation().userName(), "Balance applied successfully")));
+                                return results;
+                            });
+                }))
+                .onFailure().recoverWithItem(throwable -> {
+                    log.errorf(throwable, "Failed to apply bulk window of %d lines", window.size());
+                    Set<Long> reported = new HashSet<>();
+                    results.forEach(result -> reported.add(result.line()));
+                    for (BulkLine line : window) {
+                        if (!reported.contains(line.line())) {
+                            results.add(BulkBucketResult.failure(line.line(), line.operation().userName(),
+                                    "Failed to apply balance: " + throwable.getMessage()));
+                        }
+                    }
+                    return results;
+                });
+    }
+
+
+    private static List<String> exhaustedBuckets(List<Balance> balances, String serviceId) {
+        List<String> exhausted = new ArrayList<>(1);
+        for (Balance b : balances) {
+            if (serviceId.equals(b.getServiceId()) && b.getQuota() != null && b.getQuota() <= 0) {
+                exhausted.add(b.getBucketId());
+            }
+        }
+        return exhausted;
+    }
+
+    /**
+     * A bucket replaced while empty by one with quota is a top-up; if it is a group's shared
+     * bucket its members' interims are charged again.
+     */
+    private void quotaRestored(String userName, List<String> exhaustedBuckets, Balance replacement) {
+        if (replacement.getQuota() == null || replacement.getQuota() <= 0) {
+            return;
+        }
+        exhaustedBuckets.forEach(bucketId -> groupExhaustionCoordinator.quotaRestored(userName, bucketId));
+    }
+
     private ApiResponse<Balance> createSuccessResponse(Balance balance) {
         ApiResponse<Balance> response = new ApiResponse<>();
         response.setTimestamp(Instant.now());
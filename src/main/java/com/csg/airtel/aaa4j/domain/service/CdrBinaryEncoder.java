@@ -0,0 +1,198 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.cdr.EventTypes;
+import com.csg.airtel.aaa4j.domain.service.CdrSchemaStore.Field;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Writes CDRs in the compact binary format described by {@link CdrSchemaStore} straight
+ * from the accounting request, without building the {@code AccountingCDREvent} graph.
+ * Numbers are varints instead of strings and timestamps are epoch millis.
+ */
+@ApplicationScoped
+public class CdrBinaryEncoder {
+
+    static final byte MAGIC_BYTE = 0x0;
+
+    static final String STRING = "string";
+    static final String VARINT = "varint";
+    static final String TIMESTAMP = "timestamp-millis";
+    static final String ENUM = "enum";
+
+    /**
+     * Fields this encoder writes, in order; names, types and enum symbols must match the loaded
+     * schema, since a reader decodes by position and type.
+     */
+    static final List<Field> FIELDS = List.of(
+            new Field("eventId", STRING),
+            new Field("eventType", ENUM, Arrays.stream(EventTypes.values()).map(Enum::name).toList()),
+            new Field("eventTimestamp", TIMESTAMP),
+            new Field("sessionId", STRING),
+            new Field("sessionTime", VARINT),
+            new Field("startTime", TIMESTAMP),
+            new Field("updateTime", TIMESTAMP),
+            new Field("nasIdentifier", STRING),
+            new Field("nasIpAddress", STRING),
+            new Field("nasPort", STRING),
+            new Field("sessionStopTime", TIMESTAMP),
+            new Field("userName", STRING),
+            new Field("framedIpAddress", STRING),
+            new Field("acctInputOctets", VARINT),
+            new Field("acctOutputOctets", VARINT),
+            new Field("acctInputGigawords", VARINT),
+            new Field("acctOutputGigawords", VARINT));
+
+    private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+    private final int schemaId;
+
+    public CdrBinaryEncoder(CdrSchemaStore schemaStore) {
+        String mismatch = mismatch(schemaStore.fields());
+        if (mismatch != null) {
+            throw new IllegalStateException("CDR schema " + schemaStore.schemaId()
+                    + " does not match the encoder: " + mismatch);
+        }
+        this.schemaId = schemaStore.schemaId();
+    }
+
+    /**
+     * @return the first difference between the schema and {@link #FIELDS}, null if they match
+     */
+    static String mismatch(List<Field> schemaFields) {
+        for (int i = 0; i < Math.max(FIELDS.size(), schemaFields.size()); i++) {
+            Field expected = i < FIELDS.size() ? FIELDS.get(i) : null;
+            Field actual = i < schemaFields.size() ? schemaFields.get(i) : null;
+            if (!Objects.equals(expected, actual)) {
+                return "field " + i + " is " + actual + ", encoder writes " + expected;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return encoded record, a fresh array owned by the caller
+     */
+    public byte[] encode(AccountingRequestDto request, CdrMappingUtil.AccountingMetrics metrics) {
+        Buffer buf = BUFFERS.get();
+        buf.reset();
+        buf.writeByte(MAGIC_BYTE);
+        buf.writeInt(schemaId);
+
+        EventTypes eventType = EventTypes.valueOf(metrics.getEventType());
+        long now = System.currentTimeMillis();
+
+        buf.writeString(EventIdGenerator.nextId());
+        buf.writeUnsigned(eventType.ordinal());
+        buf.writeTimestamp(now);
+
+        buf.writeString(request.sessionId());
+        buf.writeSigned(metrics.getSessionTime() != null ? metrics.getSessionTime() : 0);
+        buf.writeTimestamp(request.timestamp());
+        buf.writeTimestamp(now);
+        buf.writeString(request.nasIdentifier());
+        buf.writeString(request.nasIP());
+        buf.writeString(request.nasPortId());
+        buf.writeTimestamp(eventType == EventTypes.ACCOUNTING_STOP ? request.timestamp() : null);
+
+        buf.writeString(request.username());
+        buf.writeString(request.framedIPAddress());
+
+        buf.writeSigned(valueOrZero(metrics.getInputOctets()));
+        buf.writeSigned(valueOrZero(metrics.getOutputOctets()));
+        buf.writeSigned(metrics.getInputGigawords() != null ? metrics.getInputGigawords() : 0);
+        buf.writeSigned(metrics.getOutputGigawords() != null ? metrics.getOutputGigawords() : 0);
+        return buf.toByteArray();
+    }
+
+    private static long valueOrZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    /**
+     * Growable per-thread scratch buffer; only the final copy is allocated per record.
+     */
+    private static final class Buffer {
+        private byte[] bytes = new byte[512];
+        private int position;
+
+        void reset() {
+            position = 0;
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            bytes[position++] = (byte) b;
+        }
+
+        void writeInt(int value) {
+            ensure(4);
+            bytes[position++] = (byte) (value >>> 24);
+            bytes[position++] = (byte) (value >>> 16);
+            bytes[position++] = (byte) (value >>> 8);
+            bytes[position++] = (byte) value;
+        }
+
+        void writeSigned(long value) {
+            writeUnsigned((value << 1) ^ (value >> 63));
+        }
+
+        void writeUnsigned(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[position++] = (byte) value;
+        }
+
+        void writeTimestamp(Instant instant) {
+            writeTimestamp(instant != null ? instant.toEpochMilli() : -1L);
+        }
+
+        void writeTimestamp(long epochMillis) {
+            writeUnsigned(epochMillis + 1);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeUnsigned(0);
+                return;
+            }
+            int length = value.length();
+            boolean ascii = true;
+            for (int i = 0; i < length && ascii; i++) {
+                ascii = value.charAt(i) < 0x80;
+            }
+            if (ascii) {
+                writeUnsigned(length + 1L);
+                ensure(length);
+                for (int i = 0; i < length; i++) {
+                    bytes[position++] = (byte) value.charAt(i);
+                }
+            } else {
+                byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                writeUnsigned(utf8.length + 1L);
+                ensure(utf8.length);
+                System.arraycopy(utf8, 0, bytes, position, utf8.length);
+                position += utf8.length;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, position + extra));
+            }
+        }
+    }
+}
@@ -8,7 +8,6 @@ import org.jboss.logging.Logger;
 
 import java.time.Instant;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Utility class for mapping AccountingRequestDto and Session data to CDR events.
@@ -70,6 +69,21 @@ public class CdrMappingUtil {
             );
         }
 
+        /**
+         * Interim metrics carrying deltas since the last emitted interim CDR.
+         */
+        public static AccountingMetrics forInterimDelta(int sessionTime, long inputBytes, long outputBytes) {
+            return new AccountingMetrics(
+                    "Interim-Update",
+                    EventTypes.ACCOUNTING_INTERIM.name(),
+                    sessionTime,
+                    inputBytes & 0xFFFFFFFFL,
+                    outputBytes & 0xFFFFFFFFL,
+                    (int) (inputBytes >>> 32),
+                    (int) (outputBytes >>> 32)
+            );
+        }
+
         public static AccountingMetrics forStop(AccountingRequestDto request) {
             return new AccountingMetrics(
                     "Stop",
@@ -82,6 +96,27 @@ public class CdrMappingUtil {
             );
         }
 
+        /**
+         * Stop metrics of a session closed without a STOP, from the counters of its last interim.
+         * Sessions cached before the input/output totals were kept have no split; their octets
+         * and gigawords are left unset rather than guessed.
+         */
+        public static AccountingMetrics forClosed(Integer sessionTime, Long inputBytes, Long outputBytes) {
+            if (inputBytes == null || outputBytes == null) {
+                return new AccountingMetrics("Stop", EventTypes.ACCOUNTING_STOP.name(), sessionTime,
+                        null, null, null, null);
+            }
+            return new AccountingMetrics(
+                    "Stop",
+                    EventTypes.ACCOUNTING_STOP.name(),
+                    sessionTime,
+                    inputBytes & 0xFFFFFFFFL,
+                    outputBytes & 0xFFFFFFFFL,
+                    (int) (inputBytes >>> 32),
+                    (int) (outputBytes >>> 32)
+            );
+        }
+
         // Getters
         public String getAcctStatusType() { return acctStatusType; }
         public String getEventType() { return eventType; }
@@ -116,7 +151,7 @@ public class CdrMappingUtil {
     /**
      * Internal method to build a complete AccountingCDREvent with all components
      */
-    private static AccountingCDREvent buildCDREvent(
+    static AccountingCDREvent buildCDREvent(
             AccountingRequestDto request,
             Session session,
             AccountingMetrics metrics) {
@@ -136,7 +171,7 @@ public class CdrMappingUtil {
                 .build();
 
         return AccountingCDREvent.builder()
-                .eventId(UUID.randomUUID().toString())
+                .eventId(EventIdGenerator.nextId())
                 .eventType(metrics.getEventType())
                 .eventVersion("1.0")
                 .eventTimestamp(Instant.now())
@@ -189,7 +224,8 @@ public class CdrMappingUtil {
     }
 
     /**
-     * Builds an Accounting CDR object from metrics
+     * Builds an Accounting CDR object from metrics. Gigawords default to 0 only alongside known
+     * octets, so an unknown input/output split stays unset.
      */
     public static Accounting buildAccountingCdr(AccountingMetrics metrics) {
         return Accounting.builder()
@@ -199,8 +235,15 @@ public class CdrMappingUtil {
                 .acctOutputOctets(metrics.getOutputOctets())
                 .acctInputPackets(0)
                 .acctOutputPackets(0)
-                .acctInputGigawords(metrics.getInputGigawords() != null ? metrics.getInputGigawords() : 0)
-                .acctOutputGigawords(metrics.getOutputGigawords() != null ? metrics.getOutputGigawords() : 0)
+                .acctInputGigawords(gigawords(metrics.getInputOctets(), metrics.getInputGigawords()))
+                .acctOutputGigawords(gigawords(metrics.getOutputOctets(), metrics.getOutputGigawords()))
                 .build();
     }
+
+    private static Integer gigawords(Long octets, Integer gigawords) {
+        if (octets == null) {
+            return null;
+        }
+        return gigawords != null ? gigawords : 0;
+    }
 }
\ No newline at end of file
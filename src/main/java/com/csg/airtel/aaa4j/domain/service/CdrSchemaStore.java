@@ -0,0 +1,84 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Local, file based stand-in for a schema registry. Loads the binary CDR schema once at
+ * startup, either from {@code cdr.schema.path} on disk or from the bundled classpath copy,
+ * and exposes the schema id written into every record and the ordered fields.
+ */
+@ApplicationScoped
+public class CdrSchemaStore {
+
+    private static final Logger log = Logger.getLogger(CdrSchemaStore.class);
+    private static final String BUNDLED_SCHEMA = "cdr/accounting-cdr-v1.json";
+
+    private final int schemaId;
+    private final List<Field> fields;
+
+    /**
+     * One schema field: its name, its wire type, and for an enum the symbols in index order.
+     */
+    public record Field(String name, String type, List<String> symbols) {
+
+        public Field {
+            symbols = List.copyOf(symbols);
+        }
+
+        public Field(String name, String type) {
+            this(name, type, List.of());
+        }
+    }
+
+    public CdrSchemaStore(ObjectMapper objectMapper,
+                          @ConfigProperty(name = "cdr.schema.path") Optional<String> schemaPath) {
+        JsonNode schema = load(objectMapper, schemaPath);
+        this.schemaId = schema.path("id").asInt();
+        List<Field> loaded = new ArrayList<>();
+        for (JsonNode field : schema.path("fields")) {
+            List<String> symbols = new ArrayList<>();
+            field.path("symbols").forEach(symbol -> symbols.add(symbol.asText()));
+            loaded.add(new Field(field.path("name").asText(), field.path("type").asText(), symbols));
+        }
+        this.fields = Collections.unmodifiableList(loaded);
+        log.infof("Loaded CDR schema %s id=%d with %d fields",
+                schema.path("name").asText(), schemaId, fields.size());
+    }
+
+    private static JsonNode load(ObjectMapper objectMapper, Optional<String> schemaPath) {
+        try {
+            if (schemaPath.isPresent() && !schemaPath.get().isBlank()) {
+                return objectMapper.readTree(Files.readAllBytes(Path.of(schemaPath.get())));
+            }
+            try (InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(BUNDLED_SCHEMA)) {
+                if (in == null) {
+                    throw new IllegalStateException("CDR schema not found on classpath: " + BUNDLED_SCHEMA);
+                }
+                return objectMapper.readTree(in);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read CDR schema", e);
+        }
+    }
+
+    public int schemaId() {
+        return schemaId;
+    }
+
+    public List<Field> fields() {
+        return fields;
+    }
+}
@@ -0,0 +1,65 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.cdr.AccountingCDREvent;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+/**
+ * Sends CDR events in the encoding selected for the deployment ({@code cdr.encoding}):
+ * JSON through the {@link AccountingCDREvent} model, or the compact binary format.
+ * Sending is fire and forget, failures are only logged.
+ */
+@ApplicationScoped
+public class CdrWriter {
+
+    private static final Logger log = Logger.getLogger(CdrWriter.class);
+
+    public enum Encoding {
+        JSON,
+        BINARY
+    }
+
+    private final AccountProducer accountProducer;
+    private final Encoding encoding;
+    private final CdrBinaryEncoder binaryEncoder;
+
+    public CdrWriter(AccountProducer accountProducer,
+                     Instance<CdrBinaryEncoder> binaryEncoder,
+                     @ConfigProperty(name = "cdr.encoding", defaultValue = "JSON") Encoding encoding) {
+        this.accountProducer = accountProducer;
+        this.encoding = encoding;
+        // only resolve (and validate the schema) when the binary format is in use
+        this.binaryEncoder = encoding == Encoding.BINARY ? binaryEncoder.get() : null;
+        log.infof("CDR encoding: %s", encoding);
+    }
+
+    /**
+     * Build and send one CDR for the session.
+     */
+    public void write(AccountingRequestDto request, Session session, CdrMappingUtil.AccountingMetrics metrics) {
+        try {
+            Uni<Void> send;
+            if (encoding == Encoding.BINARY) {
+                send = accountProducer.produceAccountingCDRBytes(request.sessionId(), binaryEncoder.encode(request, metrics));
+            } else {
+                AccountingCDREvent cdrEvent = CdrMappingUtil.buildCDREvent(request, session, metrics);
+                send = accountProducer.produceAccountingCDREvent(cdrEvent);
+            }
+
+            // run asynchronously without blocking
+            send.subscribe()
+                    .with(
+                            success -> log.infof("CDR event sent successfully for session: %s", request.sessionId()),
+                            failure -> log.errorf(failure, "Failed to send CDR event for session: %s", request.sessionId())
+                    );
+        } catch (Exception e) {
+            log.errorf(e, "Error building CDR event for session: %s", request.sessionId());
+        }
+    }
+}
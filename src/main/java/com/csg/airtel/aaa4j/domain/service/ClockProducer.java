@@ -0,0 +1,21 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Produces;
+import jakarta.inject.Singleton;
+
+import java.time.Clock;
+
+/**
+ * Exposes the clock used for bucket eligibility so every event reads "now" from one
+ * place and the time source can be replaced where needed.
+ */
+@ApplicationScoped
+public class ClockProducer {
+
+    @Produces
+    @Singleton
+    Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
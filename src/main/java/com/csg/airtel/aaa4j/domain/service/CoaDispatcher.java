@@ -0,0 +1,136 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingResponseEvent;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Fans CoA disconnects out for many sessions at once. Sessions are grouped per NAS and
+ * split into batches that are sent back-to-back; batches run with bounded concurrency.
+ * The returned Uni completes once every message has been acked or has failed once;
+ * failed messages are retried in the background so callers never wait on back-off.
+ */
+@ApplicationScoped
+public class CoaDispatcher {
+
+    private static final Logger log = Logger.getLogger(CoaDispatcher.class);
+    private static final String DISCONNECT_MESSAGE = "Disconnect";
+
+    private final AccountProducer accountProducer;
+    private final int maxConcurrency;
+    private final int batchSize;
+    private final int maxRetries;
+    private final Duration timeout;
+
+    private final Counter sent;
+    private final Counter failed;
+    private final Counter retriedOk;
+    private final Counter retriedFailed;
+
+    public CoaDispatcher(AccountProducer accountProducer,
+                         MetricRegistry metricRegistry,
+                         @ConfigProperty(name = "accounting.coa.max-concurrency", defaultValue = "8") int maxConcurrency,
+                         @ConfigProperty(name = "accounting.coa.batch-size", defaultValue = "100") int batchSize,
+                         @ConfigProperty(name = "accounting.coa.max-retries", defaultValue = "2") int maxRetries,
+                         @ConfigProperty(name = "accounting.coa.timeout", defaultValue = "PT45S") Duration timeout) {
+        this.accountProducer = accountProducer;
+        this.maxConcurrency = maxConcurrency;
+        this.batchSize = batchSize;
+        this.maxRetries = maxRetries;
+        this.timeout = timeout;
+        this.sent = metricRegistry.counter("coa_disconnect_total", new Tag("outcome", "sent"));
+        this.failed = metricRegistry.counter("coa_disconnect_total", new Tag("outcome", "failed"));
+        this.retriedOk = metricRegistry.counter("coa_disconnect_total", new Tag("outcome", "retried_sent"));
+        this.retriedFailed = metricRegistry.counter("coa_disconnect_total", new Tag("outcome", "retried_failed"));
+    }
+
+    /**
+     * Send a DISCONNECT for every session of the user.
+     * @param username user owning the sessions
+     * @param sessions sessions to disconnect
+     * @return Uni completing when every message was acked or failed once
+     */
+    public Uni<Void> disconnectSessions(String username, Collection<Session> sessions) {
+        if (sessions == null || sessions.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<AccountingResponseEvent> events = new ArrayList<>(sessions.size());
+        for (Session session : sessions) {
+            events.add(MappingUtil.createResponse(
+                    session.getSessionId(),
+                    DISCONNECT_MESSAGE,
+                    session.getNasIp(),
+                    session.getFramedId(),
+                    username));
+        }
+        return dispatch(events);
+    }
+
+    /**
+     * Send prepared CoA events grouped per NAS, batched and with bounded concurrency.
+     */
+    public Uni<Void> dispatch(List<AccountingResponseEvent> events) {
+        long startTime = System.currentTimeMillis();
+        List<List<AccountingResponseEvent>> batches = batchPerNas(events);
+
+        return Multi.createFrom().iterable(batches)
+                .onItem().transformToUni(batch -> accountProducer.produceAccountingResponseEvents(batch)
+                        .onItem().invoke(failures -> {
+                            sent.inc(batch.size() - failures.size());
+                            failed.inc(failures.size());
+                            failures.forEach(this::retryInBackground);
+                        })
+                        .onFailure().recoverWithItem(throwable -> {
+                            log.errorf(throwable, "Failed to send CoA batch of %d events", batch.size());
+                            failed.inc(batch.size());
+                            return List.of();
+                        }))
+                .merge(maxConcurrency)
+                .collect().last()
+                .ifNoItem().after(timeout).fail()
+                .invoke(() -> log.infof("CoA fan-out of %d sessions in %d batches completed in %d ms",
+                        events.size(), batches.size(), System.currentTimeMillis() - startTime))
+                .replaceWithVoid();
+    }
+
+    private List<List<AccountingResponseEvent>> batchPerNas(List<AccountingResponseEvent> events) {
+        Map<String, List<AccountingResponseEvent>> byNas = new LinkedHashMap<>();
+        for (AccountingResponseEvent event : events) {
+            String nasIp = event.qosParameters().get("nasIP");
+            byNas.computeIfAbsent(nasIp, k -> new ArrayList<>()).add(event);
+        }
+        List<List<AccountingResponseEvent>> batches = new ArrayList<>();
+        for (List<AccountingResponseEvent> nasEvents : byNas.values()) {
+            for (int from = 0; from < nasEvents.size(); from += batchSize) {
+                batches.add(nasEvents.subList(from, Math.min(from + batchSize, nasEvents.size())));
+            }
+        }
+        return batches;
+    }
+
+    private void retryInBackground(AccountingResponseEvent event) {
+        accountProducer.produceAccountingResponseEvent(event)
+                .onFailure().retry()
+                .withBackOff(Duration.ofMillis(100), Duration.ofSeconds(2))
+                .atMost(maxRetries)
+                .subscribe()
+                .with(
+                        success -> retriedOk.inc(),
+                        failure -> {
+                            retriedFailed.inc();
+                            log.errorf(failure, "Failed to produce disconnect event for session: %s", event.sessionId());
+                        }
+                );
+    }
+}
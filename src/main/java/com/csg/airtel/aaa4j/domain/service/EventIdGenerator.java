@@ -0,0 +1,59 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free, time-ordered event id generator producing 26 character ULID strings.
+ * The 128 bits are a 48 bit millisecond timestamp, a 16 bit instance id and a 64 bit
+ * per-instance counter. Only the instance id and the counter seed come from
+ * SecureRandom, once at class load, so generating an id is a clock read and a single
+ * atomic increment instead of a SecureRandom call per event.
+ */
+public final class EventIdGenerator {
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int INSTANCE_ID;
+    private static final AtomicLong COUNTER;
+
+    static {
+        SecureRandom random = new SecureRandom();
+        INSTANCE_ID = random.nextInt(1 << 16);
+        COUNTER = new AtomicLong(random.nextLong());
+    }
+
+    private EventIdGenerator() {
+        // Private constructor to prevent instantiation
+    }
+
+    /**
+     * @return a new unique id, lexicographically ordered by creation millisecond
+     */
+    public static String nextId() {
+        long time = System.currentTimeMillis();
+        long sequence = COUNTER.getAndIncrement();
+        long high = (time << 16) | INSTANCE_ID;
+        return encode(high, sequence);
+    }
+
+    /**
+     * Crockford base32 of the 128 bit value {@code high:low}, 2 leading pad bits + 128 bits = 26 chars.
+     */
+    private static String encode(long high, long low) {
+        char[] out = new char[26];
+        // last 12 chars: low 60 bits of low
+        for (int i = 25; i >= 14; i--) {
+            out[i] = ENCODING[(int) (low & 0x1F)];
+            low >>>= 5;
+        }
+        // char 13 spans 4 remaining bits of low and 1 bit of high
+        out[13] = ENCODING[(int) ((low & 0x0F) | ((high & 0x01) << 4))];
+        high >>>= 1;
+        // first 13 chars: remaining 63 bits of high
+        for (int i = 12; i >= 0; i--) {
+            out[i] = ENCODING[(int) (high & 0x1F)];
+            high >>>= 5;
+        }
+        return new String(out);
+    }
+}
@@ -0,0 +1,62 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Decides where the pure-CPU steps of the handlers (bucket selection and similar) run.
+ * INLINE keeps them on the calling event-loop thread with no thread hop, WORKER_POOL
+ * offloads to the Quarkus worker pool, VIRTUAL_THREADS runs each step on a new virtual thread.
+ */
+@ApplicationScoped
+public class ExecutionPolicy {
+
+    private static final Logger log = Logger.getLogger(ExecutionPolicy.class);
+
+    public enum Mode {
+        INLINE,
+        WORKER_POOL,
+        VIRTUAL_THREADS
+    }
+
+    private final Mode mode;
+    private final ExecutorService virtualThreads;
+
+    public ExecutionPolicy(@ConfigProperty(name = "accounting.execution.mode", defaultValue = "INLINE") Mode mode) {
+        this.mode = mode;
+        this.virtualThreads = mode == Mode.VIRTUAL_THREADS ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        log.infof("CPU steps execution mode: %s", mode);
+    }
+
+    /**
+     * @param task CPU-only work, must not block
+     * @return Uni emitting the task result on the thread chosen by the configured mode
+     */
+    public <T> Uni<T> run(Supplier<T> task) {
+        Uni<T> uni = Uni.createFrom().item(task);
+        return switch (mode) {
+            case INLINE -> uni;
+            case WORKER_POOL -> uni.runSubscriptionOn(Infrastructure.getDefaultWorkerPool());
+            case VIRTUAL_THREADS -> uni.runSubscriptionOn(virtualThreads);
+        };
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.BalanceSnapshot;
+import com.csg.airtel.aaa4j.domain.model.session.ConsumptionRecord;
+import com.csg.airtel.aaa4j.domain.model.session.GrantReservation;
+import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.domain.produce.PendingAcks;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.jboss.logging.Logger;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes shared buckets back to their group's document. Members change a group's bucket under
+ * their own turn, from a copy read outside the group's turn, so the write is queued on the
+ * group's turn, where the group document is read again and only the member's changes are
+ * applied: the quota difference, the grant reservations it added or removed, its new
+ * consumption records and its last Oracle write of the bucket. The write is not awaited: a
+ * member's turn never waits on a group's turn, so batch mutations holding a group's turn (bulk
+ * provisioning, the change feed) cannot deadlock with member events. It is held by the
+ * consumer's {@link PendingAcks} scope instead, so the member's event is only acked once the
+ * group document was written, and a failed write nacks it.
+ */
+@ApplicationScoped
+public class GroupBalanceWriter {
+
+    private static final Logger log = Logger.getLogger(GroupBalanceWriter.class);
+
+    private final UserMutationMailbox mailbox;
+    private final CacheClient cacheClient;
+
+    public GroupBalanceWriter(UserMutationMailbox mailbox, CacheClient cacheClient) {
+        this.mailbox = mailbox;
+        this.cacheClient = cacheClient;
+    }
+
+    /**
+     * Queue the changes made to the member's copy of a shared bucket since it was read; the copy
+     * then counts as read again, so a second write of it only carries later changes.
+     * @param groupId group whose document holds the bucket
+     * @param balance member's copy of the bucket, read through {@link Balance#markRead()}
+     */
+    public void write(String groupId, Balance balance) {
+        BalanceChange change = BalanceChange.of(balance);
+        balance.markRead();
+        if (change.isEmpty()) {
+            return;
+        }
+        PendingAcks scope = PendingAcks.current();
+        if (scope != null) {
+            scope.track();
+        }
+        mailbox.submit(groupId, () -> cacheClient.getUserData(groupId)
+                        .onItem().transformToUni(groupData -> {
+                            Balance current = find(groupData, balance.getBucketId());
+                            if (current == null) {
+                                log.warnf("Bucket %s no longer in group %s, dropping member changes",
+                                        balance.getBucketId(), groupId);
+                                return Uni.createFrom().voidItem();
+                            }
+                            change.applyTo(current);
+                            if (groupData.getBucketsVersion() == 0) {
+                                // lets members cache the selection index of the group's buckets
+                                groupData.bucketsChanged();
+                            }
+                            return cacheClient.updateUserAndRelatedCaches(groupId, groupData);
+                        }))
+                .subscribe().with(
+                        v -> {
+                            if (scope != null) {
+                                scope.acked();
+                            }
+                        },
+                        e -> {
+                            log.errorf(e, "Failed to write bucket %s of group %s", balance.getBucketId(), groupId);
+                            if (scope != null) {
+                                scope.nacked(e);
+                            }
+                        });
+    }
+
+    private static Balance find(UserSessionData groupData, String bucketId) {
+        if (groupData == null || groupData.getBalance() == null) {
+            return null;
+        }
+        for (Balance balance : groupData.getBalance()) {
+            if (bucketId.equals(balance.getBucketId())) {
+                return balance;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Difference between a bucket and its state when read. A bucket that was never marked read
+     * is taken as a whole: its quota and reservations replace the stored ones.
+     * @param released amount of each reservation removed or replaced, as read
+     * @param storedBalance CURRENT_BALANCE of the member's last Oracle write of the bucket, if any
+     * @param storedAt UPDATED_AT of that write, null if the member did not write the bucket since the read
+     */
+    private record BalanceChange(long quotaDelta, Long quota, Map<String, GrantReservation> reserved,
+                                 Map<String, Long> released, List<ConsumptionRecord> consumed,
+                                 Long storedBalance, LocalDateTime storedAt) {
+
+        static BalanceChange of(Balance balance) {
+            BalanceSnapshot read = balance.readState();
+            Map<String, GrantReservation> now = balance.getGrantReservations() == null
+                    ? Map.of() : balance.getGrantReservations();
+            List<ConsumptionRecord> history = balance.getConsumptionHistory() == null
+                    ? List.of() : balance.getConsumptionHistory();
+            if (read == null) {
+                return new BalanceChange(0L, balance.getQuota(), new HashMap<>(now), Map.of(), List.of(),
+                        balance.getStoredBalance(), balance.getStoredAt());
+            }
+            Map<String, GrantReservation> reserved = new HashMap<>();
+            now.forEach((sessionId, reservation) -> {
+                if (read.grantReservations().get(sessionId) != reservation) {
+                    reserved.put(sessionId, reservation);
+                }
+            });
+            Map<String, Long> released = new HashMap<>();
+            read.grantReservations().forEach((sessionId, reservation) -> {
+                if (now.get(sessionId) != reservation) {
+                    released.put(sessionId, reservation.getAmount());
+                }
+            });
+            List<ConsumptionRecord> consumed = history.size() > read.consumptionRecords()
+                    ? new ArrayList<>(history.subList(read.consumptionRecords(), history.size()))
+                    : List.of();
+            boolean stored = balance.getStoredAt() != null && !balance.getStoredAt().equals(read.storedAt());
+            return new BalanceChange(balance.getQuota() - read.quota(), null, reserved, released, consumed,
+                    stored ? balance.getStoredBalance() : null, stored ? balance.getStoredAt() : null);
+        }
+
+        boolean isEmpty() {
+            return quota == null && quotaDelta == 0 && reserved.isEmpty() && released.isEmpty() && consumed.isEmpty()
+                    && storedAt == null;
+        }
+
+        /**
+         * A released reservation already gone from the target was returned by another writer (a
+         * reclaim racing the session's own release), so its slice is not credited twice.
+         */
+        void applyTo(Balance target) {
+            if (quota != null) {
+                target.setQuota(Math.max(quota, 0L));
+                target.setGrantReservations(reserved.isEmpty() ? null : new HashMap<>(reserved));
+            } else {
+                long delta = quotaDelta;
+                Map<String, GrantReservation> reservations = target.getGrantReservations() == null
+                        ? new HashMap<>() : new HashMap<>(target.getGrantReservations());
+                for (Map.Entry<String, Long> release : released.entrySet()) {
+                    if (reservations.remove(release.getKey()) == null) {
+                        delta -= release.getValue();
+                    }
+                }
+                reservations.putAll(reserved);
+                target.setGrantReservations(reservations.isEmpty() ? null : reservations);
+                target.setQuota(Math.max(target.getQuota() + delta, 0L));
+            }
+            if (!consumed.isEmpty()) {
+                List<ConsumptionRecord> history = target.getConsumptionHistory() == null
+                        ? new ArrayList<>() : new ArrayList<>(target.getConsumptionHistory());
+                history.addAll(consumed);
+                target.setConsumptionHistory(history);
+            }
+            if (storedAt != null && (target.getStoredAt() == null || storedAt.isAfter(target.getStoredAt()))) {
+                target.markStored(storedBalance, storedAt);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient.SessionRef;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Disconnects a whole group once when its shared bucket runs out, instead of each member
+ * finding out on its own next interim. The member whose interim exhausted the bucket sets a
+ * marker (SET NX); only that caller walks the group index and disconnects the other members'
+ * sessions charged to the bucket. While the marker lives, follow-up interims of those
+ * sessions are skipped before bucket selection; the marker is only read when the bucket is
+ * exhausted in the group document read for the interim, so members of a group with quota left
+ * pay no extra round trip. A top-up that restores the bucket deletes the marker. Sessions still
+ * holding a quota grant on the bucket are left connected: they use up their slice and are
+ * disconnected on their own settle, and releasing their grants here would refill the bucket
+ * that was declared exhausted.
+ */
+@ApplicationScoped
+public class GroupExhaustionCoordinator {
+
+    private static final Logger log = Logger.getLogger(GroupExhaustionCoordinator.class);
+
+    private final SessionIndexClient indexClient;
+    private final CacheClient cacheClient;
+    private final AccountingUtil accountingUtil;
+    private final UserMutationMailbox mailbox;
+    private final CoaDispatcher coaDispatcher;
+    private final SessionStatistics sessionStatistics;
+    private final ActiveSessionIndex activeSessionIndex;
+    private final boolean enabled;
+    private final Duration markerTtl;
+    private final int maxConcurrency;
+    private final Counter exhaustions;
+    private final Counter disconnectedSessions;
+    private final Counter skippedInterims;
+
+    public GroupExhaustionCoordinator(SessionIndexClient indexClient,
+                                      CacheClient cacheClient,
+                                      AccountingUtil accountingUtil,
+                                      UserMutationMailbox mailbox,
+                                      CoaDispatcher coaDispatcher,
+                                      SessionStatistics sessionStatistics,
+                                      ActiveSessionIndex activeSessionIndex,
+                                      MetricRegistry metricRegistry,
+                                      @ConfigProperty(name = "accounting.group-exhaustion.enabled", defaultValue = "true") boolean enabled,
+                                      @ConfigProperty(name = "accounting.group-exhaustion.marker-ttl", defaultValue = "PT2M") Duration markerTtl,
+                                      @ConfigProperty(name = "accounting.group-exhaustion.max-concurrency", defaultValue = "8") int maxConcurrency) {
+        this.indexClient = indexClient;
+        this.cacheClient = cacheClient;
+        this.accountingUtil = accountingUtil;
+        this.mailbox = mailbox;
+        this.coaDispatcher = coaDispatcher;
+        this.sessionStatistics = sessionStatistics;
+        this.activeSessionIndex = activeSessionIndex;
+        this.enabled = enabled;
+        this.markerTtl = markerTtl;
+        this.maxConcurrency = maxConcurrency;
+        this.exhaustions = metricRegistry.counter("group_exhaustion_total");
+        this.disconnectedSessions = metricRegistry.counter("group_exhaustion_disconnected_sessions_total");
+        this.skippedInterims = metricRegistry.counter("group_exhaustion_skipped_interims_total");
+    }
+
+    /**
+     * Disconnect the other members of the group once. Fire-and-forget: the caller holds its own
+     * user's turn and must not wait on the turns of other members.
+     * @param groupId group owning the shared bucket
+     * @param exhaustedBy member whose sessions the caller already disconnected
+     * @param bucketId shared bucket that reached zero
+     */
+    public void bucketExhausted(String groupId, String exhaustedBy, String bucketId) {
+        if (!enabled) {
+            return;
+        }
+        indexClient.markGroupExhausted(groupId, bucketId, markerTtl)
+                .onItem().transformToUni(owner -> Boolean.TRUE.equals(owner)
+                        ? disconnectGroup(groupId, exhaustedBy, bucketId)
+                        : Uni.createFrom().voidItem())
+                .subscribe().with(
+                        v -> { },
+                        e -> log.errorf(e, "Failed to disconnect group %s after bucket %s was exhausted", groupId, bucketId));
+    }
+
+    /**
+     * A top-up brought the group's bucket back from zero: drop its marker so the members'
+     * interims are charged again. Fire-and-forget.
+     * @param groupId group owning the bucket
+     * @param bucketId bucket whose quota was restored
+     */
+    public void quotaRestored(String groupId, String bucketId) {
+        if (!enabled || !ActiveSessionIndex.isGroup(groupId)) {
+            return;
+        }
+        indexClient.clearGroupExhausted(groupId, bucketId)
+                .subscribe().with(
+                        cleared -> {
+                            if (Boolean.TRUE.equals(cleared)) {
+                                log.infof("Bucket %s of group %s topped up, members are charged again", bucketId, groupId);
+                            }
+                        },
+                        e -> log.warnf("Failed to clear exhaustion of bucket %s of group %s: %s",
+                                bucketId, groupId, e.getMessage()));
+    }
+
+    /**
+     * @param cachedSession the interim's session in the user's document, null if not cached
+     * @param balances the user's and the group's buckets as read for the interim
+     * @return true if the interim must not be charged because the group's bucket is exhausted
+     *         and the session was charged to it, or is unknown and the user has no other bucket
+     */
+    public Uni<Boolean> isCutOff(UserSessionData userData, Session cachedSession, List<Balance> balances) {
+        String groupId = userData.getGroupId();
+        if (!enabled || !ActiveSessionIndex.isGroup(groupId)) {
+            return Uni.createFrom().item(false);
+        }
+        boolean exhausted = cachedSession == null
+                ? anyExhausted(balances, groupId)
+                : cachedSession.getPreviousUsageBucketId() != null
+                        && isExhausted(balances, groupId, cachedSession.getPreviousUsageBucketId());
+        if (!exhausted) {
+            return Uni.createFrom().item(false);
+        }
+        return indexClient.getExhaustedGroupBucket(groupId)
+                .onItem().transform(bucketId -> {
+                    boolean cutOff = bucketId != null && isExhausted(balances, groupId, bucketId)
+                            && (cachedSession == null
+                                    ? !accountingUtil.hasEligibleBalance(userData.getBalance(), bucketId)
+                                    : chargedTo(cachedSession, bucketId));
+                    if (cutOff) {
+                        skippedInterims.inc();
+                    }
+                    return cutOff;
+                });
+    }
+
+    private Uni<Void> disconnectGroup(String groupId, String exhaustedBy, String bucketId) {
+        long startTime = System.currentTimeMillis();
+        exhaustions.inc();
+        return indexClient.getGroupSessions(groupId)
+                .onItem().transformToUni(sessions -> {
+                    Map<String, List<String>> byUser = new LinkedHashMap<>();
+                    for (SessionRef ref : sessions) {
+                        if (!ref.userName().equals(exhaustedBy)) {
+                            byUser.computeIfAbsent(ref.userName(), k -> new ArrayList<>()).add(ref.sessionId());
+                        }
+                    }
+                    log.infof("Bucket %s of group %s exhausted by %s, disconnecting %d other members",
+                            bucketId, groupId, exhaustedBy, byUser.size());
+                    return Multi.createFrom().iterable(byUser.entrySet())
+                            .onItem().transformToUni(entry ->
+                                    disconnectMember(groupId, entry.getKey(), entry.getValue(), bucketId))
+                            .merge(maxConcurrency)
+                            .collect().last()
+                            .replaceWithVoid();
+                })
+                .invoke(() -> log.infof("Group %s disconnected in %d ms", groupId, System.currentTimeMillis() - startTime));
+    }
+
+    private Uni<Void> disconnectMember(String groupId, String userName, List<String> sessionIds, String bucketId) {
+        return mailbox.submit(userName, () -> cacheClient.getUserData(userName)
+                        .onItem().transformToUni(userData -> {
+                            List<Session> charged = new ArrayList<>(sessionIds.size());
+                            List<SessionRef> stale = new ArrayList<>();
+                            for (String sessionId : sessionIds) {
+                                Session session = userData == null || userData.getSessions() == null
+                                        ? null : userData.getSessions().get(sessionId);
+                                if (session == null) {
+                                    stale.add(new SessionRef(userName, sessionId));
+                                } else if (chargedTo(session, bucketId)) {
+                                    charged.add(session);
+                                }
+                            }
+                            Uni<Void> disconnect = charged.isEmpty()
+                                    ? Uni.createFrom().voidItem()
+                                    : coaDispatcher.disconnectSessions(userName, charged)
+                                            .chain(() -> accountingUtil.closeSessions(userName, userData, charged))
+                                            .invoke(() -> {
+                                                disconnectedSessions.inc(charged.size());
+                                                sessionStatistics.sessionsClosed(charged);
+                                                activeSessionIndex.sessionsClosed(userName, userData.getGroupId(), charged);
+                                            });
+                            return disconnect.chain(() -> indexClient.removeGroupSessions(groupId, stale));
+                        }))
+                .onFailure().recoverWithUni(throwable -> {
+                    log.errorf(throwable, "Failed to disconnect %d sessions of group member %s", sessionIds.size(), userName);
+                    return Uni.createFrom().voidItem();
+                });
+    }
+
+    private static boolean isExhausted(List<Balance> balances, String groupId, String bucketId) {
+        for (Balance balance : balances) {
+            if (bucketId.equals(balance.getBucketId())) {
+                return groupId.equals(balance.getBucketUsername()) && balance.getQuota() <= 0;
+            }
+        }
+        return false;
+    }
+
+    private static boolean anyExhausted(List<Balance> balances, String groupId) {
+        for (Balance balance : balances) {
+            if (groupId.equals(balance.getBucketUsername()) && balance.getQuota() <= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if the session draws from the bucket directly; a session holding a grant on it still
+     * has quota of its own.
+     */
+    private static boolean chargedTo(Session session, String bucketId) {
+        return bucketId.equals(session.getPreviousUsageBucketId())
+                && (session.getQuotaGrant() == null || !bucketId.equals(session.getQuotaGrant().getBucketId()));
+    }
+}
@@ -0,0 +1,216 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.response.HeavyHitter;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.common.vertx.ContextLocals;
+import io.smallrye.common.vertx.VertxContext;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the usernames, session ids and NAS IPs producing the most accounting events and the
+ * most Redis write bytes, using one {@link ShardedSpaceSaving} summary per dimension and measure,
+ * so memory stays bounded no matter how many distinct keys are seen. Summaries cover a fixed window;
+ * rates are reported from the last completed window.
+ * Redis bytes are attributed to the event being processed on the current Vert.x context.
+ * Optionally, users whose guaranteed event rate (count minus the summary's error bound) in the
+ * last window exceeded the limit have their interims
+ * dropped for the next window; interims carry cumulative counters, so the next processed one
+ * still charges the full usage.
+ */
+@ApplicationScoped
+public class HeavyHitterTracker {
+
+    private static final Logger log = Logger.getLogger(HeavyHitterTracker.class);
+    private static final String CONTEXT_KEY = "aaa.heavy-hitter-event";
+
+    public enum Dimension {
+        USERNAME,
+        SESSION_ID,
+        NAS_IP
+    }
+
+    public enum Measure {
+        EVENTS,
+        REDIS_BYTES
+    }
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int shards;
+    private final boolean throttleEnabled;
+    private final double maxEventsPerSecond;
+    private final Counter throttledEvents;
+
+    private volatile Window current;
+    private volatile Window completed;
+    private volatile Set<String> throttledUsers = Set.of();
+
+    public HeavyHitterTracker(MetricRegistry metricRegistry,
+                              @ConfigProperty(name = "heavy-hitter.enabled", defaultValue = "true") boolean enabled,
+                              @ConfigProperty(name = "heavy-hitter.capacity", defaultValue = "100") int capacity,
+                              @ConfigProperty(name = "heavy-hitter.shards", defaultValue = "0") int shards,
+                              @ConfigProperty(name = "heavy-hitter.throttle.enabled", defaultValue = "false") boolean throttleEnabled,
+                              @ConfigProperty(name = "heavy-hitter.throttle.max-events-per-second", defaultValue = "0.5") double maxEventsPerSecond) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.shards = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.throttleEnabled = throttleEnabled;
+        this.maxEventsPerSecond = maxEventsPerSecond;
+        this.current = new Window(System.currentTimeMillis(), this.shards, capacity);
+        this.throttledEvents = metricRegistry.counter("heavy_hitter_throttled_total");
+        for (Dimension dimension : Dimension.values()) {
+            for (Measure measure : Measure.values()) {
+                metricRegistry.gauge("heavy_hitter_top_rate", () -> topRate(dimension, measure),
+                        new Tag("dimension", dimension.name().toLowerCase(Locale.ROOT)),
+                        new Tag("measure", measure.name().toLowerCase(Locale.ROOT)));
+            }
+        }
+    }
+
+    /**
+     * Count a consumed event and remember it on the current context for byte attribution.
+     */
+    public void onEvent(AccountingRequestDto request) {
+        if (!enabled) {
+            return;
+        }
+        Window window = current;
+        add(window, Dimension.USERNAME, Measure.EVENTS, request.username(), 1);
+        add(window, Dimension.SESSION_ID, Measure.EVENTS, request.sessionId(), 1);
+        add(window, Dimension.NAS_IP, Measure.EVENTS, request.nasIP(), 1);
+        if (VertxContext.isOnDuplicatedContext()) {
+            ContextLocals.put(CONTEXT_KEY, request);
+        }
+    }
+
+    /**
+     * Count bytes written to a user's cache entry.
+     */
+    public void onRedisWrite(String userId, int bytes) {
+        if (!enabled) {
+            return;
+        }
+        Window window = current;
+        add(window, Dimension.USERNAME, Measure.REDIS_BYTES, userId, bytes);
+        if (VertxContext.isOnDuplicatedContext()) {
+            AccountingRequestDto request = ContextLocals.<AccountingRequestDto>get(CONTEXT_KEY).orElse(null);
+            if (request != null) {
+                add(window, Dimension.SESSION_ID, Measure.REDIS_BYTES, request.sessionId(), bytes);
+                add(window, Dimension.NAS_IP, Measure.REDIS_BYTES, request.nasIP(), bytes);
+            }
+        }
+    }
+
+    /**
+     * @return true if the event is an interim of a user currently being throttled
+     */
+    public boolean shouldThrottle(AccountingRequestDto request) {
+        if (!throttleEnabled || request.actionType() != AccountingRequestDto.ActionType.INTERIM_UPDATE
+                || !throttledUsers.contains(request.username())) {
+            return false;
+        }
+        throttledEvents.inc();
+        return true;
+    }
+
+    /**
+     * @param ongoing report the window still being filled instead of the last completed one
+     */
+    public List<HeavyHitter> top(Dimension dimension, Measure measure, int n, boolean ongoing) {
+        Window window = ongoing ? current : completed;
+        if (window == null) {
+            return List.of();
+        }
+        ShardedSpaceSaving summary = window.summary(dimension, measure);
+        double seconds = Math.max(1, window.elapsedMillis()) / 1000.0;
+        long total = Math.max(1, summary.total());
+        List<HeavyHitter> top = new ArrayList<>();
+        for (SpaceSaving.Estimate estimate : summary.top(n)) {
+            top.add(new HeavyHitter(estimate.key(), estimate.count(), estimate.error(),
+                    estimate.count() / seconds, estimate.count() / (double) total));
+        }
+        return top;
+    }
+
+    @Scheduled(every = "${heavy-hitter.window:60s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void rotate() {
+        if (!enabled) {
+            return;
+        }
+        Window finished = current;
+        current = new Window(System.currentTimeMillis(), shards, capacity);
+        finished.endedAt = System.currentTimeMillis();
+        completed = finished;
+        if (throttleEnabled) {
+            throttledUsers = usersAboveEventLimit();
+        }
+    }
+
+    /**
+     * Users whose lower-bound count is over the limit: a key that inherited an evicted key's
+     * count is only throttled for the events it certainly produced.
+     */
+    private Set<String> usersAboveEventLimit() {
+        Window window = completed;
+        double seconds = Math.max(1, window.elapsedMillis()) / 1000.0;
+        Set<String> users = new HashSet<>();
+        for (SpaceSaving.Estimate estimate : window.summary(Dimension.USERNAME, Measure.EVENTS).top(capacity * shards)) {
+            if (estimate.count() / seconds <= maxEventsPerSecond) {
+                break;
+            }
+            if ((estimate.count() - estimate.error()) / seconds > maxEventsPerSecond) {
+                users.add(estimate.key());
+            }
+        }
+        if (!users.isEmpty()) {
+            log.warnf("Throttling interims of %d users above %.2f events/s: %s", users.size(), maxEventsPerSecond, users);
+        }
+        return users;
+    }
+
+    private double topRate(Dimension dimension, Measure measure) {
+        List<HeavyHitter> top = top(dimension, measure, 1, false);
+        return top.isEmpty() ? 0 : top.get(0).perSecond();
+    }
+
+    private static void add(Window window, Dimension dimension, Measure measure, String key, long weight) {
+        if (key != null) {
+            window.summary(dimension, measure).add(key, weight);
+        }
+    }
+
+    private static final class Window {
+        private final long startedAt;
+        private final ShardedSpaceSaving[] summaries;
+        private volatile long endedAt;
+
+        private Window(long startedAt, int shards, int capacity) {
+            this.startedAt = startedAt;
+            this.summaries = new ShardedSpaceSaving[Dimension.values().length * Measure.values().length];
+            for (int i = 0; i < summaries.length; i++) {
+                summaries[i] = new ShardedSpaceSaving(shards, capacity);
+            }
+        }
+
+        private ShardedSpaceSaving summary(Dimension dimension, Measure measure) {
+            return summaries[dimension.ordinal() * Measure.values().length + measure.ordinal()];
+        }
+
+        private long elapsedMillis() {
+            long end = endedAt > 0 ? endedAt : System.currentTimeMillis();
+            return end - startedAt;
+        }
+    }
+}
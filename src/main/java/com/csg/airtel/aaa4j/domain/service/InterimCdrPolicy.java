@@ -0,0 +1,115 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.session.CdrAggregation;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Decides which interims produce a CDR. With aggregation enabled an interim CDR is emitted
+ * every N interims, once the bytes or the time since the last CDR cross a threshold, or when
+ * the session moves to another bucket, and it carries the deltas since the last emitted CDR.
+ * Start and stop CDRs are not affected.
+ */
+@ApplicationScoped
+public class InterimCdrPolicy {
+
+    private static final long GIGAWORD = 1L << 32;
+
+    private final boolean enabled;
+    private final int everyN;
+    private final long bytesThreshold;
+    private final Duration maxInterval;
+
+    public InterimCdrPolicy(@ConfigProperty(name = "cdr.interim.aggregation.enabled", defaultValue = "false") boolean enabled,
+                            @ConfigProperty(name = "cdr.interim.aggregation.every-n", defaultValue = "10") int everyN,
+                            @ConfigProperty(name = "cdr.interim.aggregation.bytes-threshold", defaultValue = "104857600") long bytesThreshold,
+                            @ConfigProperty(name = "cdr.interim.aggregation.max-interval", defaultValue = "PT30M") Duration maxInterval) {
+        this.enabled = enabled;
+        this.everyN = Math.max(everyN, 1);
+        this.bytesThreshold = bytesThreshold;
+        this.maxInterval = maxInterval;
+    }
+
+    /**
+     * Account one interim against a copy of the session's aggregation state. The session is not
+     * changed: the caller stores {@link Interim#state()} on it only if the interim is accounted.
+     * @return the aggregation state after this interim, with the metrics of the CDR to emit, or
+     *         null metrics if this interim is only aggregated
+     */
+    public Interim onInterim(Session session, AccountingRequestDto request, LocalDateTime now) {
+        if (!enabled) {
+            return new Interim(session.getCdrAggregation(), CdrMappingUtil.AccountingMetrics.forInterim(request));
+        }
+        CdrAggregation state = copyOfState(session, now);
+        state.setInterimsSinceEmit(state.getInterimsSinceEmit() + 1);
+
+        long bytes = totalBytes(request.inputGigaWords(), request.inputOctets()) - state.getLastInputBytes()
+                + totalBytes(request.outputGigaWords(), request.outputOctets()) - state.getLastOutputBytes();
+        boolean due = state.getInterimsSinceEmit() >= everyN
+                || (bytesThreshold > 0 && bytes >= bytesThreshold)
+                || (!maxInterval.isZero() && !now.isBefore(state.getLastEmittedAt().plus(maxInterval)));
+        return new Interim(state, due ? emit(state, request, now) : null);
+    }
+
+    /**
+     * Emit whatever was aggregated so far, e.g. because the session changed bucket.
+     * @return metrics for the CDR to emit, or null if aggregation is disabled or nothing is pending
+     */
+    public CdrMappingUtil.AccountingMetrics flush(Session session, AccountingRequestDto request, LocalDateTime now) {
+        if (!enabled || session.getCdrAggregation() == null || session.getCdrAggregation().getInterimsSinceEmit() == 0) {
+            return null;
+        }
+        return emit(session.getCdrAggregation(), request, now);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private CdrAggregation copyOfState(Session session, LocalDateTime now) {
+        CdrAggregation state = session.getCdrAggregation();
+        if (state == null) {
+            LocalDateTime since = session.getSessionInitiatedTime() != null ? session.getSessionInitiatedTime() : now;
+            return new CdrAggregation(0, since, 0, 0L, 0L);
+        }
+        return new CdrAggregation(state.getInterimsSinceEmit(), state.getLastEmittedAt(), state.getLastSessionTime(),
+                state.getLastInputBytes(), state.getLastOutputBytes());
+    }
+
+    private CdrMappingUtil.AccountingMetrics emit(CdrAggregation state, AccountingRequestDto request, LocalDateTime now) {
+        int sessionTime = request.sessionTime() != null ? request.sessionTime() : state.getLastSessionTime();
+        long input = totalBytes(request.inputGigaWords(), request.inputOctets());
+        long output = totalBytes(request.outputGigaWords(), request.outputOctets());
+
+        // counters going backwards (NAS reset, out of order interim) re-baseline with an empty delta
+        CdrMappingUtil.AccountingMetrics metrics = CdrMappingUtil.AccountingMetrics.forInterimDelta(
+                Math.max(sessionTime - state.getLastSessionTime(), 0),
+                Math.max(input - state.getLastInputBytes(), 0L),
+                Math.max(output - state.getLastOutputBytes(), 0L));
+
+        state.setInterimsSinceEmit(0);
+        state.setLastEmittedAt(now);
+        state.setLastSessionTime(sessionTime);
+        state.setLastInputBytes(input);
+        state.setLastOutputBytes(output);
+        return metrics;
+    }
+
+    private static long totalBytes(Integer gigawords, Integer octets) {
+        long high = gigawords != null ? Integer.toUnsignedLong(gigawords) : 0L;
+        long low = octets != null ? Integer.toUnsignedLong(octets) : 0L;
+        return high * GIGAWORD + low;
+    }
+
+    /**
+     * @param state aggregation state of the session after the interim
+     * @param metrics metrics of the CDR to emit, null if the interim is only aggregated
+     */
+    public record Interim(CdrAggregation state, CdrMappingUtil.AccountingMetrics metrics) {
+    }
+}
@@ -3,20 +3,24 @@ package com.csg.airtel.aaa4j.domain.service;
 import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
 import com.csg.airtel.aaa4j.domain.model.AccountingResponseEvent;
 import com.csg.airtel.aaa4j.domain.model.ServiceBucketInfo;
-import com.csg.airtel.aaa4j.domain.model.cdr.AccountingCDREvent;
+import com.csg.airtel.aaa4j.domain.model.UpdateResult;
 import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.CdrAggregation;
 import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.model.session.SessionIndex;
 import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
 
 import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
 import com.csg.airtel.aaa4j.external.clients.CacheClient;
 import com.csg.airtel.aaa4j.external.repository.UserBucketRepository;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
 
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -31,16 +35,34 @@ public class InterimHandler {
     private final UserBucketRepository userRepository;
     private final AccountingUtil accountingUtil;
     private final AccountProducer accountProducer;
+    private final CdrWriter cdrWriter;
+    private final InterimCdrPolicy interimCdrPolicy;
+    private final SessionStatistics sessionStatistics;
+    private final ActiveSessionIndex activeSessionIndex;
+    private final GroupExhaustionCoordinator groupExhaustionCoordinator;
+    private final Clock clock;
     @Inject
-    public InterimHandler(CacheClient cacheUtil, UserBucketRepository userRepository, AccountingUtil accountingUtil, AccountProducer accountProducer) {
+    public InterimHandler(CacheClient cacheUtil, UserBucketRepository userRepository, AccountingUtil accountingUtil,
+                          AccountProducer accountProducer, CdrWriter cdrWriter, InterimCdrPolicy interimCdrPolicy,
+                          SessionStatistics sessionStatistics, ActiveSessionIndex activeSessionIndex,
+                          GroupExhaustionCoordinator groupExhaustionCoordinator, Clock clock) {
         this.cacheUtil = cacheUtil;
         this.userRepository = userRepository;
         this.accountingUtil = accountingUtil;
         this.accountProducer = accountProducer;
+        this.cdrWriter = cdrWriter;
+        this.interimCdrPolicy = interimCdrPolicy;
+        this.sessionStatistics = sessionStatistics;
+        this.activeSessionIndex = activeSessionIndex;
+        this.groupExhaustionCoordinator = groupExhaustionCoordinator;
+        this.clock = clock;
     }
 
+    @WithSpan("accounting.interim")
     public Uni<Void> handleInterim(AccountingRequestDto request,String traceId) {
         long startTime = System.currentTimeMillis();
+        // one clock snapshot for the whole event: session start, bucket selection, DB write and CDR
+        LocalDateTime now = LocalDateTime.now(clock);
         log.infof("[traceId: %s] Processing interim accounting request Start for user: %s, sessionId: %s",traceId,
                 request.username(), request.sessionId());
         return cacheUtil.getUserData(request.username())
@@ -51,8 +73,8 @@ public class InterimHandler {
                 })
                 .onItem().transformToUni(userSessionData ->
                         userSessionData == null
-                                ? handleNewSessionUsage(request,traceId).invoke(() -> log.infof("[traceId: %s] Completed processing interim accounting for new session for  %s ms",traceId,System.currentTimeMillis()-startTime))
-                                : processAccountingRequest(userSessionData, request,traceId).invoke(() -> log.infof("[traceId: %s] Completed processing interim accounting for existing session for  %s ms",traceId, System.currentTimeMillis()-startTime))
+                                ? handleNewSessionUsage(request,traceId, now).invoke(() -> log.infof("[traceId: %s] Completed processing interim accounting for new session for  %s ms",traceId,System.currentTimeMillis()-startTime))
+                                : processAccountingRequest(userSessionData, request,traceId, now).invoke(() -> log.infof("[traceId: %s] Completed processing interim accounting for existing session for  %s ms",traceId, System.currentTimeMillis()-startTime))
 
                 )
                 .onFailure().recoverWithUni(throwable -> {
@@ -61,7 +83,7 @@ public class InterimHandler {
                 });
     }
 
-    private Uni<Void> handleNewSessionUsage(AccountingRequestDto request,String traceId) {
+    private Uni<Void> handleNewSessionUsage(AccountingRequestDto request,String traceId, LocalDateTime now) {
 
         if (log.isDebugEnabled()) {
             log.debugf("No cache entry found for user: %s", request.username());
@@ -89,22 +111,57 @@ public class InterimHandler {
                                 AccountingResponseEvent.ResponseAction.DISCONNECT));
                     }
 
+                     Session session = createSession(request, SessionStatistics.planOf(balanceList), now);
                      UserSessionData newUserSessionData =  UserSessionData.builder()
-                    .balance(balanceList).sessions(new ArrayList<>(List.of(createSession(request)))).build();
+                    .balance(balanceList).sessions(new SessionIndex(List.of(session))).build();
 
-                     return processAccountingRequest(newUserSessionData, request,traceId);
+                     return processAccountingRequest(newUserSessionData, request,traceId, now)
+                             .invoke(() -> {
+                                 if (newUserSessionData.getSessions().contains(session)) {
+                                     sessionStatistics.sessionOpened(request.username(), session);
+                                     activeSessionIndex.sessionOpened(request.username(), newUserSessionData.getGroupId(), session);
+                                 }
+                             });
 
                 });
     }
 
     private Uni<Void> processAccountingRequest(
-            UserSessionData userData, AccountingRequestDto request,String traceId) {
+            UserSessionData userData, AccountingRequestDto request,String traceId, LocalDateTime now) {
         long startTime = System.currentTimeMillis();
         log.infof("TraceId: %s Processing interim accounting request for user: %s, sessionId: %s",
                 traceId,request.username(), request.sessionId());
-        Session session = findSession(userData, request.sessionId());
-        if (session == null) {
-            session = createSession(request);
+        Session cachedSession = findSession(userData, request.sessionId());
+        // the buckets read here are the ones charged, so the cut-off check adds no second read
+        return accountingUtil.getCombinedBalances(userData)
+                .onItem().transformToUni(combined -> groupExhaustionCoordinator
+                        .isCutOff(userData, cachedSession, combined.balances())
+                        .onItem().transformToUni(cutOff -> Boolean.TRUE.equals(cutOff)
+                                ? skipCutOffInterim(request, cachedSession, traceId)
+                                : processSession(userData, request, cachedSession, traceId, startTime, now, combined)));
+    }
+
+    /**
+     * The group's shared bucket was exhausted and its sessions are being disconnected group-wide,
+     * so the interim is not charged. A session no longer cached gets its own disconnect.
+     */
+    private Uni<Void> skipCutOffInterim(AccountingRequestDto request, Session cachedSession, String traceId) {
+        log.infof("[traceId: %s] Group quota exhausted, skipping interim of user: %s, sessionId: %s",
+                traceId, request.username(), request.sessionId());
+        if (cachedSession != null) {
+            return Uni.createFrom().voidItem();
+        }
+        return accountProducer.produceAccountingResponseEvent(MappingUtil.createResponse(request, DATA_QUOTA_ZERO_MSG,
+                AccountingResponseEvent.EventType.COA, AccountingResponseEvent.ResponseAction.DISCONNECT));
+    }
+
+    private Uni<Void> processSession(UserSessionData userData, AccountingRequestDto request, Session cachedSession,
+                                     String traceId, long startTime, LocalDateTime now,
+                                     AccountingUtil.CombinedBalances combined) {
+        Session session = cachedSession;
+        boolean opened = session == null;
+        if (opened) {
+            session = createSession(request, SessionStatistics.planOf(userData.getBalance()), now);
         }
 
         // Early return if session time hasn't increased
@@ -114,59 +171,105 @@ public class InterimHandler {
 
         }else {
             Session finalSession = session;
-            return accountingUtil.updateSessionAndBalance(userData, session, request,null)
+            String bucketBefore = session.getPreviousUsageBucketId();
+            // staged on the session so it is persisted with the update; rolled back, and no CDR
+            // emitted, if the update fails
+            CdrAggregation aggregationBefore = session.getCdrAggregation();
+            InterimCdrPolicy.Interim cdr = interimCdrPolicy.onInterim(session, request, now);
+            session.setCdrAggregation(cdr.state());
+            return accountingUtil.updateSessionAndBalance(userData, session, request, null, now, combined)
+                    .onFailure().invoke(() -> finalSession.setCdrAggregation(aggregationBefore))
                     .onItem().transformToUni(updateResult -> {  // Changed from transform to transformToUni
                         if (!updateResult.success()) {
                             log.warnf("update failed for sessionId: %s", request.sessionId());
+                            finalSession.setCdrAggregation(aggregationBefore);
+                            return Uni.createFrom().voidItem();
+                        }
+                        if (opened && userData.getSessions().contains(finalSession)) {
+                            sessionStatistics.sessionOpened(request.username(), finalSession);
+                            activeSessionIndex.sessionOpened(request.username(), userData.getGroupId(), finalSession);
+                        }
+                        if (isSharedBucketExhausted(userData, request, updateResult)) {
+                            groupExhaustionCoordinator.bucketExhausted(userData.getGroupId(), request.username(),
+                                    updateResult.bucketId());
                         }
                         log.infof("Interim accounting processing time ms : %d",
                                 System.currentTimeMillis() - startTime);
-                        generateAndSendCDR(request, finalSession);
-                        return Uni.createFrom().voidItem();
-
+                        if (cdr.metrics() != null) {
+                            generateAndSendCDR(request, finalSession, cdr.metrics());
+                            return Uni.createFrom().voidItem();
+                        }
+                        return flushOnBucketChange(userData, finalSession, request, bucketBefore, now);
                     });
         }
     }
 
+    /**
+     * True when the interim drove a group's shared bucket to zero and no member holds a grant on
+     * it any more; the member's own sessions were already disconnected by the balance update.
+     */
+    private static boolean isSharedBucketExhausted(UserSessionData userData, AccountingRequestDto request,
+                                                   UpdateResult updateResult) {
+        return updateResult.success()
+                && updateResult.newQuota() != null && updateResult.newQuota() <= 0
+                && updateResult.balance() != null
+                && !request.username().equals(updateResult.balance().getBucketUsername())
+                && updateResult.balance().reservedQuota() == 0
+                && ActiveSessionIndex.isGroup(userData.getGroupId());
+    }
+
     private Session findSession(UserSessionData userData, String sessionId) {
-        List<Session> sessions = userData.getSessions();
-        for (Session session : sessions) {
-            if (session.getSessionId().equals(sessionId)) {
-                return session;
-            }
-        }
-        return null;
+        return userData.getSessions().get(sessionId);
     }
 
 
 
-    private Session createSession(AccountingRequestDto request) {
+    private Session createSession(AccountingRequestDto request, String planId, LocalDateTime now) {
         return new Session(
                 request.sessionId(),
-                LocalDateTime.now(),
+                now,
                 null,
                 request.sessionTime() - 1,
                 0L,
                 request.framedIPAddress(),
-                request.nasIP()
-
+                request.nasIP(),
+                null,
+                null,
+                planId,
+                0L,
+                0L
         );
     }
 
-    private void generateAndSendCDR(AccountingRequestDto request, Session session) {
-        try {
-            AccountingCDREvent cdrEvent = CdrMappingUtil.buildInterimCDREvent(request, session);
-
-            // run asynchronously without blocking
-            accountProducer.produceAccountingCDREvent(cdrEvent)
-                    .subscribe()
-                    .with(
-                            success -> log.infof("CDR event sent successfully for session: %s", request.sessionId()),
-                            failure -> log.errorf(failure, "Failed to send CDR event for session: %s", request.sessionId())
-                    );
-        } catch (Exception e) {
-            log.errorf(e, "Error building CDR event for session: %s", request.sessionId());
+    /**
+     * Emit the aggregated interim CDR when the session was charged to another bucket than before.
+     * The reset aggregation state is written back only if the session is still cached.
+     */
+    private Uni<Void> flushOnBucketChange(UserSessionData userData, Session session, AccountingRequestDto request,
+                                          String bucketBefore, LocalDateTime now) {
+        if (bucketBefore == null || bucketBefore.equals(session.getPreviousUsageBucketId())) {
+            return Uni.createFrom().voidItem();
         }
+        CdrMappingUtil.AccountingMetrics cdrMetrics = interimCdrPolicy.flush(session, request, now);
+        if (cdrMetrics == null) {
+            return Uni.createFrom().voidItem();
+        }
+        log.infof("Bucket changed from %s to %s, flushing interim CDR for session: %s",
+                bucketBefore, session.getPreviousUsageBucketId(), request.sessionId());
+        generateAndSendCDR(request, session, cdrMetrics);
+        if (!userData.getSessions().contains(session)) {
+            return Uni.createFrom().voidItem();
+        }
+        return cacheUtil.updateUserAndRelatedCaches(request.username(), userData)
+                .onFailure().invoke(err ->
+                        log.errorf(err, "Error storing CDR aggregation state for session: %s", request.sessionId()))
+                .onFailure().recoverWithNull()
+                .replaceWithVoid();
+    }
+
+    private void generateAndSendCDR(AccountingRequestDto request, Session session,
+                                    CdrMappingUtil.AccountingMetrics metrics) {
+        cdrWriter.write(request, session, metrics);
     }
 
 
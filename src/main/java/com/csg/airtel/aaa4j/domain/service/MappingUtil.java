@@ -79,6 +79,7 @@ public class MappingUtil {
         balance.setConsumptionLimitWindow(bucket.getConsumptionTimeWindow());
         balance.setBucketUsername(bucket.getBucketUser());
         balance.setBucketExpiryDate(bucket.getBucketExpiryDate());
+        balance.markStored(bucket.getCurrentBalance(), bucket.getBucketUpdatedAt());
         return balance;
     }
 
@@ -0,0 +1,197 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.response.NasTermination;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient.SessionRef;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closes every session of a NAS at once, for Accounting-On/Off and NAS reboots. The NAS index
+ * is walked page by page; within a page the users are closed in parallel, each one as a single
+ * mutation of its document with one DB write per bucket and a stop CDR per session. Sessions
+ * started after the cutoff belong to the NAS's new life and are kept.
+ */
+@ApplicationScoped
+public class NasSessionTerminator {
+
+    private static final Logger log = Logger.getLogger(NasSessionTerminator.class);
+    private static final String FIRST_CURSOR = "0";
+
+    private final SessionIndexClient indexClient;
+    private final CacheClient cacheClient;
+    private final AccountingUtil accountingUtil;
+    private final UserMutationMailbox mailbox;
+    private final CdrWriter cdrWriter;
+    private final SessionStatistics sessionStatistics;
+    private final ActiveSessionIndex activeSessionIndex;
+    private final int maxConcurrency;
+    private final int scanCount;
+    private final Counter closedSessions;
+
+    public NasSessionTerminator(SessionIndexClient indexClient,
+                                CacheClient cacheClient,
+                                AccountingUtil accountingUtil,
+                                UserMutationMailbox mailbox,
+                                CdrWriter cdrWriter,
+                                SessionStatistics sessionStatistics,
+                                ActiveSessionIndex activeSessionIndex,
+                                MetricRegistry metricRegistry,
+                                @ConfigProperty(name = "accounting.nas-termination.max-concurrency", defaultValue = "16") int maxConcurrency,
+                                @ConfigProperty(name = "accounting.nas-termination.scan-count", defaultValue = "500") int scanCount) {
+        this.indexClient = indexClient;
+        this.cacheClient = cacheClient;
+        this.accountingUtil = accountingUtil;
+        this.mailbox = mailbox;
+        this.cdrWriter = cdrWriter;
+        this.sessionStatistics = sessionStatistics;
+        this.activeSessionIndex = activeSessionIndex;
+        this.maxConcurrency = maxConcurrency;
+        this.scanCount = scanCount;
+        this.closedSessions = metricRegistry.counter("nas_terminated_sessions_total");
+    }
+
+    /**
+     * Handle an Accounting-On/Off: the NAS lost all sessions it had before the event.
+     */
+    public Uni<Void> onAccountingOnOff(AccountingRequestDto request, String traceId) {
+        if (request.nasIP() == null) {
+            log.warnf("[traceId: %s] %s without NAS IP ignored", traceId, request.actionType());
+            return Uni.createFrom().voidItem();
+        }
+        Instant at = request.timestamp() != null ? request.timestamp() : Instant.now();
+        return terminate(request.nasIP(), LocalDateTime.ofInstant(at, ZoneId.systemDefault()))
+                .invoke(result -> log.infof("[traceId: %s] %s of NAS %s closed %d sessions in %d ms",
+                        traceId, request.actionType(), result.nasIp(), result.closedSessions(), result.durationMs()))
+                .replaceWithVoid();
+    }
+
+    /**
+     * Close all sessions of the NAS started before the cutoff.
+     * @param nasIp NAS whose sessions are gone
+     * @param cutoff sessions initiated after this time are kept
+     */
+    @WithSpan("nas.terminate")
+    public Uni<NasTermination> terminate(String nasIp, LocalDateTime cutoff) {
+        long startTime = System.currentTimeMillis();
+        Tally tally = new Tally();
+        return terminatePage(nasIp, cutoff, FIRST_CURSOR, tally)
+                .onItem().transform(v -> new NasTermination(nasIp, tally.closed.get(), tally.kept.get(),
+                        tally.stale.get(), tally.failed.get(), System.currentTimeMillis() - startTime));
+    }
+
+    private Uni<Void> terminatePage(String nasIp, LocalDateTime cutoff, String cursor, Tally tally) {
+        return indexClient.scanNasSessions(nasIp, cursor, scanCount)
+                .onItem().transformToUni(page -> closePage(nasIp, cutoff, page.sessions(), tally)
+                        .chain(() -> FIRST_CURSOR.equals(page.cursor())
+                                ? Uni.createFrom().voidItem()
+                                : terminatePage(nasIp, cutoff, page.cursor(), tally)));
+    }
+
+    private Uni<Void> closePage(String nasIp, LocalDateTime cutoff, List<SessionRef> sessions, Tally tally) {
+        if (sessions.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        Map<String, List<String>> byUser = new LinkedHashMap<>();
+        for (SessionRef ref : sessions) {
+            byUser.computeIfAbsent(ref.userName(), k -> new ArrayList<>()).add(ref.sessionId());
+        }
+        return Multi.createFrom().iterable(byUser.entrySet())
+                .onItem().transformToUni(entry -> closeUserSessions(nasIp, cutoff, entry.getKey(), entry.getValue(), tally))
+                .merge(maxConcurrency)
+                .collect().last()
+                .replaceWithVoid();
+    }
+
+    private Uni<Void> closeUserSessions(String nasIp, LocalDateTime cutoff, String userName,
+                                        List<String> sessionIds, Tally tally) {
+        return mailbox.submit(userName, () -> cacheClient.getUserData(userName)
+                        .onItem().transformToUni(userData -> {
+                            List<Session> toClose = new ArrayList<>(sessionIds.size());
+                            List<SessionRef> stale = new ArrayList<>();
+                            for (String sessionId : sessionIds) {
+                                Session session = findSession(userData, sessionId);
+                                if (session == null || !nasIp.equals(session.getNasIp())) {
+                                    tally.stale.incrementAndGet();
+                                    stale.add(new SessionRef(userName, sessionId));
+                                } else if (session.getSessionInitiatedTime() != null
+                                        && session.getSessionInitiatedTime().isAfter(cutoff)) {
+                                    tally.kept.incrementAndGet();
+                                } else {
+                                    toClose.add(session);
+                                }
+                            }
+                            Uni<Void> close = toClose.isEmpty()
+                                    ? Uni.createFrom().voidItem()
+                                    : accountingUtil.closeSessions(userName, userData, toClose)
+                                            .invoke(() -> {
+                                                tally.closed.addAndGet(toClose.size());
+                                                closedSessions.inc(toClose.size());
+                                                sessionStatistics.sessionsClosed(toClose);
+                                                activeSessionIndex.sessionsClosed(userName, userData.getGroupId(), toClose);
+                                                toClose.forEach(session -> writeStopCdr(userName, session, cutoff));
+                                            });
+                            return close.chain(() -> indexClient.removeNasSessions(nasIp, stale));
+                        }))
+                .onFailure().recoverWithUni(throwable -> {
+                    log.errorf(throwable, "Failed to close %d sessions of user %s on NAS %s",
+                            sessionIds.size(), userName, nasIp);
+                    tally.failed.addAndGet(sessionIds.size());
+                    return Uni.createFrom().voidItem();
+                });
+    }
+
+    private static Session findSession(UserSessionData userData, String sessionId) {
+        if (userData == null || userData.getSessions() == null) {
+            return null;
+        }
+        return userData.getSessions().get(sessionId);
+    }
+
+    private void writeStopCdr(String userName, Session session, LocalDateTime cutoff) {
+        AccountingRequestDto request = new AccountingRequestDto(
+                EventIdGenerator.nextId(),
+                session.getSessionId(),
+                session.getNasIp(),
+                userName,
+                AccountingRequestDto.ActionType.STOP,
+                0,
+                0,
+                session.getSessionTime(),
+                cutoff.atZone(ZoneId.systemDefault()).toInstant(),
+                null,
+                session.getFramedId(),
+                0,
+                0,
+                0,
+                null);
+        cdrWriter.write(request, session, CdrMappingUtil.AccountingMetrics.forClosed(session.getSessionTime(),
+                session.getPreviousInputBytes(), session.getPreviousOutputBytes()));
+    }
+
+    private static final class Tally {
+        private final AtomicInteger closed = new AtomicInteger();
+        private final AtomicInteger kept = new AtomicInteger();
+        private final AtomicInteger stale = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+    }
+}
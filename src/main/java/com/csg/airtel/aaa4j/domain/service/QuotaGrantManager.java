@@ -0,0 +1,196 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.GrantReservation;
+import com.csg.airtel.aaa4j.domain.model.session.QuotaGrant;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Credit-control style reservations on shared (group) buckets. A session reserves a
+ * slice of the bucket, interims are debited against that slice inside the member's own
+ * session data, and the shared bucket is only rewritten when the slice runs out,
+ * expires, or the session stops. The bucket keeps a reservation per slice; reservations of
+ * sessions silent for {@code reclaim-after} past expiry are taken back by the bucket, and a
+ * session reporting after that is charged for what it used of the reclaimed slice.
+ */
+@ApplicationScoped
+public class QuotaGrantManager {
+
+    private static final Logger log = Logger.getLogger(QuotaGrantManager.class);
+
+    private final boolean enabled;
+    private final long grantSize;
+    private final Duration validity;
+    private final Duration reclaimAfter;
+
+    public QuotaGrantManager(@ConfigProperty(name = "accounting.quota-grant.enabled", defaultValue = "true") boolean enabled,
+                             @ConfigProperty(name = "accounting.quota-grant.size-bytes", defaultValue = "52428800") long grantSize,
+                             @ConfigProperty(name = "accounting.quota-grant.validity", defaultValue = "PT15M") Duration validity,
+                             @ConfigProperty(name = "accounting.quota-grant.reclaim-after", defaultValue = "PT15M") Duration reclaimAfter) {
+        this.enabled = enabled;
+        this.grantSize = grantSize;
+        this.validity = validity;
+        this.reclaimAfter = reclaimAfter;
+    }
+
+    /**
+     * Grants are used for shared buckets only. Buckets with a consumption limit keep
+     * per-interim accounting because the limit check needs every delta on the bucket.
+     */
+    public boolean appliesTo(Balance balance, AccountingRequestDto request) {
+        return enabled
+                && !request.username().equals(balance.getBucketUsername())
+                && (balance.getConsumptionLimit() == null || balance.getConsumptionLimit() <= 0);
+    }
+
+    /**
+     * @return the session's grant if it can still be consumed, or null
+     */
+    public QuotaGrant activeGrant(Session session, LocalDateTime now) {
+        QuotaGrant grant = session.getQuotaGrant();
+        if (grant == null || grant.getRemaining() == null || grant.getRemaining() <= 0
+                || !now.isBefore(grant.getExpiresAt())) {
+            return null;
+        }
+        return grant;
+    }
+
+    /**
+     * @return quota of reservations the bucket can take back because their sessions went silent
+     */
+    public long reclaimable(Balance balance, LocalDateTime now) {
+        if (balance.getGrantReservations() == null) {
+            return 0L;
+        }
+        long amount = 0L;
+        for (GrantReservation reservation : balance.getGrantReservations().values()) {
+            if (isStale(reservation, now)) {
+                amount += reservation.getAmount();
+            }
+        }
+        return amount;
+    }
+
+    /**
+     * Debit the usage from the session's grant without touching the shared bucket.
+     * @return true if the grant covered the usage, false if the bucket must be settled
+     */
+    public boolean tryDebitLocally(Session session, Balance balance, long usageDelta, LocalDateTime now) {
+        QuotaGrant grant = session.getQuotaGrant();
+        if (grant == null || !balance.getBucketId().equals(grant.getBucketId())
+                || !now.isBefore(grant.getExpiresAt()) || usageDelta >= grant.getRemaining()) {
+            return false;
+        }
+        grant.setRemaining(grant.getRemaining() - usageDelta);
+        return true;
+    }
+
+    /**
+     * Settle the current grant against the bucket: unused quota is returned, overflow is
+     * debited, and unless the session is stopping a fresh slice is reserved.
+     * @return quota still available to this session (bucket plus new grant)
+     */
+    public long settle(Session session, Balance balance, long usageDelta, LocalDateTime now, boolean stopping) {
+        QuotaGrant grant = session.getQuotaGrant();
+        long held = grant != null && balance.getBucketId().equals(grant.getBucketId())
+                ? takeBack(session, balance) : 0L;
+        reclaimStale(balance, now);
+        long bucketQuota = balance.getQuota() + held - usageDelta;
+
+        long slice = stopping ? 0L : Math.min(grantSize, Math.max(bucketQuota, 0L));
+        balance.setQuota(Math.max(bucketQuota - slice, 0L));
+        if (slice > 0) {
+            LocalDateTime expiresAt = now.plus(validity);
+            session.setQuotaGrant(new QuotaGrant(balance.getBucketId(), slice, slice, expiresAt));
+            if (balance.getGrantReservations() == null) {
+                balance.setGrantReservations(new HashMap<>());
+            }
+            balance.getGrantReservations().put(session.getSessionId(), new GrantReservation(slice, expiresAt));
+        } else {
+            session.setQuotaGrant(null);
+        }
+
+        log.debugf("Settled grant for session %s on bucket %s: returned=%d, used=%d, reserved=%d, bucket=%d",
+                session.getSessionId(), balance.getBucketId(), held, usageDelta, slice, balance.getQuota());
+        return bucketQuota;
+    }
+
+    /**
+     * Return the unused part of a session's grant to the bucket it was taken from.
+     * @return the balance that received the quota, or null if nothing was returned
+     */
+    public Balance release(Session session, List<Balance> balances) {
+        QuotaGrant grant = session.getQuotaGrant();
+        if (grant == null) {
+            return null;
+        }
+        for (Balance balance : balances) {
+            if (balance.getBucketId().equals(grant.getBucketId())) {
+                balance.setQuota(Math.max(balance.getQuota() + takeBack(session, balance), 0L));
+                return balance;
+            }
+        }
+        session.setQuotaGrant(null);
+        log.warnf("Bucket %s of released grant not found for session %s", grant.getBucketId(), session.getSessionId());
+        return null;
+    }
+
+    /**
+     * End the session's grant on its bucket without touching the bucket quota.
+     * @return quota to hand back to the bucket: the unused part of the slice, or, if the bucket
+     *         already reclaimed the slice, minus the part the session used of it
+     */
+    public long takeBack(Session session, Balance balance) {
+        QuotaGrant grant = session.getQuotaGrant();
+        session.setQuotaGrant(null);
+        if (grant == null) {
+            return 0L;
+        }
+        GrantReservation reservation = balance.getGrantReservations() == null
+                ? null : balance.getGrantReservations().remove(session.getSessionId());
+        if (reservation != null || grant.getGranted() == null) {
+            return grant.getRemaining();
+        }
+        log.infof("Grant of session %s was reclaimed by bucket %s, charging %d used bytes",
+                session.getSessionId(), balance.getBucketId(), grant.getGranted() - grant.getRemaining());
+        return grant.getRemaining() - grant.getGranted();
+    }
+
+    /**
+     * Give the bucket back the slices of sessions that stopped reporting.
+     * @return quota reclaimed
+     */
+    public long reclaimStale(Balance balance, LocalDateTime now) {
+        if (balance.getGrantReservations() == null) {
+            return 0L;
+        }
+        long reclaimed = 0L;
+        Iterator<GrantReservation> reservations = balance.getGrantReservations().values().iterator();
+        while (reservations.hasNext()) {
+            GrantReservation reservation = reservations.next();
+            if (isStale(reservation, now)) {
+                reclaimed += reservation.getAmount();
+                reservations.remove();
+            }
+        }
+        if (reclaimed > 0) {
+            balance.setQuota(balance.getQuota() + reclaimed);
+            log.infof("Reclaimed %d bytes of stale grants on bucket %s", reclaimed, balance.getBucketId());
+        }
+        return reclaimed;
+    }
+
+    private boolean isStale(GrantReservation reservation, LocalDateTime now) {
+        return !now.isBefore(reservation.getExpiresAt().plus(reclaimAfter));
+    }
+}
@@ -0,0 +1,43 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.session.BucketSelectionIndex;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bucket selection indexes of recently seen users, held in memory only so they are neither
+ * serialized into the user documents nor checked by walking the buckets. An index is used
+ * while the bucket list keeps the version it was built for. Bounded: once full the cache is
+ * emptied, which costs each user one rebuild on their next event.
+ */
+class SelectionIndexCache {
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, BucketSelectionIndex> indexes = new ConcurrentHashMap<>();
+
+    SelectionIndexCache(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the user's index if it was built for {@code version} and is still valid at {@code now}, else null
+     */
+    BucketSelectionIndex get(String userName, long version, LocalDateTime now) {
+        if (userName == null) {
+            return null;
+        }
+        BucketSelectionIndex index = indexes.get(userName);
+        return index != null && index.isValid(version, now) ? index : null;
+    }
+
+    void put(String userName, BucketSelectionIndex index) {
+        if (userName == null || index.getVersion() == 0) {
+            return;
+        }
+        if (indexes.size() >= capacity && !indexes.containsKey(userName)) {
+            indexes.clear();
+        }
+        indexes.put(userName, index);
+    }
+}
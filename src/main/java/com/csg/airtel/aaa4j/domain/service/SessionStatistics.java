@@ -0,0 +1,293 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.response.SessionStatsSnapshot;
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.csg.airtel.aaa4j.external.clients.SessionStatsClient;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Active-session counters per NAS, per plan and in total, maintained incrementally when
+ * sessions open and close instead of scanning the user documents. Distinct users and NAS
+ * seen per day are kept as HyperLogLog sketches.
+ * Sessions dropped without a stop (document TTL, deleted keys, lost updates) make the counters
+ * drift, so they are reconciled against a bounded random sample of the keyspace instead of a
+ * scan: each pass draws a fixed number of keys with RANDOMKEY, a few per step, and scales the
+ * sessions found by keyspace size over draws. Only the instance holding the reconcile lease
+ * samples. A counter is corrected only when its estimate is off by more than the tolerance and
+ * by more than the sampling noise, in the same direction on two passes in a row; it is then
+ * moved to the estimate with HINCRBY, so increments made by other instances meanwhile are
+ * kept. Counters too small to show in the sample are left to the incremental updates.
+ */
+@ApplicationScoped
+public class SessionStatistics {
+
+    private static final Logger log = Logger.getLogger(SessionStatistics.class);
+    static final String TOTAL = "total";
+    static final String NAS_PREFIX = "nas:";
+    static final String PLAN_PREFIX = "plan:";
+    private static final String UNKNOWN = "unknown";
+    // standard deviations of sampling noise a counter must be off by before it is suspect
+    private static final double NOISE_DEVIATIONS = 3.0;
+
+    private final SessionStatsClient statsClient;
+    private final CacheClient cacheClient;
+    private final UserStateProjector projector;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Duration sketchTtl;
+    private final int reconcileBatchSize;
+    private final int reconcileSampleSize;
+    private final double reconcileTolerance;
+    private final Duration leaseTtl;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile SessionStatsSnapshot lastSnapshot = SessionStatsSnapshot.empty();
+    private volatile double lastDrift;
+    // reconcile pass state, only touched by the non-concurrent scheduled reconcile
+    private int sampledDraws;
+    private Map<String, Long> sampled = new HashMap<>();
+    // direction of the drift seen on the previous pass, per field beyond tolerance and noise
+    private Map<String, Long> driftDirections = new HashMap<>();
+
+    public SessionStatistics(SessionStatsClient statsClient,
+                             CacheClient cacheClient,
+                             UserStateProjector projector,
+                             Clock clock,
+                             MetricRegistry metricRegistry,
+                             @ConfigProperty(name = "session-stats.enabled", defaultValue = "true") boolean enabled,
+                             @ConfigProperty(name = "session-stats.sketch-ttl", defaultValue = "P2D") Duration sketchTtl,
+                             @ConfigProperty(name = "session-stats.reconcile.batch-size", defaultValue = "200") int reconcileBatchSize,
+                             @ConfigProperty(name = "session-stats.reconcile.sample-size", defaultValue = "2000") int reconcileSampleSize,
+                             @ConfigProperty(name = "session-stats.reconcile.tolerance", defaultValue = "0.02") double reconcileTolerance,
+                             @ConfigProperty(name = "session-stats.reconcile.lease-ttl", defaultValue = "PT30S") Duration leaseTtl) {
+        this.statsClient = statsClient;
+        this.cacheClient = cacheClient;
+        this.projector = projector;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.sketchTtl = sketchTtl;
+        this.reconcileBatchSize = reconcileBatchSize;
+        this.reconcileSampleSize = reconcileSampleSize;
+        this.reconcileTolerance = reconcileTolerance;
+        this.leaseTtl = leaseTtl;
+        metricRegistry.gauge("session_stats_active_sessions", () -> lastSnapshot.activeSessions());
+        metricRegistry.gauge("session_stats_distinct_users_today", () -> lastSnapshot.distinctUsersToday());
+        metricRegistry.gauge("session_stats_distinct_nas_today", () -> lastSnapshot.distinctNasToday());
+        metricRegistry.gauge("session_stats_drift_ratio", () -> lastDrift);
+    }
+
+    /**
+     * Plan a new session is counted under: the service of the highest priority bucket.
+     */
+    public static String planOf(List<Balance> balances) {
+        Balance top = null;
+        for (Balance balance : balances) {
+            if (top == null || balance.getPriority() < top.getPriority()) {
+                top = balance;
+            }
+        }
+        return top == null ? null : top.getServiceId();
+    }
+
+    /**
+     * Count a session that was just added to a user's document. Fire-and-forget.
+     */
+    public void sessionOpened(String userName, Session session) {
+        if (!enabled) {
+            return;
+        }
+        String today = LocalDate.now(clock).toString();
+        String nasIp = valueOrUnknown(session.getNasIp());
+        statsClient.increment(deltas(List.of(session), 1))
+                .chain(() -> statsClient.addToSketch("users:" + today, userName, sketchTtl))
+                .chain(() -> statsClient.addToSketch("nas:" + today, nasIp, sketchTtl))
+                .subscribe().with(
+                        v -> { },
+                        e -> log.warnf("Failed to count opened session %s: %s", session.getSessionId(), e.getMessage()));
+    }
+
+    /**
+     * Uncount sessions that were removed from a user's document. Fire-and-forget.
+     */
+    public void sessionsClosed(Collection<Session> sessions) {
+        if (!enabled || sessions == null || sessions.isEmpty()) {
+            return;
+        }
+        statsClient.increment(deltas(sessions, -1))
+                .subscribe().with(
+                        v -> { },
+                        e -> log.warnf("Failed to count %d closed sessions: %s", sessions.size(), e.getMessage()));
+    }
+
+    public Uni<SessionStatsSnapshot> snapshot() {
+        String today = LocalDate.now(clock).toString();
+        return Uni.combine().all().unis(
+                        statsClient.getCounters(),
+                        statsClient.countDistinct("users:" + today),
+                        statsClient.countDistinct("nas:" + today))
+                .asTuple()
+                .onItem().transform(t -> toSnapshot(t.getItem1(), t.getItem2(), t.getItem3()))
+                .invoke(snapshot -> lastSnapshot = snapshot);
+    }
+
+    @Scheduled(every = "${session-stats.refresh-interval:15s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> refresh() {
+        if (!enabled) {
+            return Uni.createFrom().voidItem();
+        }
+        return snapshot().replaceWithVoid()
+                .onFailure().recoverWithItem(throwable -> {
+                    log.warnf("Session statistics refresh failed: %s", throwable.getMessage());
+                    return null;
+                });
+    }
+
+    /**
+     * One step of the reconcile: draw a few keys at random, read the user documents among them
+     * with one MGET and add their sessions to the running sample. A pass ends after
+     * {@code sample-size} draws. An instance that does not hold the lease drops its partial pass.
+     */
+    @Scheduled(every = "${session-stats.reconcile.interval:5s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    Uni<Void> reconcileStep() {
+        if (!enabled) {
+            return Uni.createFrom().voidItem();
+        }
+        return statsClient.holdReconcileLease(instanceId, leaseTtl)
+                .chain(held -> {
+                    if (Boolean.TRUE.equals(held)) {
+                        return sampleStep();
+                    }
+                    sampledDraws = 0;
+                    sampled = new HashMap<>();
+                    driftDirections = new HashMap<>();
+                    return Uni.createFrom().voidItem();
+                })
+                .onFailure().recoverWithItem(throwable -> {
+                    log.warnf("Session statistics reconcile step failed: %s", throwable.getMessage());
+                    return null;
+                });
+    }
+
+    private Uni<Void> sampleStep() {
+        int draws = Math.min(reconcileBatchSize, reconcileSampleSize - sampledDraws);
+        return statsClient.sampleUsers(draws)
+                .chain(userIds -> cacheClient.getUserJsonBatch(List.copyOf(new LinkedHashSet<>(userIds)))
+                        .chain(documents -> {
+                            // a user drawn twice is counted twice, as sampling is with replacement
+                            for (String userId : userIds) {
+                                String json = documents.get(userId);
+                                if (json != null) {
+                                    count(json);
+                                }
+                            }
+                            sampledDraws += draws;
+                            return sampledDraws >= reconcileSampleSize ? completePass() : Uni.createFrom().voidItem();
+                        }));
+    }
+
+    private void count(String json) {
+        try {
+            deltas(projector.sessions(json), 1).forEach((field, count) -> sampled.merge(field, count, Long::sum));
+        } catch (IOException e) {
+            log.debugf("Skipping unreadable user document in session sample: %s", e.getMessage());
+        }
+    }
+
+    private Uni<Void> completePass() {
+        int draws = sampledDraws;
+        Map<String, Long> pass = sampled;
+        sampledDraws = 0;
+        sampled = new HashMap<>();
+        return Uni.combine().all().unis(statsClient.keyspaceSize(), statsClient.getCounters())
+                .asTuple()
+                .chain(t -> {
+                    double scale = Math.max(t.getItem1(), 1L) / (double) draws;
+                    Map<String, Long> corrections = corrections(pass, t.getItem2(), scale);
+                    if (corrections.isEmpty()) {
+                        return Uni.createFrom().voidItem();
+                    }
+                    log.warnf("Session counters %s drifted on two sampled passes, correcting them to the estimate",
+                            corrections.keySet());
+                    return statsClient.increment(corrections);
+                });
+    }
+
+    /**
+     * Per-field increments that move a counter to its estimate, for the fields whose sampled
+     * count is off beyond the tolerance and beyond sampling noise, in the same direction as on
+     * the previous pass. The noise is taken as Poisson around the hits the current counter
+     * predicts. Also records the drift directions for the next pass and the drift gauge.
+     * @param scale keys in the keyspace per draw
+     */
+    private Map<String, Long> corrections(Map<String, Long> sample, Map<String, Long> current, double scale) {
+        Set<String> fields = new HashSet<>(sample.keySet());
+        fields.addAll(current.keySet());
+        fields.add(TOTAL);
+        Map<String, Long> corrections = new HashMap<>();
+        Map<String, Long> directions = new HashMap<>();
+        double maxDrift = 0;
+        for (String field : fields) {
+            long hits = sample.getOrDefault(field, 0L);
+            long actual = current.getOrDefault(field, 0L);
+            double expectedHits = actual / scale;
+            if (Math.abs(hits - expectedHits) <= NOISE_DEVIATIONS * Math.sqrt(Math.max(expectedHits, 1))) {
+                continue;
+            }
+            long estimate = Math.round(hits * scale);
+            double drift = Math.abs(estimate - actual) / (double) Math.max(estimate, 1);
+            maxDrift = Math.max(maxDrift, drift);
+            if (drift <= reconcileTolerance) {
+                continue;
+            }
+            long direction = Long.signum(estimate - actual);
+            if (Objects.equals(driftDirections.get(field), direction)) {
+                corrections.put(field, estimate - actual);
+            } else {
+                directions.put(field, direction);
+            }
+        }
+        driftDirections = directions;
+        lastDrift = maxDrift;
+        return corrections;
+    }
+
+    private static Map<String, Long> deltas(Collection<Session> sessions, long delta) {
+        Map<String, Long> deltas = new HashMap<>();
+        for (Session session : sessions) {
+            deltas.merge(TOTAL, delta, Long::sum);
+            deltas.merge(NAS_PREFIX + valueOrUnknown(session.getNasIp()), delta, Long::sum);
+            deltas.merge(PLAN_PREFIX + valueOrUnknown(session.getPlanId()), delta, Long::sum);
+        }
+        return deltas;
+    }
+
+    private static SessionStatsSnapshot toSnapshot(Map<String, Long> counters, long distinctUsers, long distinctNas) {
+        Map<String, Long> perNas = new TreeMap<>();
+        Map<String, Long> perPlan = new TreeMap<>();
+        counters.forEach((field, count) -> {
+            if (field.startsWith(NAS_PREFIX)) {
+                perNas.put(field.substring(NAS_PREFIX.length()), count);
+            } else if (field.startsWith(PLAN_PREFIX)) {
+                perPlan.put(field.substring(PLAN_PREFIX.length()), count);
+            }
+        });
+        return new SessionStatsSnapshot(counters.getOrDefault(TOTAL, 0L), perNas, perPlan, distinctUsers, distinctNas);
+    }
+
+    private static String valueOrUnknown(String value) {
+        return value == null || value.isEmpty() ? UNKNOWN : value;
+    }
+}
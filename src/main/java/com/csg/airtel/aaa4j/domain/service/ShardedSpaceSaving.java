@@ -0,0 +1,50 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * {@link SpaceSaving} summaries partitioned by key hash, so concurrent adds of different keys
+ * mostly take different locks. A key always lands in the same shard, so the shards hold
+ * disjoint keys and the top keys are the top of the per-shard tops; each shard keeps
+ * {@code capacity} keys and its own error bound.
+ */
+final class ShardedSpaceSaving {
+
+    private static final Comparator<SpaceSaving.Estimate> BY_COUNT_DESC =
+            Comparator.comparingLong(SpaceSaving.Estimate::count).reversed();
+
+    private final SpaceSaving[] shards;
+
+    ShardedSpaceSaving(int shardCount, int capacity) {
+        this.shards = new SpaceSaving[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new SpaceSaving(capacity);
+        }
+    }
+
+    void add(String key, long weight) {
+        shards[Math.floorMod(key.hashCode(), shards.length)].add(key, weight);
+    }
+
+    /**
+     * @return up to n keys with the highest counts over all shards, highest first
+     */
+    List<SpaceSaving.Estimate> top(int n) {
+        List<SpaceSaving.Estimate> merged = new ArrayList<>();
+        for (SpaceSaving shard : shards) {
+            merged.addAll(shard.top(n));
+        }
+        merged.sort(BY_COUNT_DESC);
+        return merged.size() > n ? merged.subList(0, n) : merged;
+    }
+
+    long total() {
+        long total = 0;
+        for (SpaceSaving shard : shards) {
+            total += shard.total();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,83 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Space-Saving heavy-hitter summary over at most {@code capacity} keys. When a new key arrives
+ * and the summary is full, the key with the smallest count is replaced and the new key inherits
+ * that count as its error bound. A key whose true weight exceeds total / capacity is always kept.
+ */
+final class SpaceSaving {
+
+    record Estimate(String key, long count, long error) {
+    }
+
+    private static final class Entry {
+        private final String key;
+        private long count;
+        private long error;
+
+        private Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final Comparator<Entry> BY_COUNT = Comparator
+            .comparingLong((Entry e) -> e.count)
+            .thenComparing(e -> e.key);
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+    private final TreeSet<Entry> ordered = new TreeSet<>(BY_COUNT);
+    private long total;
+
+    SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.entries = HashMap.newHashMap(capacity);
+    }
+
+    synchronized void add(String key, long weight) {
+        total += weight;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            ordered.remove(entry);
+            entry.count += weight;
+            ordered.add(entry);
+            return;
+        }
+        if (entries.size() < capacity) {
+            entry = new Entry(key, weight, 0);
+        } else {
+            Entry evicted = ordered.pollFirst();
+            entries.remove(evicted.key);
+            entry = new Entry(key, evicted.count + weight, evicted.count);
+        }
+        entries.put(key, entry);
+        ordered.add(entry);
+    }
+
+    /**
+     * @return up to n keys with the highest counts, highest first
+     */
+    synchronized List<Estimate> top(int n) {
+        List<Estimate> top = new ArrayList<>(Math.min(n, entries.size()));
+        Iterator<Entry> it = ordered.descendingIterator();
+        while (it.hasNext() && top.size() < n) {
+            Entry entry = it.next();
+            top.add(new Estimate(entry.key, entry.count, entry.error));
+        }
+        return top;
+    }
+
+    synchronized long total() {
+        return total;
+    }
+}
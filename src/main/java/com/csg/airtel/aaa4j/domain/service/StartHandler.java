@@ -5,14 +5,15 @@ import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
 import com.csg.airtel.aaa4j.domain.model.AccountingResponseEvent;
 import com.csg.airtel.aaa4j.domain.model.ServiceBucketInfo;
 
-import com.csg.airtel.aaa4j.domain.model.cdr.*;
 import com.csg.airtel.aaa4j.domain.model.session.Balance;
 import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.model.session.SessionIndex;
 import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
 import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
 import com.csg.airtel.aaa4j.external.clients.CacheClient;
 import com.csg.airtel.aaa4j.external.repository.UserBucketRepository;
 
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.smallrye.mutiny.Uni;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -30,14 +31,22 @@ public class StartHandler {
     private final CacheClient utilCache;
     private final UserBucketRepository userRepository;
     private final AccountProducer  accountProducer;
+    private final CdrWriter cdrWriter;
+    private final SessionStatistics sessionStatistics;
+    private final ActiveSessionIndex activeSessionIndex;
 
     @Inject
-    public StartHandler(CacheClient utilCache, UserBucketRepository userRepository, AccountProducer accountProducer) {
+    public StartHandler(CacheClient utilCache, UserBucketRepository userRepository, AccountProducer accountProducer,
+                        CdrWriter cdrWriter, SessionStatistics sessionStatistics, ActiveSessionIndex activeSessionIndex) {
         this.utilCache = utilCache;
         this.userRepository = userRepository;
         this.accountProducer = accountProducer;
+        this.cdrWriter = cdrWriter;
+        this.sessionStatistics = sessionStatistics;
+        this.activeSessionIndex = activeSessionIndex;
     }
 
+    @WithSpan("accounting.start")
     public Uni<Void> processAccountingStart(AccountingRequestDto request,String traceId) {
 
         long startTime = System.currentTimeMillis();
@@ -58,7 +67,7 @@ public class StartHandler {
                     return accountingResponseEventUni;
                 } else {
                     log.infof("[traceId: %s] Existing session found for user: %s",traceId, request.username());
-                    Uni<Void> accountingResponseEventUni = handleExistingUserSession(request, userSessionData);
+                    Uni<Void> accountingResponseEventUni = handleExistingUserSession(request, userSessionData, traceId);
                     long duration = System.currentTimeMillis() - startTime;
                     log.infof("[traceId: %s] Completed processing accounting start for user: %s in %d ms",
                             traceId, request.username(), duration);
@@ -66,14 +75,15 @@ public class StartHandler {
                 }
             })
             .onFailure().recoverWithUni(throwable -> {
-                log.errorf(throwable, "[traceId: %s] Error processing accounting start for user: %s", request.username());
+                log.errorf(throwable, "[traceId: %s] Error processing accounting start for user: %s", traceId, request.username());
                 return null;
             });
 }
 
     private Uni<Void> handleExistingUserSession(
             AccountingRequestDto request,
-            UserSessionData userSessionData) {
+            UserSessionData userSessionData,
+            String traceId) {
 
         // Declare balanceListUni outside the if block
         Uni<List<Balance>> balanceListUni;
@@ -102,34 +112,34 @@ public class StartHandler {
 
             if (availableBalance <= 0) {
                 log.warnf("[traceId: %s] User: %s has exhausted their data balance. Cannot start new session.",
-                        request.username());
+                        traceId, request.username());
                 return accountProducer.produceAccountingResponseEvent(
                         MappingUtil.createResponse(request, "Data balance exhausted",
                                 AccountingResponseEvent.EventType.COA,
                                 AccountingResponseEvent.ResponseAction.DISCONNECT));
             }
 
-            boolean sessionExists = userSessionData.getSessions()
-                    .stream()
-                    .anyMatch(session -> session.getSessionId().equals(request.sessionId()));
+            boolean sessionExists = userSessionData.getSessions().containsSessionId(request.sessionId());
 
             if (sessionExists) {
                 log.infof("[traceId: %s] Session already exists for user: %s, sessionId: %s",
-                        request.username(), request.sessionId());
+                        traceId, request.username(), request.sessionId());
                 return Uni.createFrom().voidItem();
             }
 
             // Add new session and update cache
-            Session newSession = createSession(request);
+            Session newSession = createSession(request, SessionStatistics.planOf(combinedBalances));
             userSessionData.getSessions().add(newSession);
 
             return utilCache.updateUserAndRelatedCaches(request.username(), userSessionData)
                     .onItem().transformToUni(unused -> {
                         log.infof("[traceId: %s] New session added for user: %s, sessionId: %s",
-                                request.username(), request.sessionId());
+                                traceId, request.username(), request.sessionId());
                         return Uni.createFrom().voidItem();
                     })
                     .invoke(() -> {
+                        sessionStatistics.sessionOpened(request.username(), newSession);
+                        activeSessionIndex.sessionOpened(request.username(), userSessionData.getGroupId(), newSession);
                         log.infof("cdr write event started for user: %s", request.username());
                         // Send CDR event asynchronously
                         generateAndSendCDR(request, newSession);
@@ -186,9 +196,12 @@ public class StartHandler {
                     UserSessionData newUserSessionData = new UserSessionData();
                     newUserSessionData.setGroupId(groupId);
                     newUserSessionData.setUserName(request.username());
-                    Session session = createSession(request);
-                    newUserSessionData.setSessions(new ArrayList<>(List.of(session)));
+                    List<Balance> allBalances = new ArrayList<>(balanceList);
+                    allBalances.addAll(balanceGroupList);
+                    Session session = createSession(request, SessionStatistics.planOf(allBalances));
+                    newUserSessionData.setSessions(new SessionIndex(List.of(session)));
                     newUserSessionData.setBalance(balanceList);
+                    newUserSessionData.bucketsChanged();
 
                     // Prepare storage operations
                     Uni<Void> userStorageUni = utilCache.storeUserData(request.username(), newUserSessionData)
@@ -201,6 +214,7 @@ public class StartHandler {
                     if (!balanceGroupList.isEmpty()) {
                         UserSessionData groupSessionData = new UserSessionData();
                         groupSessionData.setBalance(balanceGroupList);
+                        groupSessionData.bucketsChanged();
                        final String finalGroupId = groupId;
 
 
@@ -225,6 +239,8 @@ public class StartHandler {
 
                     // Send CDR event asynchronously (fire and forget) after user storage
                     return userStorageUni.onItem().invoke(unused -> {
+                        sessionStatistics.sessionOpened(request.username(), session);
+                        activeSessionIndex.sessionOpened(request.username(), newUserSessionData.getGroupId(), session);
                         log.infof("CDR write event started for user: %s", request.username());
                         generateAndSendCDR(request, session);
                     });
@@ -252,7 +268,7 @@ public class StartHandler {
                 .sum();
     }
 
-    private Session createSession(AccountingRequestDto request) {
+    private Session createSession(AccountingRequestDto request, String planId) {
         return new Session(
                 request.sessionId(),
                 LocalDateTime.now(),
@@ -260,24 +276,17 @@ public class StartHandler {
                 0,
                 0L,
                 request.framedIPAddress(),
-                request.nasIP()
+                request.nasIP(),
+                null,
+                null,
+                planId,
+                0L,
+                0L
         );
     }
 
     private void generateAndSendCDR(AccountingRequestDto request, Session session) {
-        try {
-            AccountingCDREvent cdrEvent = CdrMappingUtil.buildStartCDREvent(request, session);
-
-            // run asynchronously without blocking
-            accountProducer.produceAccountingCDREvent(cdrEvent)
-                    .subscribe()
-                    .with(
-                            success -> log.infof("CDR event sent successfully for session: %s", request.sessionId()),
-                            failure -> log.errorf(failure, "Failed to send CDR event for session: %s", request.sessionId())
-                    );
-        } catch (Exception e) {
-            log.errorf(e, "Error building CDR event for session: %s", request.sessionId());
-        }
+        cdrWriter.write(request, session, CdrMappingUtil.AccountingMetrics.forStart());
     }
 
 
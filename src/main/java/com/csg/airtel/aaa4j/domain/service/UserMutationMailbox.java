@@ -0,0 +1,185 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serializes read-modify-write mutations of a user's cached document. Every writer submits
+ * its mutation here: mutations of one user run one after the other in submission order and a
+ * queue is drained back-to-back, while different users run in parallel. Users are spread over
+ * shards so submitters of different users rarely contend on the same monitor.
+ * A queued mutation is started on the Vert.x context it was submitted from, so context locals
+ * of the submitter (e.g. the consumer's pending acks) stay visible.
+ */
+@ApplicationScoped
+public class UserMutationMailbox {
+
+    private static final int RUNNING = 0;
+    private static final int COMPLETED_SYNC = 1;
+    private static final int ASYNC = 2;
+
+    private final Shard[] shards;
+    private final Duration timeout;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public UserMutationMailbox(MetricRegistry metricRegistry,
+                               @ConfigProperty(name = "accounting.mailbox.shards", defaultValue = "0") int shardCount,
+                               @ConfigProperty(name = "accounting.mailbox.timeout", defaultValue = "PT30S") Duration timeout) {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard();
+        }
+        this.timeout = timeout;
+        metricRegistry.gauge("mailbox_pending_mutations", pending::get);
+    }
+
+    /**
+     * Run a mutation once all earlier mutations of the user completed.
+     * @param userId user whose document the mutation reads and writes
+     * @param mutation started lazily when the user's turn comes; must not be null
+     * @return Uni with the mutation result; nothing is queued until it is subscribed
+     */
+    public <T> Uni<T> submit(String userId, Supplier<Uni<T>> mutation) {
+        return Uni.createFrom().emitter(em -> enqueue(userId, new Task(Vertx.currentContext(), done -> {
+            Uni<T> uni;
+            try {
+                uni = mutation.get();
+            } catch (Exception e) {
+                em.fail(e);
+                done.run();
+                return;
+            }
+            uni.ifNoItem().after(timeout).fail()
+                    .subscribe().with(
+                            item -> {
+                                done.run();
+                                em.complete(item);
+                            },
+                            failure -> {
+                                done.run();
+                                em.fail(failure);
+                            });
+        })));
+    }
+
+    /**
+     * Run a mutation touching several users once it holds the turn of all of them. Turns are
+     * taken one at a time in user id order, so two multi-user mutations cannot wait on each other.
+     * Held turns are kept until the mutation ends; the timeout applies to the mutation once all
+     * turns are held, and when it expires the mutation fails before any turn is given up.
+     * The mutation must not wait on another mutation of these users.
+     */
+    public <T> Uni<T> submitAll(Collection<String> userIds, Supplier<Uni<T>> mutation) {
+        if (userIds.isEmpty()) {
+            return Uni.createFrom().deferred(mutation::get);
+        }
+        if (userIds.size() == 1) {
+            return submit(userIds.iterator().next(), mutation);
+        }
+        return Uni.createFrom().deferred(() -> {
+            CompletableFuture<Void> release = new CompletableFuture<>();
+            return acquire(new TreeSet<>(userIds).iterator(), release)
+                    .chain(() -> mutation.get().ifNoItem().after(timeout).fail())
+                    .onTermination().invoke(() -> release.complete(null));
+        });
+    }
+
+    private Uni<Void> acquire(Iterator<String> userIds, CompletableFuture<Void> release) {
+        if (!userIds.hasNext()) {
+            return Uni.createFrom().voidItem();
+        }
+        String userId = userIds.next();
+        CompletableFuture<Void> granted = new CompletableFuture<>();
+        // held without the per-mutation timeout: the turn ends with the multi-user mutation
+        enqueue(userId, new Task(Vertx.currentContext(), done -> {
+            granted.complete(null);
+            release.whenComplete((v, e) -> done.run());
+        }));
+        return Uni.createFrom().completionStage(granted)
+                .chain(() -> acquire(userIds, release));
+    }
+
+    private void enqueue(String userId, Task task) {
+        Shard shard = shards[Math.floorMod(userId.hashCode(), shards.length)];
+        boolean start;
+        UserQueue queue;
+        synchronized (shard) {
+            queue = shard.queues.computeIfAbsent(userId, k -> new UserQueue());
+            queue.tasks.add(task);
+            start = !queue.running;
+            queue.running = true;
+        }
+        pending.incrementAndGet();
+        if (start) {
+            drain(shard, userId, queue, true);
+        }
+    }
+
+    /**
+     * Run the user's queued mutations back-to-back. Mutations completing synchronously are
+     * looped over instead of recursing; an asynchronous one resumes the drain when it completes.
+     */
+    private void drain(Shard shard, String userId, UserQueue queue, boolean onSubmitter) {
+        while (true) {
+            Task task;
+            synchronized (shard) {
+                task = queue.tasks.poll();
+                if (task == null) {
+                    queue.running = false;
+                    shard.queues.remove(userId);
+                    return;
+                }
+            }
+            AtomicInteger state = new AtomicInteger(RUNNING);
+            Runnable done = () -> {
+                pending.decrementAndGet();
+                if (!state.compareAndSet(RUNNING, COMPLETED_SYNC)) {
+                    drain(shard, userId, queue, false);
+                }
+            };
+            if (onSubmitter || task.context == null || task.context == Vertx.currentContext()) {
+                task.body.run(done);
+            } else {
+                task.context.runOnContext(v -> task.body.run(done));
+            }
+            onSubmitter = false;
+            if (!state.compareAndSet(RUNNING, ASYNC)) {
+                continue;
+            }
+            return;
+        }
+    }
+
+    private record Task(Context context, TaskBody body) {
+    }
+
+    @FunctionalInterface
+    private interface TaskBody {
+        void run(Runnable done);
+    }
+
+    private static final class UserQueue {
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>(2);
+        private boolean running;
+    }
+
+    private static final class Shard {
+        private final Map<String, UserQueue> queues = new HashMap<>();
+    }
+}
@@ -0,0 +1,312 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.constant.ResponseCodeEnum;
+import com.csg.airtel.aaa4j.domain.model.StateQuery;
+import com.csg.airtel.aaa4j.domain.model.response.UserStateSummary;
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.exception.BaseException;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only projections of a cached user document. The document is walked with the streaming
+ * parser and only the requested part is bound; everything else, notably the consumption
+ * history of each bucket, is skipped without building objects.
+ */
+@ApplicationScoped
+public class UserStateProjector {
+
+    private static final Logger log = Logger.getLogger(UserStateProjector.class);
+    private static final TypeReference<List<Session>> SESSION_LIST = new TypeReference<>() {};
+    private static final String SESSIONS = "sessions";
+    private static final String BALANCE = "balance";
+    private static final String CONSUMPTION_HISTORY = "consumptionHistory";
+    private static final String GROUP_ID = "groupId";
+
+    private final CacheClient cacheClient;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final int maxBatchSize;
+
+    public UserStateProjector(CacheClient cacheClient,
+                              ObjectMapper objectMapper,
+                              Clock clock,
+                              @ConfigProperty(name = "state.max-batch-size", defaultValue = "500") int maxBatchSize) {
+        this.cacheClient = cacheClient;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @param bucketId bucket to return, only used by the BUCKET view
+     * @return the projected view, null when the user is not cached or has no such bucket
+     */
+    public Uni<Object> project(String userName, StateQuery.View view, String bucketId) {
+        if (view == StateQuery.View.SUMMARY) {
+            return cacheClient.getUserJson(userName)
+                    .onItem().ifNotNull().transformToUni(json -> {
+                        SummaryDocument document = read(userName, view, () -> summaryDocument(json));
+                        if (!ActiveSessionIndex.isGroup(document.groupId())) {
+                            return Uni.createFrom().item(summary(userName, document, List.of()));
+                        }
+                        return cacheClient.getUserJson(document.groupId())
+                                .onItem().transform(groupJson -> summary(userName, document,
+                                        groupJson == null ? List.of() : read(userName, view, () -> balances(groupJson))));
+                    });
+        }
+        return cacheClient.getUserJson(userName)
+                .onItem().ifNotNull().transform(json -> project(userName, json, view, bucketId));
+    }
+
+    /**
+     * Projected view of several users read with a single MGET; the SUMMARY view reads the
+     * documents of their groups with one more MGET. Users that are not cached are absent
+     * from the result.
+     */
+    public Uni<Map<String, Object>> projectBatch(StateQuery query) {
+        List<String> usernames = query.usernames() == null ? List.of() : query.usernames();
+        if (usernames.size() > maxBatchSize) {
+            throw new BaseException("Too many users in state query, max " + maxBatchSize,
+                    ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.description(), Response.Status.BAD_REQUEST,
+                    ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.code(), null);
+        }
+        if (query.view() == StateQuery.View.SUMMARY) {
+            return cacheClient.getUserJsonBatch(usernames)
+                    .onItem().transformToUni(documents -> summaries(usernames, documents));
+        }
+        return cacheClient.getUserJsonBatch(usernames)
+                .onItem().transform(documents -> {
+                    Map<String, Object> result = new LinkedHashMap<>(documents.size());
+                    for (String userName : usernames) {
+                        String json = documents.get(userName);
+                        Object projection = json == null ? null : project(userName, json, query.view(), query.bucketId());
+                        if (projection != null) {
+                            result.put(userName, projection);
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    private Uni<Map<String, Object>> summaries(List<String> usernames, Map<String, String> documents) {
+        Map<String, SummaryDocument> read = new LinkedHashMap<>(documents.size());
+        Set<String> groupIds = new LinkedHashSet<>();
+        for (String userName : usernames) {
+            String json = documents.get(userName);
+            if (json != null) {
+                SummaryDocument document = read(userName, StateQuery.View.SUMMARY, () -> summaryDocument(json));
+                read.put(userName, document);
+                if (ActiveSessionIndex.isGroup(document.groupId())) {
+                    groupIds.add(document.groupId());
+                }
+            }
+        }
+        Uni<Map<String, String>> groups = groupIds.isEmpty()
+                ? Uni.createFrom().item(Map.of())
+                : cacheClient.getUserJsonBatch(new ArrayList<>(groupIds));
+        return groups.onItem().transform(groupDocuments -> {
+            Map<String, List<ObjectNode>> groupBalances = new HashMap<>(groupDocuments.size());
+            groupDocuments.forEach((groupId, json) -> {
+                if (json != null) {
+                    groupBalances.put(groupId, read(groupId, StateQuery.View.SUMMARY, () -> balances(json)));
+                }
+            });
+            Map<String, Object> result = new LinkedHashMap<>(read.size());
+            read.forEach((userName, document) -> result.put(userName, summary(userName, document,
+                    groupBalances.getOrDefault(document.groupId(), List.of()))));
+            return result;
+        });
+    }
+
+    private Object project(String userName, String json, StateQuery.View view, String bucketId) {
+        return read(userName, view, () -> switch (view) {
+            case SESSIONS -> sessions(json);
+            case BUCKET -> bucketId == null ? null : bucket(json, bucketId);
+            case SUMMARY -> summary(userName, summaryDocument(json), List.of());
+        });
+    }
+
+    private <T> T read(String userName, StateQuery.View view, DocumentReader<T> reader) {
+        try {
+            return reader.read();
+        } catch (IOException e) {
+            log.errorf(e, "Failed to project %s view of user: %s", view, userName);
+            throw new BaseException("Failed to read user data", ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.description(),
+                    Response.Status.INTERNAL_SERVER_ERROR, ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.code(), e.getStackTrace());
+        }
+    }
+
+    List<Session> sessions(String json) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return List.of();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (SESSIONS.equals(name) && token == JsonToken.START_ARRAY) {
+                    return objectMapper.readValue(parser, SESSION_LIST);
+                }
+                parser.skipChildren();
+            }
+            return List.of();
+        }
+    }
+
+    JsonNode bucket(String json, String bucketId) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (BALANCE.equals(name) && token == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        ObjectNode balance = readBalance(parser);
+                        if (bucketId.equals(balance.path("bucketId").asText(null))) {
+                            return balance;
+                        }
+                    }
+                    return null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Parts of a user document the summary is built from.
+     */
+    private record SummaryDocument(String groupId, List<ObjectNode> balances, int activeSessions) {
+    }
+
+    @FunctionalInterface
+    private interface DocumentReader<T> {
+        T read() throws IOException;
+    }
+
+    private SummaryDocument summaryDocument(String json) throws IOException {
+        String groupId = null;
+        List<ObjectNode> balances = new ArrayList<>();
+        int activeSessions = 0;
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.currentName();
+                    JsonToken token = parser.nextToken();
+                    if (BALANCE.equals(name) && token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            balances.add(readBalance(parser));
+                        }
+                    } else if (SESSIONS.equals(name) && token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            parser.skipChildren();
+                            activeSessions++;
+                        }
+                    } else if (GROUP_ID.equals(name) && token == JsonToken.VALUE_STRING) {
+                        groupId = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+        }
+        return new SummaryDocument(groupId, balances, activeSessions);
+    }
+
+    private List<ObjectNode> balances(String json) throws IOException {
+        return summaryDocument(json).balances();
+    }
+
+    /**
+     * Buckets of the user and of its group; a shared bucket also present in the user's document
+     * is taken from the group's. Only buckets the user can draw from now (active, within their
+     * dates and time window) count towards the total quota.
+     */
+    private UserStateSummary summary(String userName, SummaryDocument document, List<ObjectNode> groupBalances) {
+        Map<String, ObjectNode> byBucket = new LinkedHashMap<>();
+        for (ObjectNode balance : document.balances()) {
+            byBucket.put(balance.path("bucketId").asText(null), balance);
+        }
+        for (ObjectNode balance : groupBalances) {
+            byBucket.put(balance.path("bucketId").asText(null), balance);
+        }
+        LocalDateTime now = LocalDateTime.now(clock);
+        List<UserStateSummary.BucketQuota> buckets = new ArrayList<>(byBucket.size());
+        long totalQuota = 0;
+        for (ObjectNode balance : byBucket.values()) {
+            UserStateSummary.BucketQuota bucket = toBucketQuota(balance);
+            buckets.add(bucket);
+            if (bucket.quota() != null && isUsable(balance, now)) {
+                totalQuota += bucket.quota();
+            }
+        }
+        return new UserStateSummary(userName, totalQuota, document.activeSessions(), buckets);
+    }
+
+    private boolean isUsable(ObjectNode balance, LocalDateTime now) {
+        try {
+            return AccountingUtil.isUsable(objectMapper.treeToValue(balance, Balance.class), now);
+        } catch (IOException e) {
+            log.warnf("Skipping bucket %s in summary: %s", balance.path("bucketId").asText(null), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Bind the balance object the parser is positioned on, leaving out its consumption history.
+     */
+    private ObjectNode readBalance(JsonParser parser) throws IOException {
+        ObjectNode balance = objectMapper.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (CONSUMPTION_HISTORY.equals(field)) {
+                parser.skipChildren();
+            } else {
+                balance.set(field, objectMapper.readTree(parser));
+            }
+        }
+        return balance;
+    }
+
+    private static UserStateSummary.BucketQuota toBucketQuota(JsonNode balance) {
+        return new UserStateSummary.BucketQuota(
+                balance.path("bucketId").asText(null),
+                balance.path("serviceId").asText(null),
+                longOrNull(balance.get("quota")),
+                longOrNull(balance.get("initialBalance")),
+                longOrNull(balance.get("priority")),
+                balance.path("serviceStatus").asText(null),
+                balance.path("bucketExpiryDate").asText(null));
+    }
+
+    private static Long longOrNull(JsonNode node) {
+        return node != null && node.isNumber() ? node.asLong() : null;
+    }
+}
@@ -1,12 +1,20 @@
 package com.csg.airtel.aaa4j.external.clients;
 
 import com.csg.airtel.aaa4j.domain.constant.ResponseCodeEnum;
+import com.csg.airtel.aaa4j.domain.model.BucketFeedCursor;
 import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.domain.profiling.AllocationProfiler;
+import com.csg.airtel.aaa4j.domain.profiling.CacheAccessEvent;
+import com.csg.airtel.aaa4j.domain.profiling.EventCost;
+import com.csg.airtel.aaa4j.domain.service.HeavyHitterTracker;
 import com.csg.airtel.aaa4j.exception.BaseException;
+import com.csg.airtel.aaa4j.external.fault.FaultInjector;
+import com.csg.airtel.aaa4j.external.fault.FaultTarget;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.quarkus.redis.datasource.ReactiveRedisDataSource;
 import io.quarkus.redis.datasource.keys.ReactiveKeyCommands;
 import io.quarkus.redis.datasource.value.SetArgs;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.smallrye.mutiny.Uni;
 
 import io.smallrye.mutiny.unchecked.Unchecked;
@@ -20,6 +28,10 @@ import org.jboss.logging.Logger;
 
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 @ApplicationScoped
@@ -28,30 +40,47 @@ public class CacheClient {
     private static final Logger log = Logger.getLogger(CacheClient.class);
     final ReactiveRedisDataSource reactiveRedisDataSource;
     final ObjectMapper objectMapper;
+    final HeavyHitterTracker heavyHitterTracker;
+    final AllocationProfiler allocationProfiler;
+    final FaultInjector faultInjector;
     private static final String KEY_PREFIX = "user:";
+    private static final String BUCKET_FEED_WATERMARK_KEY = "bucket-feed:watermark";
+    private static final Duration USER_TTL = Duration.ofHours(1000);
 
     @Inject
-    public CacheClient(ReactiveRedisDataSource reactiveRedisDataSource, ObjectMapper objectMapper) {
+    public CacheClient(ReactiveRedisDataSource reactiveRedisDataSource, ObjectMapper objectMapper,
+                       HeavyHitterTracker heavyHitterTracker, AllocationProfiler allocationProfiler,
+                       FaultInjector faultInjector) {
         this.reactiveRedisDataSource = reactiveRedisDataSource;
         this.objectMapper = objectMapper;
+        this.heavyHitterTracker = heavyHitterTracker;
+        this.allocationProfiler = allocationProfiler;
+        this.faultInjector = faultInjector;
     }
 
     /**
      * Store user data in Redis
      */
+    @WithSpan("cache.write")
     public Uni<Void> storeUserData(String userId, UserSessionData userData) {
         long startTime = System.currentTimeMillis();
         log.infof("Storing user data  for  cache userId: %s", userId);
         String key = KEY_PREFIX + userId;
         String jsonValue = serialize(userData);
-        Uni<Void> result = reactiveRedisDataSource.value(String.class)
-                .set(key, jsonValue);
+        heavyHitterTracker.onRedisWrite(userId, jsonValue.length());
+        CacheAccessEvent event = CacheAccessEvent.start(CacheAccessEvent.SET, key);
+        EventCost.redis(1, 0, jsonValue.length());
+        Uni<Void> result = faultInjector.apply(FaultTarget.REDIS, reactiveRedisDataSource.value(String.class)
+                        .set(key, jsonValue))
+                .invoke(() -> event.complete(jsonValue.length()));
         log.infof("User data stored Complete for userId: %s in %d ms", userId, (System.currentTimeMillis() - startTime));
         return result;
     }
 
     /**
-     * Retrieve user data from Redis
+     * Retrieve user data from Redis.
+     * The fault tolerance values below are defaults; the effective ones are set in application.yml
+     * under {@code com.csg.airtel.aaa4j.external.clients.CacheClient/getUserData/...}.
      */
     @CircuitBreaker(
             requestVolumeThreshold = 10,
@@ -65,18 +94,24 @@ public class CacheClient {
             maxDuration = 5000
     )
     @Timeout(value = 5000)
+    @WithSpan("cache.read")
     public Uni<UserSessionData> getUserData(String userId) {
         long startTime = System.currentTimeMillis();
         log.infof("Retrieving user data for cache userId: %s", userId);
         String key = KEY_PREFIX + userId;
-        return reactiveRedisDataSource.value(String.class)
-                .get(key)
+        CacheAccessEvent event = CacheAccessEvent.start(CacheAccessEvent.GET, key);
+        return faultInjector.apply(FaultTarget.REDIS, reactiveRedisDataSource.value(String.class)
+                        .get(key))
                 .onItem().transform(Unchecked.function(jsonValue -> {
+                    event.complete(jsonValue == null ? 0 : jsonValue.length());
+                    EventCost.redis(1, jsonValue == null ? 0 : jsonValue.length(), 0);
                     if (jsonValue == null || jsonValue.isEmpty()) {
                         return null; // No record found
                     }
                     try {
+                        long allocation = allocationProfiler.begin();
                         UserSessionData userSessionData = objectMapper.readValue(jsonValue, UserSessionData.class);
+                        allocationProfiler.end("cache.deserialize", allocation);
                         log.infof("User data retrieved Complete for userId: %s in %d ms", userId, (System.currentTimeMillis() - startTime));
                         return userSessionData;
                     } catch (Exception e) {
@@ -87,6 +122,7 @@ public class CacheClient {
     }
 
 
+    @WithSpan("cache.write")
     public Uni<Void> updateUserAndRelatedCaches(String userId, UserSessionData userData) {
         long startTime = System.currentTimeMillis();
         log.infof("Updating user data and related caches for userId: %s", userId);
@@ -94,15 +130,125 @@ public class CacheClient {
 
         return Uni.createFrom().item(() -> serialize(userData))
                 .onItem().invoke(json -> log.infof("Updating cache for user {}: {}", userId, json))
-                .onItem().transformToUni(serializedData ->
-                        reactiveRedisDataSource.value(String.class)
-                                .set(userKey, serializedData, new SetArgs().ex(Duration.ofHours(1000)))
-                )
+                .onItem().invoke(json -> heavyHitterTracker.onRedisWrite(userId, json.length()))
+                .onItem().transformToUni(serializedData -> {
+                    CacheAccessEvent event = CacheAccessEvent.start(CacheAccessEvent.SET, userKey);
+                    EventCost.redis(1, 0, serializedData.length());
+                    return faultInjector.apply(FaultTarget.REDIS, reactiveRedisDataSource.value(String.class)
+                                    .set(userKey, serializedData, new SetArgs().ex(USER_TTL)))
+                            .invoke(() -> event.complete(serializedData.length()));
+                })
                 .onItem().invoke(() -> log.infof("Cache update complete for userId: %s in %d ms", userId, (System.currentTimeMillis() - startTime)))
                 .onFailure().invoke(err -> log.error("Failed to update cache for user {}", userId, err))
                 .replaceWithVoid();
     }
 
+    /**
+     * Retrieve several users in a single MGET round trip.
+     * Users without a cache entry are absent from the returned map.
+     */
+    @WithSpan("cache.read-batch")
+    public Uni<Map<String, UserSessionData>> getUserDataBatch(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return Uni.createFrom().item(Map.of());
+        }
+        String[] keys = userIds.stream().map(id -> KEY_PREFIX + id).toArray(String[]::new);
+        return faultInjector.apply(FaultTarget.REDIS, reactiveRedisDataSource.value(String.class)
+                        .mget(keys))
+                .onItem().transform(values -> {
+                    Map<String, UserSessionData> result = new HashMap<>(values.size());
+                    long bytesRead = 0;
+                    for (String userId : userIds) {
+                        String jsonValue = values.get(KEY_PREFIX + userId);
+                        if (jsonValue != null && !jsonValue.isEmpty()) {
+                            bytesRead += jsonValue.length();
+                            result.put(userId, deserialize(jsonValue));
+                        }
+                    }
+                    EventCost.redis(1, bytesRead, 0);
+                    return result;
+                })
+                .onFailure().invoke(e -> log.errorf(e, "Failed to get user data batch of %d users", userIds.size()));
+    }
+
+    /**
+     * Raw cached JSON document of a user, null when not cached.
+     */
+    @WithSpan("cache.read")
+    public Uni<String> getUserJson(String userId) {
+        return faultInjector.apply(FaultTarget.REDIS, reactiveRedisDataSource.value(String.class)
+                        .get(KEY_PREFIX + userId))
+                .onItem().transform(jsonValue -> {
+                    EventCost.redis(1, jsonValue == null ? 0 : jsonValue.length(), 0);
+                    return jsonValue == null || jsonValue.isEmpty() ? null : jsonValue;
+                })
+                .onFailure().invoke(e -> log.errorf(e, "Failed to get user json for userId: %s", userId));
+    }
+
+    /**
+     * Raw cached JSON documents of several users in one MGET, for callers that project
+     * a few fields without decoding the whole document. Missing users are absent from the map.
+     */
+    @WithSpan("cache.read-batch")
+    public Uni<Map<String, String>> getUserJsonBatch(List<String> userIds) {
+        if (userIds.isEmpty()) {
+            return Uni.createFrom().item(Map.of());
+        }
+        String[] keys = userIds.stream().map(id -> KEY_PREFIX + id).toArray(String[]::new);
+        return faultInjector.apply(FaultTarget.REDIS, reactiveRedisDataSource.value(String.class)
+                        .mget(keys))
+                .onItem().transform(values -> {
+                    Map<String, String> result = new HashMap<>(values.size());
+                    long bytesRead = 0;
+                    for (String userId : userIds) {
+                        String jsonValue = values.get(KEY_PREFIX + userId);
+                        if (jsonValue != null && !jsonValue.isEmpty()) {
+                            bytesRead += jsonValue.length();
+                            result.put(userId, jsonValue);
+                        }
+                    }
+                    EventCost.redis(1, bytesRead, 0);
+                    return result;
+                })
+                .onFailure().invoke(e -> log.errorf(e, "Failed to get user json batch of %d users", userIds.size()));
+    }
+
+    /**
+     * Write several users at once. The SETs are issued together so the client
+     * pipelines them on the connection instead of waiting for each reply.
+     */
+    @WithSpan("cache.write-batch")
+    public Uni<Void> updateUserDataBatch(Map<String, UserSessionData> users) {
+        if (users.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        List<Uni<Void>> writes = new ArrayList<>(users.size());
+        users.forEach((userId, data) -> {
+            String json = serialize(data);
+            heavyHitterTracker.onRedisWrite(userId, json.length());
+            EventCost.redis(1, 0, json.length());
+            writes.add(faultInjector.apply(FaultTarget.REDIS, reactiveRedisDataSource.value(String.class)
+                    .set(KEY_PREFIX + userId, json, new SetArgs().ex(USER_TTL))));
+        });
+        return Uni.join().all(writes).andCollectFailures()
+                .onFailure().invoke(e -> log.errorf(e, "Failed to update user data batch of %d users", users.size()))
+                .replaceWithVoid();
+    }
+
+    /**
+     * @param feed suffix of the cursor key, empty for the bucket feed's original watermark key
+     */
+    public Uni<BucketFeedCursor> getBucketFeedCursor(String feed) {
+        return reactiveRedisDataSource.value(String.class)
+                .get(BUCKET_FEED_WATERMARK_KEY + feed)
+                .onItem().transform(value -> value == null ? null : BucketFeedCursor.parse(value));
+    }
+
+    public Uni<Void> storeBucketFeedCursor(String feed, BucketFeedCursor cursor) {
+        return reactiveRedisDataSource.value(String.class)
+                .set(BUCKET_FEED_WATERMARK_KEY + feed, cursor.format());
+    }
+
     public Uni<String> deleteKey(String key) {
         String userKey = KEY_PREFIX + key;
         ReactiveKeyCommands<String> keyCommands = reactiveRedisDataSource.key();
@@ -115,9 +261,20 @@ public class CacheClient {
 
 
 
+    private UserSessionData deserialize(String jsonValue) {
+        try {
+            return objectMapper.readValue(jsonValue, UserSessionData.class);
+        } catch (Exception e) {
+            throw new BaseException("Failed to deserialize user data", ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.description(), Response.Status.INTERNAL_SERVER_ERROR,ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.code(), e.getStackTrace());
+        }
+    }
+
     private String serialize(UserSessionData data) {
         try {
-            return objectMapper.writeValueAsString(data);
+            long allocation = allocationProfiler.begin();
+            String json = objectMapper.writeValueAsString(data);
+            allocationProfiler.end("cache.serialize", allocation);
+            return json;
         } catch (Exception e) {
             throw new BaseException("Failed to deserialize user data", ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.description(), Response.Status.INTERNAL_SERVER_ERROR,ResponseCodeEnum.EXCEPTION_CLIENT_LAYER.code(), e.getStackTrace());
 
@@ -0,0 +1,193 @@
+package com.csg.airtel.aaa4j.external.clients;
+
+import com.csg.airtel.aaa4j.domain.profiling.EventCost;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.set.ReactiveSetCommands;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Redis secondary indexes of active sessions: one set per NAS and one per group of
+ * {@code user|sessionId} members, plus the per-group marker of an exhausted shared bucket.
+ * A '|' or '\' inside a user name or session id is escaped with '\', so the first unescaped
+ * '|' splits a member.
+ */
+@ApplicationScoped
+public class SessionIndexClient {
+
+    private static final String NAS_PREFIX = "nas-sessions:";
+    private static final String GROUP_PREFIX = "group-sessions:";
+    private static final String EXHAUSTED_PREFIX = "group-exhausted:";
+    private static final char SEPARATOR = '|';
+    private static final char ESCAPE = '\\';
+    // deletes the marker only if it still names the bucket
+    private static final String CLEAR_EXHAUSTED_SCRIPT =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0";
+
+    /**
+     * A session of a user, as stored in an index.
+     */
+    public record SessionRef(String userName, String sessionId) {
+    }
+
+    /**
+     * One SSCAN step over an index.
+     * @param cursor cursor to pass to the next step, "0" once the set was covered
+     */
+    public record SessionPage(String cursor, List<SessionRef> sessions) {
+    }
+
+    private final ReactiveRedisDataSource reactiveRedisDataSource;
+    private final ReactiveSetCommands<String, String> sets;
+    private final ReactiveValueCommands<String, String> values;
+
+    public SessionIndexClient(ReactiveRedisDataSource reactiveRedisDataSource) {
+        this.reactiveRedisDataSource = reactiveRedisDataSource;
+        this.sets = reactiveRedisDataSource.set(String.class);
+        this.values = reactiveRedisDataSource.value(String.class);
+    }
+
+    public Uni<Void> addNasSession(String nasIp, SessionRef session) {
+        EventCost.redis(1, 0, 0);
+        return sets.sadd(NAS_PREFIX + nasIp, member(session)).replaceWithVoid();
+    }
+
+    public Uni<Void> removeNasSessions(String nasIp, Collection<SessionRef> sessions) {
+        if (sessions.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        EventCost.redis(1, 0, 0);
+        return sets.srem(NAS_PREFIX + nasIp, sessions.stream().map(SessionIndexClient::member).toArray(String[]::new))
+                .replaceWithVoid();
+    }
+
+    public Uni<SessionPage> scanNasSessions(String nasIp, String cursor, int count) {
+        return reactiveRedisDataSource.execute("SSCAN", NAS_PREFIX + nasIp, cursor, "COUNT", String.valueOf(count))
+                .onItem().transform(SessionIndexClient::toSessionPage);
+    }
+
+    public Uni<Void> addGroupSession(String groupId, SessionRef session) {
+        EventCost.redis(1, 0, 0);
+        return sets.sadd(GROUP_PREFIX + groupId, member(session)).replaceWithVoid();
+    }
+
+    public Uni<Void> removeGroupSessions(String groupId, Collection<SessionRef> sessions) {
+        if (sessions.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        EventCost.redis(1, 0, 0);
+        return sets.srem(GROUP_PREFIX + groupId, sessions.stream().map(SessionIndexClient::member).toArray(String[]::new))
+                .replaceWithVoid();
+    }
+
+    public Uni<List<SessionRef>> getGroupSessions(String groupId) {
+        return sets.smembers(GROUP_PREFIX + groupId)
+                .onItem().transform(members -> {
+                    List<SessionRef> sessions = new ArrayList<>(members.size());
+                    for (String value : members) {
+                        SessionRef ref = toSessionRef(value);
+                        if (ref != null) {
+                            sessions.add(ref);
+                        }
+                    }
+                    return sessions;
+                });
+    }
+
+    /**
+     * Mark the group's shared bucket exhausted unless a marker is already set (SET NX).
+     * @return true if this call set the marker and so owns the group-wide disconnect
+     */
+    public Uni<Boolean> markGroupExhausted(String groupId, String bucketId, Duration ttl) {
+        EventCost.redis(1, 0, bucketId.length());
+        return reactiveRedisDataSource.execute("SET", EXHAUSTED_PREFIX + groupId, bucketId,
+                        "NX", "PX", String.valueOf(ttl.toMillis()))
+                .onItem().transform(response -> response != null);
+    }
+
+    /**
+     * @return id of the exhausted shared bucket of the group, or null while none is marked
+     */
+    public Uni<String> getExhaustedGroupBucket(String groupId) {
+        EventCost.redis(1, 0, 0);
+        return values.get(EXHAUSTED_PREFIX + groupId);
+    }
+
+    /**
+     * Drop the exhaustion marker of the group if it is set for this bucket.
+     * @return true if a marker was deleted
+     */
+    public Uni<Boolean> clearGroupExhausted(String groupId, String bucketId) {
+        EventCost.redis(1, 0, 0);
+        return reactiveRedisDataSource.execute("EVAL", CLEAR_EXHAUSTED_SCRIPT, "1", EXHAUSTED_PREFIX + groupId, bucketId)
+                .onItem().transform(response -> response != null && response.toLong() == 1L);
+    }
+
+    static String member(SessionRef session) {
+        return escape(session.userName()) + SEPARATOR + escape(session.sessionId());
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf(SEPARATOR) < 0 && value.indexOf(ESCAPE) < 0) {
+            return value;
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 2);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == SEPARATOR || c == ESCAPE) {
+                escaped.append(ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static SessionPage toSessionPage(Response response) {
+        Response members = response.get(1);
+        List<SessionRef> sessions = new ArrayList<>(members.size());
+        for (Response member : members) {
+            SessionRef ref = toSessionRef(member.toString());
+            if (ref != null) {
+                sessions.add(ref);
+            }
+        }
+        return new SessionPage(response.get(0).toString(), sessions);
+    }
+
+    static SessionRef toSessionRef(String value) {
+        StringBuilder userName = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ESCAPE && i + 1 < value.length()) {
+                userName.append(value.charAt(++i));
+            } else if (c == SEPARATOR) {
+                return userName.isEmpty() ? null : new SessionRef(userName.toString(), unescape(value.substring(i + 1)));
+            } else {
+                userName.append(c);
+            }
+        }
+        return null;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf(ESCAPE) < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ESCAPE && i + 1 < value.length()) {
+                c = value.charAt(++i);
+            }
+            unescaped.append(c);
+        }
+        return unescaped.toString();
+    }
+}
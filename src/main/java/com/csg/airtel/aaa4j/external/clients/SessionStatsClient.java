@@ -0,0 +1,120 @@
+package com.csg.airtel.aaa4j.external.clients;
+
+import com.csg.airtel.aaa4j.domain.profiling.EventCost;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.hash.ReactiveHashCommands;
+import io.quarkus.redis.datasource.hyperloglog.ReactiveHyperLogLogCommands;
+import io.smallrye.mutiny.Uni;
+import io.vertx.mutiny.redis.client.Response;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis access for the active-session statistics: one hash of counters and
+ * HyperLogLog sketches of distinct values per day.
+ */
+@ApplicationScoped
+public class SessionStatsClient {
+
+    private static final Logger log = Logger.getLogger(SessionStatsClient.class);
+    private static final String COUNTERS_KEY = "session-stats:counters";
+    private static final String SKETCH_PREFIX = "session-stats:sketch:";
+    private static final String RECONCILE_LEASE_KEY = "session-stats:reconcile-lease";
+    // take the lease if free, or extend it if the caller already holds it
+    private static final String LEASE_SCRIPT =
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end "
+                    + "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end return 0";
+    private static final String USER_KEY_PREFIX = "user:";
+
+    private final ReactiveRedisDataSource reactiveRedisDataSource;
+    private final ReactiveHashCommands<String, String, Long> counters;
+    private final ReactiveHyperLogLogCommands<String, String> sketches;
+
+    public SessionStatsClient(ReactiveRedisDataSource reactiveRedisDataSource) {
+        this.reactiveRedisDataSource = reactiveRedisDataSource;
+        this.counters = reactiveRedisDataSource.hash(Long.class);
+        this.sketches = reactiveRedisDataSource.hyperloglog(String.class);
+    }
+
+    /**
+     * Add the deltas to the counters, one HINCRBY per field.
+     */
+    public Uni<Void> increment(Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return Uni.createFrom().voidItem();
+        }
+        EventCost.redis(deltas.size(), 0, 0);
+        List<Uni<Long>> increments = new ArrayList<>(deltas.size());
+        deltas.forEach((field, delta) -> increments.add(counters.hincrby(COUNTERS_KEY, field, delta)));
+        return Uni.join().all(increments).andCollectFailures()
+                .replaceWithVoid()
+                .onFailure().invoke(e -> log.warnf("Failed to update session counters: %s", e.getMessage()));
+    }
+
+    public Uni<Map<String, Long>> getCounters() {
+        return counters.hgetall(COUNTERS_KEY);
+    }
+
+    /**
+     * Take or extend the lease that lets one instance run the counter recount.
+     * @return true if the caller holds the lease for {@code ttl}
+     */
+    public Uni<Boolean> holdReconcileLease(String owner, Duration ttl) {
+        return reactiveRedisDataSource.execute("EVAL", LEASE_SCRIPT, "1", RECONCILE_LEASE_KEY,
+                        owner, String.valueOf(ttl.toMillis()))
+                .onItem().transform(response -> response != null && response.toLong() == 1L);
+    }
+
+    /**
+     * Add a value to a sketch; the TTL is refreshed whenever the sketch changes.
+     */
+    public Uni<Void> addToSketch(String sketch, String value, Duration ttl) {
+        String key = SKETCH_PREFIX + sketch;
+        EventCost.redis(1, 0, 0);
+        return sketches.pfadd(key, value)
+                .chain(changed -> Boolean.TRUE.equals(changed)
+                        ? reactiveRedisDataSource.key().expire(key, ttl).replaceWithVoid()
+                        : Uni.createFrom().voidItem());
+    }
+
+    public Uni<Long> countDistinct(String sketch) {
+        return sketches.pfcount(SKETCH_PREFIX + sketch);
+    }
+
+    /**
+     * Draw {@code count} keys at random with RANDOMKEY, with replacement. Keys other than user
+     * documents count as draws but are not returned.
+     * @return the user id of every draw that hit a user document, repeated if drawn twice
+     */
+    public Uni<List<String>> sampleUsers(int count) {
+        List<Uni<Response>> draws = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            draws.add(reactiveRedisDataSource.execute("RANDOMKEY"));
+        }
+        return Uni.join().all(draws).andFailFast()
+                .onItem().transform(SessionStatsClient::toUserIds);
+    }
+
+    /**
+     * Number of keys in the database, the population the samples are drawn from.
+     */
+    public Uni<Long> keyspaceSize() {
+        return reactiveRedisDataSource.execute("DBSIZE")
+                .onItem().transform(response -> response == null ? 0L : response.toLong());
+    }
+
+    private static List<String> toUserIds(List<Response> keys) {
+        List<String> userIds = new ArrayList<>(keys.size());
+        for (Response key : keys) {
+            if (key != null && key.toString().startsWith(USER_KEY_PREFIX)) {
+                userIds.add(key.toString().substring(USER_KEY_PREFIX.length()));
+            }
+        }
+        return userIds;
+    }
+}
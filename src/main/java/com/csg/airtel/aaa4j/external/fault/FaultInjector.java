@@ -0,0 +1,113 @@
+package com.csg.airtel.aaa4j.external.fault;
+
+import io.smallrye.mutiny.Uni;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Counter;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Adds latency, errors and stalls to calls to Redis, Oracle and Kafka for capacity testing.
+ * Profiles are set at runtime by the load harness through the admin endpoint, which is only
+ * built with the {@code loadtest} profile, and only when {@code fault.enabled} is set; without an active profile a call is passed through after a
+ * single volatile read.
+ */
+@ApplicationScoped
+public class FaultInjector {
+
+    private static final Logger log = Logger.getLogger(FaultInjector.class);
+    private static final int LATENCY = 0;
+    private static final int STALL = 1;
+    private static final int ERROR = 2;
+
+    private final boolean enabled;
+    private final FaultProfile[] profiles = new FaultProfile[FaultTarget.values().length];
+    private final Map<FaultTarget, Counter[]> injected = new EnumMap<>(FaultTarget.class);
+    private volatile boolean active;
+
+    public FaultInjector(MetricRegistry metricRegistry,
+                         @ConfigProperty(name = "fault.enabled", defaultValue = "false") boolean enabled) {
+        this.enabled = enabled;
+        for (FaultTarget target : FaultTarget.values()) {
+            Tag targetTag = new Tag("target", target.name().toLowerCase(Locale.ROOT));
+            injected.put(target, new Counter[]{
+                    metricRegistry.counter("fault_injected_total", targetTag, new Tag("kind", "latency")),
+                    metricRegistry.counter("fault_injected_total", targetTag, new Tag("kind", "stall")),
+                    metricRegistry.counter("fault_injected_total", targetTag, new Tag("kind", "error"))
+            });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Apply the target's profile to a call: fail it before it runs, or delay its result.
+     */
+    public <T> Uni<T> apply(FaultTarget target, Uni<T> call) {
+        if (!active) {
+            return call;
+        }
+        FaultProfile profile = profiles[target.ordinal()];
+        if (profile == null) {
+            return call;
+        }
+        return Uni.createFrom().deferred(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Counter[] counters = injected.get(target);
+            if (random.nextDouble() < profile.errorRate()) {
+                counters[ERROR].inc();
+                return Uni.createFrom().failure(new InjectedFaultException(target));
+            }
+            long delayMs;
+            if (random.nextDouble() < profile.stallRate()) {
+                counters[STALL].inc();
+                delayMs = profile.stallMs();
+            } else {
+                delayMs = profile.latencyMs(random.nextGaussian());
+                if (delayMs > 0) {
+                    counters[LATENCY].inc();
+                }
+            }
+            return delayMs > 0 ? call.onItem().delayIt().by(Duration.ofMillis(delayMs)) : call;
+        });
+    }
+
+    public synchronized void setProfile(FaultTarget target, FaultProfile profile) {
+        if (!enabled) {
+            throw new IllegalStateException("Fault injection is disabled");
+        }
+        profiles[target.ordinal()] = profile;
+        active = true;
+        log.warnf("Fault injection for %s set to %s", target, profile);
+    }
+
+    public synchronized void clear(FaultTarget target) {
+        profiles[target.ordinal()] = null;
+        boolean any = false;
+        for (FaultProfile profile : profiles) {
+            any |= profile != null;
+        }
+        active = any;
+        log.warnf("Fault injection for %s cleared", target);
+    }
+
+    public synchronized Map<FaultTarget, FaultProfile> profiles() {
+        Map<FaultTarget, FaultProfile> result = new EnumMap<>(FaultTarget.class);
+        for (FaultTarget target : FaultTarget.values()) {
+            if (profiles[target.ordinal()] != null) {
+                result.put(target, profiles[target.ordinal()]);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,32 @@
+package com.csg.airtel.aaa4j.external.fault;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Faults injected into calls to one dependency. Latency is log-normal with the given median and
+ * p99; a stall replaces it with a fixed long delay. Rates are probabilities between 0 and 1.
+ */
+public record FaultProfile(
+        @JsonProperty("medianLatencyMs") long medianLatencyMs,
+        @JsonProperty("p99LatencyMs") long p99LatencyMs,
+        @JsonProperty("errorRate") double errorRate,
+        @JsonProperty("stallRate") double stallRate,
+        @JsonProperty("stallMs") long stallMs
+) {
+    private static final double Z_99 = 2.326;
+
+    /**
+     * @param gaussian standard normal sample
+     * @return latency to add in ms, 0 when no latency is configured
+     */
+    long latencyMs(double gaussian) {
+        if (medianLatencyMs <= 0) {
+            return 0;
+        }
+        if (p99LatencyMs <= medianLatencyMs) {
+            return medianLatencyMs;
+        }
+        double sigma = Math.log((double) p99LatencyMs / medianLatencyMs) / Z_99;
+        return Math.round(medianLatencyMs * Math.exp(sigma * gaussian));
+    }
+}
@@ -0,0 +1,10 @@
+package com.csg.airtel.aaa4j.external.fault;
+
+/**
+ * Dependency a fault profile applies to.
+ */
+public enum FaultTarget {
+    REDIS,
+    ORACLE,
+    KAFKA
+}
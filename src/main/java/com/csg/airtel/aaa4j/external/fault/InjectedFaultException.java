@@ -0,0 +1,11 @@
+package com.csg.airtel.aaa4j.external.fault;
+
+/**
+ * Failure raised instead of calling a dependency while fault injection is active.
+ */
+public class InjectedFaultException extends RuntimeException {
+
+    public InjectedFaultException(FaultTarget target) {
+        super("Injected " + target + " fault");
+    }
+}
@@ -1,8 +1,14 @@
 package com.csg.airtel.aaa4j.external.repository;
 
 
+import com.csg.airtel.aaa4j.domain.model.BucketFeedCursor;
 import com.csg.airtel.aaa4j.domain.model.ServiceBucketInfo;
 
+import com.csg.airtel.aaa4j.domain.profiling.EventCost;
+import com.csg.airtel.aaa4j.domain.profiling.RepositoryQueryEvent;
+import com.csg.airtel.aaa4j.external.fault.FaultInjector;
+import com.csg.airtel.aaa4j.external.fault.FaultTarget;
+import io.opentelemetry.instrumentation.annotations.WithSpan;
 import io.smallrye.mutiny.Uni;
 import io.vertx.mutiny.sqlclient.Pool;
 import io.vertx.mutiny.sqlclient.Row;
@@ -13,10 +19,14 @@ import jakarta.inject.Inject;
 import org.jboss.logging.Logger;
 
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.csg.airtel.aaa4j.domain.constant.SQLConstant.QUERY_BALANCE;
+import static com.csg.airtel.aaa4j.domain.constant.SQLConstant.QUERY_CHANGED_BUCKETS;
+import static com.csg.airtel.aaa4j.domain.constant.SQLConstant.QUERY_CHANGED_SERVICE_BUCKETS;
+import static com.csg.airtel.aaa4j.domain.constant.SQLConstant.QUERY_DATABASE_TIME;
 
 @ApplicationScoped
 public class UserBucketRepository {
@@ -24,29 +34,102 @@ public class UserBucketRepository {
     private static final Logger log = Logger.getLogger(UserBucketRepository.class);
 
     final Pool client;
+    final FaultInjector faultInjector;
 
     @Inject
-    public UserBucketRepository(Pool client) {
+    public UserBucketRepository(Pool client, FaultInjector faultInjector) {
         this.client = client;
+        this.faultInjector = faultInjector;
     }
 
+    @WithSpan("repository.service-buckets")
     public Uni<List<ServiceBucketInfo>> getServiceBucketsByUserName(String userName) {
         long startTime = System.currentTimeMillis();
         log.infof("Fetching Start service buckets for user: %s", userName);
+        RepositoryQueryEvent event = RepositoryQueryEvent.start("service-buckets");
+        EventCost.oracleQuery();
 
-        return client
-                .preparedQuery(QUERY_BALANCE)
-                .execute(Tuple.of(userName))
+        return faultInjector.apply(FaultTarget.ORACLE, client
+                        .preparedQuery(QUERY_BALANCE)
+                        .execute(Tuple.of(userName)))
                 .onItem().transform(this::mapRowsToServiceBuckets)
-                .onFailure().invoke(error ->
+                .onFailure().invoke(error -> {
+                    event.failed();
                     // Log with full stack trace
-                    log.errorf(error, "Error fetching service buckets for user: %s", userName)
-                )
+                    log.errorf(error, "Error fetching service buckets for user: %s", userName);
+                })
+                .onItem().invoke(results -> event.complete(results.size()))
                 .onItem().invoke(results ->
                        log.infof("Fetched %d service buckets for user: %s in %s ms",
                                results.size(), userName, System.currentTimeMillis() - startTime));
     }
 
+    /**
+     * Fetch buckets whose BUCKET_INSTANCE row changed after the cursor, oldest change first.
+     * @param after exclusive lower bound on (UPDATED_AT, bucket ID)
+     * @param limit maximum number of rows to return
+     * @return changed buckets with {@code changedAt} populated
+     */
+    @WithSpan("repository.changed-buckets")
+    public Uni<List<ServiceBucketInfo>> getChangedBuckets(BucketFeedCursor after, int limit) {
+        return getChanged("changed-buckets", QUERY_CHANGED_BUCKETS, after,
+                Tuple.of(after.changedAt(), after.changedAt(), after.bucketId(), limit));
+    }
+
+    /**
+     * Fetch the buckets of services whose SERVICE_INSTANCE row changed after the cursor, oldest change first.
+     * @param after exclusive lower bound on (UPDATED_AT, service ID, bucket ID)
+     * @param limit maximum number of rows to return
+     * @return buckets of changed services with {@code changedAt} populated
+     */
+    @WithSpan("repository.changed-service-buckets")
+    public Uni<List<ServiceBucketInfo>> getChangedServiceBuckets(BucketFeedCursor after, int limit) {
+        return getChanged("changed-service-buckets", QUERY_CHANGED_SERVICE_BUCKETS, after,
+                Tuple.of(after.changedAt(), after.changedAt(), after.serviceId(),
+                        after.serviceId(), after.bucketId(), limit));
+    }
+
+    /**
+     * @return current time of the database, to start the change feed from without clock skew
+     */
+    @WithSpan("repository.database-time")
+    public Uni<LocalDateTime> getDatabaseTime() {
+        RepositoryQueryEvent event = RepositoryQueryEvent.start("database-time");
+        return faultInjector.apply(FaultTarget.ORACLE, client
+                        .preparedQuery(QUERY_DATABASE_TIME)
+                        .execute())
+                .onItem().transform(rows -> rows.iterator().next().getLocalDateTime("DB_TIME"))
+                .onFailure().invoke(error -> {
+                    event.failed();
+                    log.errorf(error, "Error fetching database time");
+                })
+                .onItem().invoke(time -> event.complete(1));
+    }
+
+    private Uni<List<ServiceBucketInfo>> getChanged(String queryName, String query, BucketFeedCursor after, Tuple params) {
+        long startTime = System.currentTimeMillis();
+        RepositoryQueryEvent event = RepositoryQueryEvent.start(queryName);
+        return faultInjector.apply(FaultTarget.ORACLE, client
+                        .preparedQuery(query)
+                        .execute(params))
+                .onItem().transform(rows -> {
+                    List<ServiceBucketInfo> results = mapRowsToServiceBuckets(rows);
+                    int i = 0;
+                    for (Row row : rows) {
+                        results.get(i++).setChangedAt(row.getLocalDateTime("CHANGED_AT"));
+                    }
+                    return results;
+                })
+                .onFailure().invoke(error -> {
+                    event.failed();
+                    log.errorf(error, "Error fetching %s after: %s", queryName, after);
+                })
+                .onItem().invoke(results -> event.complete(results.size()))
+                .onItem().invoke(results ->
+                        log.infof("Fetched %d %s after %s in %s ms",
+                                results.size(), queryName, after, System.currentTimeMillis() - startTime));
+    }
+
     private List<ServiceBucketInfo> mapRowsToServiceBuckets(RowSet<Row> rows) {
         List<ServiceBucketInfo> results = new ArrayList<>();
         for (Row row : rows) {
@@ -68,6 +151,7 @@ public class UserBucketRepository {
             info.setSessionTimeout(row.getString("SESSION_TIMEOUT"));
             info.setTimeWindow(row.getString("TIME_WINDOW"));
             info.setBucketExpiryDate(row.getLocalDateTime("EXPIRATION"));
+            info.setBucketUpdatedAt(row.getLocalDateTime("BUCKET_UPDATED_AT"));
 
             results.add(info);
         }
@@ -0,0 +1,241 @@
+package com.csg.airtel.aaa4j.application.listener;
+
+import com.csg.airtel.aaa4j.application.tracing.AccountingTracing;
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.model.session.SessionIndex;
+import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
+import com.csg.airtel.aaa4j.domain.profiling.AllocationProfiler;
+import com.csg.airtel.aaa4j.domain.profiling.EventCost;
+import com.csg.airtel.aaa4j.domain.profiling.EventCostRecorder;
+import com.csg.airtel.aaa4j.domain.service.AccountingHandlerFactory;
+import com.csg.airtel.aaa4j.domain.service.AccountingUtil;
+import com.csg.airtel.aaa4j.domain.service.ActiveSessionIndex;
+import com.csg.airtel.aaa4j.domain.service.CdrWriter;
+import com.csg.airtel.aaa4j.domain.service.CoaDispatcher;
+import com.csg.airtel.aaa4j.domain.service.ExecutionPolicy;
+import com.csg.airtel.aaa4j.domain.service.GroupBalanceWriter;
+import com.csg.airtel.aaa4j.domain.service.GroupExhaustionCoordinator;
+import com.csg.airtel.aaa4j.domain.service.HeavyHitterTracker;
+import com.csg.airtel.aaa4j.domain.service.InterimCdrPolicy;
+import com.csg.airtel.aaa4j.domain.service.InterimHandler;
+import com.csg.airtel.aaa4j.domain.service.NasSessionTerminator;
+import com.csg.airtel.aaa4j.domain.service.QuotaGrantManager;
+import com.csg.airtel.aaa4j.domain.service.SessionStatistics;
+import com.csg.airtel.aaa4j.domain.service.StartHandler;
+import com.csg.airtel.aaa4j.domain.service.StopHandler;
+import com.csg.airtel.aaa4j.domain.service.UserMutationMailbox;
+import com.csg.airtel.aaa4j.domain.service.UserStateProjector;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient;
+import com.csg.airtel.aaa4j.external.clients.SessionStatsClient;
+import com.csg.airtel.aaa4j.external.fault.FaultInjector;
+import com.csg.airtel.aaa4j.external.repository.UserBucketRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.redis.datasource.ReactiveRedisDataSource;
+import io.quarkus.redis.datasource.value.ReactiveValueCommands;
+import io.quarkus.redis.datasource.value.SetArgs;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.Uni;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import jakarta.enterprise.inject.Instance;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * An interim of a group member, drawing from the group's shared bucket, must stay within the
+ * round-trip budget. The event runs through the consumer and the real handler chain on a
+ * duplicated Vert.x context; Redis is an in-memory store behind the real CacheClient, and the
+ * other clients are mocks charging one round trip per call like the real ones.
+ */
+class GroupInterimEventCostTest {
+
+    private static final String MEMBER = "alice";
+    private static final String GROUP = "grp-1";
+    private static final String BUCKET = "b-1";
+    private static final String SESSION = "s-1";
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private SessionIndexClient indexClient;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private Vertx vertx;
+    private CacheClient cacheClient;
+    private EventCostRecorder recorder;
+    private MetricRegistry registry;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        vertx = Vertx.vertx();
+        registry = mock(MetricRegistry.class, RETURNS_MOCKS);
+
+        ReactiveRedisDataSource dataSource = mock(ReactiveRedisDataSource.class);
+        ReactiveValueCommands<String, String> values = mock(ReactiveValueCommands.class);
+        when(dataSource.value(String.class)).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(invocation ->
+                Uni.createFrom().item(redis.get(invocation.<String>getArgument(0))));
+        when(values.set(anyString(), anyString(), any(SetArgs.class))).thenAnswer(invocation -> {
+            redis.put(invocation.getArgument(0), invocation.getArgument(1));
+            return Uni.createFrom().voidItem();
+        });
+        AllocationProfiler allocationProfiler = new AllocationProfiler(registry, 0);
+        cacheClient = new CacheClient(dataSource, objectMapper, mock(HeavyHitterTracker.class), allocationProfiler,
+                new FaultInjector(registry, false));
+        recorder = spy(new EventCostRecorder(registry, 6, 1, 3));
+    }
+
+    @AfterEach
+    void tearDown() {
+        vertx.close().toCompletionStage().toCompletableFuture().join();
+    }
+
+    @Test
+    void groupInterimSettlingAGrantStaysWithinBudget() throws Exception {
+        EventCost cost = consumeInterim(true);
+
+        assertThat(recorder.isOverBudget(cost)).as("cost: %s", cost).isFalse();
+        assertThat(group().getBalance().get(0).getGrantReservations()).containsKey(SESSION);
+    }
+
+    @Test
+    void groupInterimDebitingTheSharedBucketStaysWithinBudget() throws Exception {
+        EventCost cost = consumeInterim(false);
+
+        assertThat(recorder.isOverBudget(cost)).as("cost: %s", cost).isFalse();
+        assertThat(group().getBalance().get(0).getQuota()).isEqualTo(10_000_000_000L - 3_000_000L);
+        verify(indexClient, never()).getExhaustedGroupBucket(GROUP);
+    }
+
+    private EventCost consumeInterim(boolean quotaGrants) throws Exception {
+        store(GROUP, UserSessionData.builder()
+                .userName(GROUP)
+                .balance(new ArrayList<>(List.of(sharedBucket())))
+                .sessions(new SessionIndex())
+                .build());
+        store(MEMBER, UserSessionData.builder()
+                .userName(MEMBER)
+                .groupId(GROUP)
+                .balance(new ArrayList<>())
+                .sessions(new SessionIndex(List.of(
+                        new Session(SESSION, LocalDateTime.now().minusMinutes(5), BUCKET, 60, 0L,
+                                "10.0.0.1", "10.1.1.1", null, null, "svc-1", 0L, 0L))))
+                .build());
+
+        AccountingConsumer consumer = consumer(quotaGrants);
+        AccountingRequestDto request = new AccountingRequestDto("evt-1", SESSION, "10.1.1.1", MEMBER,
+                AccountingRequestDto.ActionType.INTERIM_UPDATE, 1_000_000, 2_000_000, 120, Instant.now(),
+                "port-1", "10.0.0.1", 0, 0, 0, "nas-1");
+
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Context context = VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext());
+        context.runOnContext(v -> consumer.consumeAccountingEvent(Message.of(request))
+                .subscribe().with(done::complete, done::completeExceptionally));
+        done.get(5, TimeUnit.SECONDS);
+
+        ArgumentCaptor<EventCost> cost = ArgumentCaptor.forClass(EventCost.class);
+        verify(recorder).record(eq(request), cost.capture());
+        assertThat(cost.getValue()).as("cost is recorded on the event's context").isNotNull();
+        return cost.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private AccountingConsumer consumer(boolean quotaGrants) {
+        AccountProducer producer = mock(AccountProducer.class);
+        when(producer.produceDBWriteEvent(any())).thenAnswer(invocation -> kafkaSend());
+        when(producer.produceAccountingCDREvent(any())).thenAnswer(invocation -> kafkaSend());
+        when(producer.produceAccountingResponseEvent(any())).thenAnswer(invocation -> kafkaSend());
+
+        indexClient = mock(SessionIndexClient.class);
+        when(indexClient.getExhaustedGroupBucket(GROUP)).thenAnswer(invocation -> {
+            EventCost.redis(1, 0, 0);
+            return Uni.createFrom().nullItem();
+        });
+
+        Clock clock = Clock.systemDefaultZone();
+        UserMutationMailbox mailbox = new UserMutationMailbox(registry, 1, Duration.ofSeconds(5));
+        SessionStatistics sessionStatistics = new SessionStatistics(mock(SessionStatsClient.class), cacheClient,
+                mock(UserStateProjector.class), clock, registry, true, Duration.ofDays(2), 200, 2000, 0.02,
+                Duration.ofSeconds(30));
+        ActiveSessionIndex activeSessionIndex = new ActiveSessionIndex(indexClient);
+        CoaDispatcher coaDispatcher = new CoaDispatcher(producer, registry, 8, 100, 2, Duration.ofSeconds(45));
+        QuotaGrantManager quotaGrantManager = new QuotaGrantManager(quotaGrants, 52_428_800L,
+                Duration.ofMinutes(15), Duration.ofMinutes(15));
+        AccountingUtil accountingUtil = new AccountingUtil(producer, cacheClient, clock, quotaGrantManager,
+                coaDispatcher, new ExecutionPolicy(ExecutionPolicy.Mode.INLINE), sessionStatistics,
+                new AllocationProfiler(registry, 0), activeSessionIndex, new GroupBalanceWriter(mailbox, cacheClient));
+        GroupExhaustionCoordinator coordinator = new GroupExhaustionCoordinator(indexClient, cacheClient,
+                accountingUtil, mailbox, coaDispatcher, sessionStatistics, activeSessionIndex, registry,
+                true, Duration.ofMinutes(2), 8);
+        InterimHandler interimHandler = new InterimHandler(cacheClient, mock(UserBucketRepository.class),
+                accountingUtil, producer, new CdrWriter(producer, mock(Instance.class), CdrWriter.Encoding.JSON),
+                new InterimCdrPolicy(false, 10, 104_857_600L, Duration.ofMinutes(30)), sessionStatistics,
+                activeSessionIndex, coordinator, clock);
+        AccountingHandlerFactory handlerFactory = new AccountingHandlerFactory(mock(StartHandler.class),
+                interimHandler, mock(StopHandler.class), mailbox, mock(NasSessionTerminator.class));
+
+        AccountingTracing tracing = mock(AccountingTracing.class);
+        when(tracing.traceConsume(any(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<Uni<Void>>>getArgument(1).get());
+        return new AccountingConsumer(producer, handlerFactory, mock(HeavyHitterTracker.class), tracing, recorder);
+    }
+
+    private static Uni<Void> kafkaSend() {
+        EventCost.kafkaSend();
+        return Uni.createFrom().voidItem();
+    }
+
+    private static Balance sharedBucket() {
+        LocalDateTime now = LocalDateTime.now();
+        Balance balance = new Balance();
+        balance.setBucketId(BUCKET);
+        balance.setServiceId("svc-1");
+        balance.setBucketUsername(GROUP);
+        balance.setGroup(true);
+        balance.setPriority(1L);
+        balance.setInitialBalance(10_000_000_000L);
+        balance.setQuota(10_000_000_000L);
+        balance.setServiceStatus("Active");
+        balance.setServiceStartDate(now.minusDays(1));
+        balance.setServiceExpiry(now.plusDays(30));
+        balance.setTimeWindow("00-24");
+        return balance;
+    }
+
+    private void store(String userName, UserSessionData data) throws Exception {
+        redis.put("user:" + userName, objectMapper.writeValueAsString(data));
+    }
+
+    private UserSessionData group() throws Exception {
+        return objectMapper.readValue(redis.get("user:" + GROUP), UserSessionData.class);
+    }
+}
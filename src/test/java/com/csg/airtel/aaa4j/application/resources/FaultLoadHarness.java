@@ -0,0 +1,185 @@
+package com.csg.airtel.aaa4j.application.resources;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.external.fault.FaultProfile;
+import com.csg.airtel.aaa4j.external.fault.FaultTarget;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Throughput and lag of the service under each fault profile. Runs against an instance built
+ * with the {@code loadtest} profile: for each scenario it sets the profile through
+ * {@code /admin/faults}, offers interims to the accounting topic at a fixed rate, and samples
+ * the events processed from the {@code event_redis_commands} histogram count once a second.
+ * Lag is the backlog of offered but unprocessed events; after the window the fault is cleared
+ * and the time to drain the backlog is measured before the next scenario. Users
+ * {@code load-user-0..n} should be seeded with buckets beforehand, otherwise every interim is
+ * a cache miss. Not run by the build; start it with {@link #main} from the test classpath,
+ * settings as system properties ({@code harness.url}, {@code harness.bootstrap},
+ * {@code harness.topic}, {@code harness.rate}, {@code harness.window}, {@code harness.users}).
+ */
+public class FaultLoadHarness {
+
+    private static final String URL = System.getProperty("harness.url", "http://localhost:9905/api/v1");
+    private static final String BOOTSTRAP = System.getProperty("harness.bootstrap", "localhost:9092");
+    private static final String TOPIC = System.getProperty("harness.topic", "accounting");
+    private static final int RATE = Integer.getInteger("harness.rate", 2_000);
+    private static final Duration WINDOW = Duration.ofSeconds(Integer.getInteger("harness.window", 60));
+    private static final int USERS = Integer.getInteger("harness.users", 10_000);
+    private static final Duration MAX_DRAIN = Duration.ofMinutes(5);
+    private static final String PROCESSED_METRIC = "event_redis_commands_count";
+
+    private record Scenario(String name, FaultTarget target, FaultProfile profile) {
+    }
+
+    private record Result(String name, long offered, double processedPerSecond, long maxBacklog, long drainMs) {
+    }
+
+    private static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("baseline", null, null),
+            new Scenario("redis latency 2/20ms", FaultTarget.REDIS, new FaultProfile(2, 20, 0, 0, 0)),
+            new Scenario("redis 1% stalls of 2s", FaultTarget.REDIS, new FaultProfile(0, 0, 0, 0.01, 2_000)),
+            new Scenario("redis 5% errors", FaultTarget.REDIS, new FaultProfile(0, 0, 0.05, 0, 0)),
+            new Scenario("oracle latency 20/200ms", FaultTarget.ORACLE, new FaultProfile(20, 200, 0, 0, 0)),
+            new Scenario("oracle 5% errors", FaultTarget.ORACLE, new FaultProfile(0, 0, 0.05, 0, 0)),
+            new Scenario("kafka latency 10/100ms", FaultTarget.KAFKA, new FaultProfile(10, 100, 0, 0, 0)),
+            new Scenario("kafka 1% stalls of 5s", FaultTarget.KAFKA, new FaultProfile(0, 0, 0, 0.01, 5_000)));
+
+    private final HttpClient http = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final KafkaProducer<String, String> producer;
+    private final int[] sessionTimes = new int[USERS];
+    private long sequence;
+
+    private FaultLoadHarness() {
+        Properties config = new Properties();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, BOOTSTRAP);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        config.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+        producer = new KafkaProducer<>(config);
+    }
+
+    public static void main(String[] args) throws Exception {
+        FaultLoadHarness harness = new FaultLoadHarness();
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Scenario scenario : SCENARIOS) {
+                results.add(harness.run(scenario));
+            }
+        } finally {
+            harness.producer.close();
+        }
+        System.out.printf("%n%-26s %10s %14s %12s %10s%n", "scenario", "offered/s", "processed/s", "max backlog", "drain ms");
+        for (Result result : results) {
+            System.out.printf("%-26s %10d %14.1f %12d %10d%n", result.name(),
+                    result.offered() / Math.max(WINDOW.toSeconds(), 1), result.processedPerSecond(),
+                    result.maxBacklog(), result.drainMs());
+        }
+    }
+
+    private Result run(Scenario scenario) throws IOException, InterruptedException {
+        if (scenario.target() != null) {
+            send(HttpRequest.newBuilder(URI.create(URL + "/admin/faults/" + scenario.target()))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(scenario.profile()))));
+        }
+        long startProcessed = processed();
+        long offered = 0;
+        long maxBacklog = 0;
+        long start = System.nanoTime();
+        try {
+            for (int second = 0; second < WINDOW.toSeconds(); second++) {
+                long secondEnd = start + Duration.ofSeconds(second + 1L).toNanos();
+                for (int i = 0; i < RATE; i++) {
+                    offer();
+                    offered++;
+                    // spread the second's events evenly instead of sending them in one burst
+                    long due = start + Duration.ofSeconds(second).toNanos() + (long) i * 1_000_000_000L / RATE;
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        Thread.sleep(wait / 1_000_000, (int) (wait % 1_000_000));
+                    }
+                }
+                producer.flush();
+                long sleep = secondEnd - System.nanoTime();
+                if (sleep > 0) {
+                    Thread.sleep(sleep / 1_000_000);
+                }
+                maxBacklog = Math.max(maxBacklog, offered - (processed() - startProcessed));
+            }
+        } finally {
+            if (scenario.target() != null) {
+                send(HttpRequest.newBuilder(URI.create(URL + "/admin/faults/" + scenario.target())).DELETE());
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long processedInWindow = processed() - startProcessed;
+
+        long drainStart = System.nanoTime();
+        long drainDeadline = drainStart + MAX_DRAIN.toNanos();
+        while (processed() - startProcessed < offered && System.nanoTime() < drainDeadline) {
+            Thread.sleep(200);
+        }
+        long drainMs = processed() - startProcessed < offered
+                ? -1
+                : Duration.ofNanos(System.nanoTime() - drainStart).toMillis();
+        Result result = new Result(scenario.name(), offered, processedInWindow / seconds, maxBacklog, drainMs);
+        System.out.println(result);
+        return result;
+    }
+
+    /**
+     * An interim for the next synthetic user; each user's session time grows with every event so
+     * none is dropped as a duplicate.
+     */
+    private void offer() throws IOException {
+        int user = (int) (sequence++ % USERS);
+        int sessionTime = sessionTimes[user] += 60;
+        String userName = "load-user-" + user;
+        AccountingRequestDto request = new AccountingRequestDto("load-" + sequence, "load-session-" + user,
+                "10.255.0.1", userName, AccountingRequestDto.ActionType.INTERIM_UPDATE, 1_000_000, 4_000_000,
+                sessionTime, Instant.now(), "port-1", "100.64.0.1", 0, 0, 0, "load-nas");
+        producer.send(new ProducerRecord<>(TOPIC, userName, objectMapper.writeValueAsString(request)));
+    }
+
+    /**
+     * Events consumed so far: the count of the per-event Redis command histogram, summed over actions.
+     */
+    private long processed() throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(URL + "/q/metrics"))
+                .header("Accept", "text/plain").GET().build(), HttpResponse.BodyHandlers.ofString());
+        long total = 0;
+        for (String line : response.body().split("\n")) {
+            if (!line.startsWith("#") && line.contains(PROCESSED_METRIC)) {
+                total += (long) Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1));
+            }
+        }
+        return total;
+    }
+
+    private void send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(response.statusCode() + " from " + response.uri() + ": " + response.body()
+                    + " (is the service built with -Dquarkus.profile=loadtest?)");
+        }
+    }
+}
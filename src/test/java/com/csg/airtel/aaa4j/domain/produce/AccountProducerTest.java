@@ -0,0 +1,225 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import com.csg.airtel.aaa4j.domain.model.DBWriteRequest;
+import com.csg.airtel.aaa4j.domain.model.EventType;
+import com.csg.airtel.aaa4j.external.fault.FaultInjector;
+import com.csg.airtel.aaa4j.external.fault.FaultProfile;
+import com.csg.airtel.aaa4j.external.fault.FaultTarget;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.smallrye.common.vertx.VertxContext;
+import io.smallrye.mutiny.helpers.test.UniAssertSubscriber;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Simulated Kafka outage: sends that fail, are nacked or are never acked end up in the spool,
+ * live sends keep going direct once the broker is back, and the relay drains the backlog.
+ * Pipelined sends are held by the consumer's scope once per attempt.
+ */
+class AccountProducerTest {
+
+    private static final Duration ACK_TIMEOUT = Duration.ofMillis(200);
+    private static final Duration AWAIT = Duration.ofSeconds(5);
+
+    @TempDir
+    Path spoolDir;
+
+    private final List<Message<DBWriteRequest>> sent = new ArrayList<>();
+    private final List<Message<byte[]>> cdrs = new CopyOnWriteArrayList<>();
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private Emitter<DBWriteRequest> dbWriteEmitter;
+    private OutboundSpool spool;
+    private ProducerMetrics metrics;
+    private FaultInjector faultInjector;
+    private AccountProducer producer;
+    private volatile Broker broker = Broker.ACK;
+    private Vertx vertx;
+
+    private enum Broker { ACK, NACK, SILENT }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        MetricRegistry registry = mock(MetricRegistry.class, RETURNS_MOCKS);
+        spool = new OutboundSpool(registry, true, spoolDir.resolve("outbound.spool").toString(), 1 << 20, 1000);
+        metrics = new ProducerMetrics(registry, 128);
+        faultInjector = new FaultInjector(registry, true);
+        dbWriteEmitter = mock(Emitter.class);
+        doAnswer(invocation -> {
+            Message<DBWriteRequest> message = invocation.getArgument(0);
+            sent.add(message);
+            switch (broker) {
+                case ACK -> message.ack();
+                case NACK -> message.nack(new IllegalStateException("broker unavailable"));
+                case SILENT -> { }
+            }
+            return null;
+        }).when(dbWriteEmitter).send(any(Message.class));
+        producer = new AccountProducer(dbWriteEmitter, mock(Emitter.class), mock(Emitter.class), mock(Emitter.class),
+                AccountProducer.Mode.AWAIT_ACK, ACK_TIMEOUT, spool, objectMapper, metrics, faultInjector);
+    }
+
+    @AfterEach
+    void tearDown() {
+        spool.close();
+        if (vertx != null) {
+            vertx.close().toCompletionStage().toCompletableFuture().join();
+        }
+    }
+
+    @Test
+    void nackedSendsAreSpooledAndRelayedAfterRecovery() {
+        broker = Broker.NACK;
+        for (int i = 0; i < 3; i++) {
+            produce("session-" + i).awaitItem(AWAIT);
+        }
+        assertThat(spool.isEmpty()).isFalse();
+
+        broker = Broker.ACK;
+        sent.clear();
+        produce("live").awaitItem(AWAIT);
+        assertThat(sent).as("live path stays primary while the spool holds a backlog").hasSize(1);
+
+        relay().drain().await().atMost(AWAIT);
+
+        assertThat(spool.isEmpty()).isTrue();
+        assertThat(sent).extracting(message -> message.getPayload().getSessionId())
+                .containsExactly("live", "session-0", "session-1", "session-2");
+    }
+
+    @Test
+    void unackedSendsAreSpooledAfterTimeout() {
+        broker = Broker.SILENT;
+        produce("stalled").awaitItem(AWAIT);
+
+        assertThat(spool.peek(10)).extracting(OutboundSpool.SpoolRecord::key).containsExactly("stalled");
+    }
+
+    @Test
+    void injectedKafkaFaultsAreSpooled() {
+        faultInjector.setProfile(FaultTarget.KAFKA, new FaultProfile(0, 0, 1.0, 0, 0));
+        produce("faulted").awaitItem(AWAIT);
+        faultInjector.clear(FaultTarget.KAFKA);
+
+        verify(dbWriteEmitter, never()).send(any(Message.class));
+        assertThat(spool.peek(10)).extracting(OutboundSpool.SpoolRecord::key).containsExactly("faulted");
+    }
+
+    @Test
+    void relayKeepsBacklogWhenBrokerStillDown() {
+        broker = Broker.NACK;
+        produce("session-0").awaitItem(AWAIT);
+
+        relay().drain().await().atMost(AWAIT);
+
+        assertThat(spool.peek(10)).extracting(OutboundSpool.SpoolRecord::key).containsExactly("session-0");
+        verify(dbWriteEmitter, times(2)).send(any(Message.class));
+    }
+
+    @Test
+    void retriedSendHoldsTheConsumerScopeUntilItsLastAttemptTerminates() throws Exception {
+        CompletableFuture<Void> done = inConsumerScope(producer -> producer
+                .produceAccountingCDRBytes("retried", new byte[]{1})
+                .onFailure().retry().atMost(1)
+                .subscribe().with(item -> { }, failure -> { }));
+
+        assertThat(cdrs).hasSize(2);
+        assertThat(done).as("the retry is not acked yet").isNotDone();
+
+        cdrs.get(1).ack().toCompletableFuture().join();
+
+        assertThat(done).as("the nacked first attempt still fails the scope")
+                .failsWithin(AWAIT)
+                .withThrowableOfType(ExecutionException.class)
+                .withMessageContaining("broker unavailable");
+    }
+
+    @Test
+    void unsubscribedSendDoesNotHoldTheConsumerScope() throws Exception {
+        CompletableFuture<Void> done = inConsumerScope(producer ->
+                producer.produceAccountingCDRBytes("unsubscribed", new byte[]{1}));
+
+        assertThat(cdrs).isEmpty();
+        assertThat(done).succeedsWithin(AWAIT);
+    }
+
+    /**
+     * Run the sends in a pipelined consumer scope on a duplicated context, with a CDR broker that
+     * nacks the first message and holds the others in {@link #cdrs} until the test acks them.
+     * @return completion of the sealed scope
+     */
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<Void> inConsumerScope(Consumer<AccountProducer> sends) throws Exception {
+        Emitter<byte[]> cdrEmitter = mock(Emitter.class);
+        doAnswer(invocation -> {
+            Message<byte[]> message = invocation.getArgument(0);
+            cdrs.add(message);
+            if (cdrs.size() == 1) {
+                message.nack(new IllegalStateException("broker unavailable"));
+            }
+            return null;
+        }).when(cdrEmitter).send(any(Message.class));
+        MetricRegistry registry = mock(MetricRegistry.class, RETURNS_MOCKS);
+        AccountProducer pipelined = new AccountProducer(mock(Emitter.class), mock(Emitter.class), mock(Emitter.class),
+                cdrEmitter, AccountProducer.Mode.PIPELINED, ACK_TIMEOUT,
+                new OutboundSpool(registry, false, spoolDir.resolve("unused.spool").toString(), 1 << 20, 1000),
+                objectMapper, new ProducerMetrics(registry, 128), new FaultInjector(registry, false));
+
+        vertx = Vertx.vertx();
+        CompletableFuture<CompletionStage<Void>> sealed = new CompletableFuture<>();
+        Context context = VertxContext.createNewDuplicatedContext(vertx.getOrCreateContext());
+        context.runOnContext(v -> {
+            PendingAcks scope = PendingAcks.open();
+            sends.accept(pipelined);
+            sealed.complete(scope.seal());
+        });
+        return sealed.get(AWAIT.toSeconds(), TimeUnit.SECONDS).toCompletableFuture();
+    }
+
+    private UniAssertSubscriber<Void> produce(String sessionId) {
+        DBWriteRequest request = new DBWriteRequest();
+        request.setEventId(sessionId);
+        request.setEventType(EventType.UPDATE_EVENT);
+        request.setTimestamp(LocalDateTime.now());
+        request.setSessionId(sessionId);
+        request.setUserName("user");
+        request.setTableName("BUCKET_INSTANCE");
+        request.setColumnValues(Map.of("CURRENT_BALANCE", 10));
+        request.setWhereConditions(Map.of("ID", "1"));
+        return producer.produceDBWriteEvent(request)
+                .subscribe().withSubscriber(UniAssertSubscriber.create());
+    }
+
+    private SpoolRelay relay() {
+        return new SpoolRelay(spool, producer, metrics, 2, 8);
+    }
+}
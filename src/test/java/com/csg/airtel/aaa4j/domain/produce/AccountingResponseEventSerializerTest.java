@@ -0,0 +1,69 @@
+package com.csg.airtel.aaa4j.domain.produce;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingResponseEvent;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The templated encoding must be equivalent to what the ObjectMapper serializer writes. The
+ * outputs are compared as JSON trees: the template writes the attributes in a fixed order,
+ * Jackson in the unspecified iteration order of {@code Map.of}.
+ */
+class AccountingResponseEventSerializerTest {
+
+    // configured like the Quarkus ObjectMapper the serializer falls back to
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private final AccountingResponseEventSerializer serializer = new AccountingResponseEventSerializer(objectMapper);
+
+    static Stream<AccountingResponseEvent> events() {
+        LocalDateTime now = LocalDateTime.of(2026, 10, 19, 14, 3, 27, 123_456_789);
+        return Stream.of(
+                coa(now, "s-1", AccountingResponseEvent.ResponseAction.DISCONNECT, "Data quota is zero", 0L,
+                        attributes("alice", "s-1", "10.1.1.1", "100.64.0.7")),
+                coa(now, "s-2", AccountingResponseEvent.ResponseAction.FUP_APPLY, null, null, Map.of()),
+                // whole minute and whole second, which LocalDateTime.toString shortens
+                coa(LocalDateTime.of(2026, 10, 19, 14, 3), "s-3", AccountingResponseEvent.ResponseAction.SUCCESS,
+                        "ok", 42L, attributes("bob", "s-3", "10.1.1.2", "100.64.0.8")),
+                coa(LocalDateTime.of(2026, 10, 19, 14, 3, 5, 1_000_000), "s-4",
+                        AccountingResponseEvent.ResponseAction.INTERNAL_ERROR, "quote \" slash \\ tab \t line \n ctl \u0001",
+                        Long.MAX_VALUE, attributes("jürgen é中", "s-4\u0007", "10.1.1.3", "fe80::1")),
+                coa(now, "s-é", AccountingResponseEvent.ResponseAction.PACKAGE_UPGRADE, "café \"😀\"",
+                        -1L, attributes("carol", "s-é", "10.1.1.4", "100.64.0.9")),
+                // not templated: extra attribute, falls back to the ObjectMapper serializer
+                coa(now, "s-5", AccountingResponseEvent.ResponseAction.DISCONNECT, "fallback", 1L,
+                        Map.of("username", "dave", "sessionId", "s-5", "nasIP", "10.1.1.5", "framedIP", "100.64.0.10",
+                                "profile", "gold")));
+    }
+
+    @ParameterizedTest
+    @MethodSource("events")
+    void templatedOutputIsEquivalentToObjectMapper(AccountingResponseEvent event) throws IOException {
+        JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsBytes(event));
+        JsonNode actual = objectMapper.readTree(serializer.serialize("accounting-response", event));
+
+        assertThat(actual).isEqualTo(expected);
+    }
+
+    private static AccountingResponseEvent coa(LocalDateTime eventTime, String sessionId,
+                                               AccountingResponseEvent.ResponseAction action, String message,
+                                               Long quota, Map<String, String> attributes) {
+        return new AccountingResponseEvent(AccountingResponseEvent.EventType.COA, eventTime, sessionId, action,
+                message, quota, attributes);
+    }
+
+    private static Map<String, String> attributes(String username, String sessionId, String nasIp, String framedIp) {
+        return Map.of("username", username, "sessionId", sessionId, "nasIP", nasIp, "framedIP", framedIp);
+    }
+}
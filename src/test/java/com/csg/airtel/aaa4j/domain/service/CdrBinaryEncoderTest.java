@@ -0,0 +1,193 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.service.CdrSchemaStore.Field;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Binary CDRs: records decoded with the bundled schema carry the request's values, and a schema
+ * whose fields differ from the encoder in name, type, enum symbols or order is refused at startup.
+ */
+class CdrBinaryEncoderTest {
+
+    private static final Instant STARTED = Instant.parse("2026-10-19T08:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void interimRoundTripsThroughTheBundledSchema() {
+        CdrSchemaStore store = new CdrSchemaStore(objectMapper, Optional.empty());
+        AccountingRequestDto request = request(AccountingRequestDto.ActionType.INTERIM_UPDATE, "alice", -5);
+
+        long before = System.currentTimeMillis();
+        byte[] record = new CdrBinaryEncoder(store).encode(request, CdrMappingUtil.AccountingMetrics.forInterim(request));
+        Map<String, Object> decoded = decode(store, record);
+
+        assertThat(decoded.get("eventId")).asString().isNotBlank();
+        assertThat(decoded.get("eventType")).isEqualTo("ACCOUNTING_INTERIM");
+        assertThat((Long) decoded.get("eventTimestamp")).isGreaterThanOrEqualTo(before);
+        assertThat(decoded).containsEntry("sessionId", "s-1")
+                .containsEntry("sessionTime", 600L)
+                .containsEntry("startTime", STARTED.toEpochMilli())
+                .containsEntry("nasIdentifier", "nas-1")
+                .containsEntry("nasIpAddress", "10.0.0.1")
+                .containsEntry("nasPort", null)
+                .containsEntry("sessionStopTime", null)
+                .containsEntry("userName", "alice")
+                .containsEntry("framedIpAddress", "100.64.0.1")
+                .containsEntry("acctInputOctets", 1_500L)
+                .containsEntry("acctOutputOctets", -5L)
+                .containsEntry("acctInputGigawords", 2L)
+                .containsEntry("acctOutputGigawords", 0L);
+        assertThat(decoded.keySet()).containsExactlyElementsOf(
+                store.fields().stream().map(Field::name).toList());
+    }
+
+    @Test
+    void stopCarriesItsStopTimeAndNonAsciiStrings() {
+        CdrSchemaStore store = new CdrSchemaStore(objectMapper, Optional.empty());
+        AccountingRequestDto request = request(AccountingRequestDto.ActionType.STOP, "zoë@例え", 7);
+
+        Map<String, Object> decoded = decode(store, new CdrBinaryEncoder(store)
+                .encode(request, CdrMappingUtil.AccountingMetrics.forStop(request)));
+
+        assertThat(decoded).containsEntry("eventType", "ACCOUNTING_STOP")
+                .containsEntry("sessionStopTime", STARTED.toEpochMilli())
+                .containsEntry("userName", "zoë@例え")
+                .containsEntry("acctOutputOctets", 7L);
+    }
+
+    @Test
+    void bundledSchemaMatchesTheEncoder() {
+        assertThat(CdrBinaryEncoder.mismatch(new CdrSchemaStore(objectMapper, Optional.empty()).fields())).isNull();
+    }
+
+    @Test
+    void schemaWithAChangedTypeIsRefused() throws IOException {
+        CdrSchemaStore store = schema(fields -> ((ObjectNode) fields.get(4)).put("type", "string"));
+
+        assertThatThrownBy(() -> new CdrBinaryEncoder(store))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("field 4");
+    }
+
+    @Test
+    void schemaWithReorderedFieldsIsRefused() throws IOException {
+        CdrSchemaStore store = schema(fields -> fields.insert(13, fields.remove(14)));
+
+        assertThatThrownBy(() -> new CdrBinaryEncoder(store))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("field 13");
+    }
+
+    @Test
+    void schemaWithReorderedEnumSymbolsIsRefused() throws IOException {
+        CdrSchemaStore store = schema(fields -> {
+            ArrayNode symbols = (ArrayNode) fields.get(1).get("symbols");
+            symbols.insert(0, symbols.remove(1));
+        });
+
+        assertThatThrownBy(() -> new CdrBinaryEncoder(store))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("field 1");
+    }
+
+    @Test
+    void schemaWithAnExtraFieldIsRefused() throws IOException {
+        CdrSchemaStore store = schema(fields -> fields.addObject().put("name", "extra").put("type", "string"));
+
+        assertThatThrownBy(() -> new CdrBinaryEncoder(store))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("field 17");
+    }
+
+    /**
+     * A copy of the bundled schema with its fields edited, loaded through {@code cdr.schema.path}.
+     */
+    private CdrSchemaStore schema(Consumer<ArrayNode> edit) throws IOException {
+        ObjectNode schema;
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream("cdr/accounting-cdr-v1.json")) {
+            schema = (ObjectNode) objectMapper.readTree(in);
+        }
+        edit.accept((ArrayNode) schema.get("fields"));
+        Path file = dir.resolve("schema.json");
+        Files.write(file, objectMapper.writeValueAsBytes(schema));
+        return new CdrSchemaStore(objectMapper, Optional.of(file.toString()));
+    }
+
+    /**
+     * Reads a record the way a consumer holding the schema would.
+     */
+    private static Map<String, Object> decode(CdrSchemaStore store, byte[] record) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        assertThat(in.get()).isEqualTo(CdrBinaryEncoder.MAGIC_BYTE);
+        assertThat(in.getInt()).isEqualTo(store.schemaId());
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (Field field : store.fields()) {
+            values.put(field.name(), switch (field.type()) {
+                case CdrBinaryEncoder.STRING -> readString(in);
+                case CdrBinaryEncoder.VARINT -> {
+                    long zigzag = readUnsigned(in);
+                    yield (zigzag >>> 1) ^ -(zigzag & 1);
+                }
+                case CdrBinaryEncoder.TIMESTAMP -> {
+                    long millis = readUnsigned(in);
+                    yield millis == 0 ? null : millis - 1;
+                }
+                case CdrBinaryEncoder.ENUM -> field.symbols().get((int) readUnsigned(in));
+                default -> throw new IllegalArgumentException("unknown type " + field.type());
+            });
+        }
+        assertThat(in.hasRemaining()).as("trailing bytes").isFalse();
+        return values;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = (int) readUnsigned(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long readUnsigned(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static AccountingRequestDto request(AccountingRequestDto.ActionType action, String userName, int outputOctets) {
+        return new AccountingRequestDto("evt-1", "s-1", "10.0.0.1", userName, action,
+                1_500, outputOctets, 600, STARTED, null, "100.64.0.1", 0, 2, 0, "nas-1");
+    }
+}
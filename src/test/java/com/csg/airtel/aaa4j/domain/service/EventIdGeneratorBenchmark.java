@@ -0,0 +1,48 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event id generation under contention: {@link EventIdGenerator} against the
+ * {@code UUID.randomUUID()} it replaced, from one thread per core. Not run by the build; start
+ * it with {@link #main} from the test classpath, e.g.
+ * {@code java -cp target/test-classes:<test classpath> org.openjdk.jmh.Main EventIdGeneratorBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventIdGeneratorBenchmark {
+
+    @Benchmark
+    public String eventIdGenerator() {
+        return EventIdGenerator.nextId();
+    }
+
+    @Benchmark
+    public String randomUuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(EventIdGeneratorBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
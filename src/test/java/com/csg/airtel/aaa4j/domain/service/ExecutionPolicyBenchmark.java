@@ -0,0 +1,123 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.domain.profiling.AllocationProfiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bucket selection under each {@link ExecutionPolicy.Mode}: throughput, and the latency
+ * distribution (p99 and above in the SampleTime report) including the thread hop. Outside
+ * Quarkus, WORKER_POOL offloads to Mutiny's default executor rather than the Quarkus worker
+ * pool, so its numbers only approximate the deployed service. Not run by the build; start it
+ * with {@link #main} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutionPolicyBenchmark {
+
+    private static final int BUCKETS = 10;
+
+    @Param({"INLINE", "WORKER_POOL", "VIRTUAL_THREADS"})
+    public ExecutionPolicy.Mode mode;
+
+    private ExecutionPolicy policy;
+    private AccountingUtil accountingUtil;
+
+    /**
+     * One subscriber per benchmark thread, so the cached selection index is not shared.
+     */
+    @State(Scope.Thread)
+    public static class Subscriber {
+
+        String userName;
+        UserSessionData userData;
+        List<Balance> balances;
+        LocalDateTime now;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            now = LocalDateTime.now();
+            balances = new ArrayList<>(BUCKETS);
+            for (int i = 0; i < BUCKETS; i++) {
+                Balance balance = new Balance();
+                balance.setBucketId("bucket-" + i);
+                balance.setServiceId("service-" + i);
+                balance.setPriority((long) (i % 3));
+                balance.setQuota(1_000_000_000L);
+                balance.setInitialBalance(1_000_000_000L);
+                balance.setServiceStatus("Active");
+                balance.setServiceStartDate(now.minusDays(1));
+                balance.setServiceExpiry(now.plusDays(30));
+                balance.setBucketExpiryDate(now.plusDays(30));
+                balance.setTimeWindow("00-24");
+                balances.add(balance);
+            }
+            userName = "bench-user-" + Thread.currentThread().threadId();
+            userData = UserSessionData.builder()
+                    .userName(userName)
+                    .balance(balances)
+                    .build();
+            userData.bucketsChanged();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        policy = new ExecutionPolicy(mode);
+        QuotaGrantManager quotaGrantManager = new QuotaGrantManager(true, 52_428_800L,
+                Duration.ofMinutes(15), Duration.ofMinutes(15));
+        // sampling disabled, the registry is never read
+        AllocationProfiler allocationProfiler = new AllocationProfiler(null, 0);
+        accountingUtil = new AccountingUtil(null, null, Clock.systemDefaultZone(), quotaGrantManager, null,
+                policy, null, allocationProfiler, null, null);
+        // Mutiny sets up context propagation lazily on first use, which races between benchmark threads
+        policy.run(() -> mode).await().indefinitely();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        policy.shutdown();
+    }
+
+    @Benchmark
+    public Balance selectBucket(Subscriber subscriber) {
+        return accountingUtil.findBalanceWithHighestPriority(subscriber.userName, subscriber.balances,
+                subscriber.userData.getBucketsVersion(), null, null, subscriber.now).await().indefinitely();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExecutionPolicyBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,188 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.AccountingRequestDto;
+import com.csg.airtel.aaa4j.domain.model.session.CdrAggregation;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Interim CDR aggregation: when an interim CDR is due, and that the deltas it carries add up to
+ * the cumulative counters of the session, across gigaword rollovers and up to its STOP.
+ */
+class InterimCdrPolicyTest {
+
+    private static final long GIGAWORD = 1L << 32;
+    private static final LocalDateTime START = LocalDateTime.of(2026, 10, 19, 8, 0);
+
+    private final Session session = new Session("s-1", START, null, 0, 0L, "100.64.0.1", "10.0.0.1",
+            null, null, "plan-1", 0L, 0L);
+
+    @Test
+    void disabledPolicyPassesCumulativeCountersThrough() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(false, 3, 0, Duration.ZERO);
+
+        InterimCdrPolicy.Interim interim = policy.onInterim(session, interim(60, 1_000, 2_000), START.plusMinutes(1));
+
+        assertThat(interim.state()).isNull();
+        assertThat(inputBytes(interim.metrics())).isEqualTo(1_000);
+        assertThat(outputBytes(interim.metrics())).isEqualTo(2_000);
+        assertThat(policy.flush(session, interim(60, 1_000, 2_000), START.plusMinutes(1))).isNull();
+    }
+
+    @Test
+    void emitsEveryNthInterimWithTheDeltasSinceTheLastCdr() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(true, 3, 0, Duration.ZERO);
+
+        assertThat(account(policy, 60, 100, 1_000, 1)).isNull();
+        assertThat(account(policy, 120, 200, 2_000, 2)).isNull();
+        CdrMappingUtil.AccountingMetrics third = account(policy, 180, 300, 3_000, 3);
+        assertThat(account(policy, 240, 400, 4_000, 4)).isNull();
+        assertThat(account(policy, 300, 500, 5_000, 5)).isNull();
+        CdrMappingUtil.AccountingMetrics sixth = account(policy, 360, 600, 6_000, 6);
+
+        assertThat(third.getSessionTime()).isEqualTo(180);
+        assertThat(inputBytes(third)).isEqualTo(300);
+        assertThat(outputBytes(third)).isEqualTo(3_000);
+        assertThat(sixth.getSessionTime()).isEqualTo(180);
+        assertThat(inputBytes(sixth)).isEqualTo(300);
+        assertThat(outputBytes(sixth)).isEqualTo(3_000);
+        assertThat(session.getCdrAggregation().getInterimsSinceEmit()).isZero();
+    }
+
+    @Test
+    void bytesThresholdEmitsBeforeTheNthInterim() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(true, 100, 10_000, Duration.ZERO);
+
+        assertThat(account(policy, 60, 4_000, 4_000, 1)).isNull();
+        CdrMappingUtil.AccountingMetrics metrics = account(policy, 120, 6_000, 4_000, 2);
+
+        assertThat(metrics).isNotNull();
+        assertThat(inputBytes(metrics) + outputBytes(metrics)).isEqualTo(10_000);
+    }
+
+    @Test
+    void maxIntervalEmitsBeforeTheNthInterim() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(true, 100, 0, Duration.ofMinutes(30));
+
+        assertThat(account(policy, 60, 100, 100, 29)).isNull();
+        CdrMappingUtil.AccountingMetrics metrics = account(policy, 120, 200, 200, 30);
+
+        assertThat(metrics).isNotNull();
+        assertThat(session.getCdrAggregation().getLastEmittedAt()).isEqualTo(START.plusMinutes(30));
+        assertThat(account(policy, 180, 300, 300, 31)).as("interval restarts at the emitted CDR").isNull();
+    }
+
+    @Test
+    void bucketChangeFlushesWhatWasAggregated() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(true, 10, 0, Duration.ZERO);
+        account(policy, 60, 100, 1_000, 1);
+        account(policy, 120, 250, 2_500, 2);
+
+        CdrMappingUtil.AccountingMetrics flushed = policy.flush(session, interim(120, 250, 2_500), START.plusMinutes(2));
+
+        assertThat(flushed.getSessionTime()).isEqualTo(120);
+        assertThat(inputBytes(flushed)).isEqualTo(250);
+        assertThat(outputBytes(flushed)).isEqualTo(2_500);
+        assertThat(session.getCdrAggregation().getInterimsSinceEmit()).isZero();
+        assertThat(policy.flush(session, interim(120, 250, 2_500), START.plusMinutes(2)))
+                .as("nothing pending after a flush").isNull();
+    }
+
+    @Test
+    void onInterimLeavesTheSessionUntouched() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(true, 1, 0, Duration.ZERO);
+        CdrAggregation before = new CdrAggregation(0, START, 60, 100L, 100L);
+        session.setCdrAggregation(before);
+
+        InterimCdrPolicy.Interim interim = policy.onInterim(session, interim(120, 300, 300), START.plusMinutes(2));
+
+        assertThat(interim.metrics()).isNotNull();
+        assertThat(session.getCdrAggregation()).isSameAs(before);
+        assertThat(before.getLastInputBytes()).isEqualTo(100L);
+        assertThat(interim.state()).isNotSameAs(before);
+        assertThat(interim.state().getLastInputBytes()).isEqualTo(300L);
+    }
+
+    @Test
+    void deltasAddUpToTheStopCountersAcrossGigawordRollover() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(true, 2, 0, Duration.ZERO);
+        long emittedInput = 0;
+        long emittedOutput = 0;
+
+        assertThat(account(policy, 600, 3 * GIGAWORD + 7, GIGAWORD, 10)).isNull();
+        CdrMappingUtil.AccountingMetrics first = account(policy, 1_200, 5 * GIGAWORD + 11, 2 * GIGAWORD, 20);
+        emittedInput += inputBytes(first);
+        emittedOutput += outputBytes(first);
+        assertThat(first.getInputGigawords()).isEqualTo(5);
+        assertThat(first.getInputOctets()).isEqualTo(11L);
+
+        // aggregated but not emitted when the session stops
+        assertThat(account(policy, 1_800, 6 * GIGAWORD, 2 * GIGAWORD + 5, 30)).isNull();
+
+        AccountingRequestDto stop = request(AccountingRequestDto.ActionType.STOP, 2_000, 6 * GIGAWORD + 3, 2 * GIGAWORD + 9);
+        CdrMappingUtil.AccountingMetrics stopMetrics = CdrMappingUtil.AccountingMetrics.forStop(stop);
+        CdrAggregation state = session.getCdrAggregation();
+
+        assertThat(inputBytes(stopMetrics)).as("STOP carries cumulative counters").isEqualTo(6 * GIGAWORD + 3);
+        assertThat(emittedInput).isEqualTo(state.getLastInputBytes());
+        assertThat(emittedOutput).isEqualTo(state.getLastOutputBytes());
+        assertThat(inputBytes(stopMetrics) - emittedInput).isEqualTo(GIGAWORD - 8);
+        assertThat(outputBytes(stopMetrics) - emittedOutput).isEqualTo(9);
+    }
+
+    @Test
+    void countersGoingBackwardsRebaselineWithAnEmptyDelta() {
+        InterimCdrPolicy policy = new InterimCdrPolicy(true, 1, 0, Duration.ZERO);
+        account(policy, 600, 5_000, 5_000, 10);
+
+        CdrMappingUtil.AccountingMetrics reset = account(policy, 60, 100, 100, 11);
+        CdrMappingUtil.AccountingMetrics next = account(policy, 120, 400, 300, 12);
+
+        assertThat(reset.getSessionTime()).isZero();
+        assertThat(inputBytes(reset)).isZero();
+        assertThat(outputBytes(reset)).isZero();
+        assertThat(inputBytes(next)).isEqualTo(300);
+        assertThat(outputBytes(next)).isEqualTo(200);
+    }
+
+    /**
+     * Account an interim sent {@code minute} minutes into the session, committing the new
+     * aggregation state the way the interim handler does after a successful update.
+     */
+    private CdrMappingUtil.AccountingMetrics account(InterimCdrPolicy policy, int sessionTime, long input, long output,
+                                                     int minute) {
+        InterimCdrPolicy.Interim interim = policy.onInterim(session, interim(sessionTime, input, output),
+                START.plusMinutes(minute));
+        session.setCdrAggregation(interim.state());
+        return interim.metrics();
+    }
+
+    private static AccountingRequestDto interim(int sessionTime, long input, long output) {
+        return request(AccountingRequestDto.ActionType.INTERIM_UPDATE, sessionTime, input, output);
+    }
+
+    private static AccountingRequestDto request(AccountingRequestDto.ActionType action, int sessionTime,
+                                                long input, long output) {
+        return new AccountingRequestDto("evt-" + sessionTime, "s-1", "10.0.0.1", "alice", action,
+                (int) input, (int) output, sessionTime, Instant.parse("2026-10-19T08:00:00Z"), "port-1",
+                "100.64.0.1", 0, (int) (input >>> 32), (int) (output >>> 32), "nas-1");
+    }
+
+    private static long inputBytes(CdrMappingUtil.AccountingMetrics metrics) {
+        return bytes(metrics.getInputGigawords(), metrics.getInputOctets());
+    }
+
+    private static long outputBytes(CdrMappingUtil.AccountingMetrics metrics) {
+        return bytes(metrics.getOutputGigawords(), metrics.getOutputOctets());
+    }
+
+    private static long bytes(Integer gigawords, Long octets) {
+        return Integer.toUnsignedLong(gigawords) * GIGAWORD + (octets & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,195 @@
+package com.csg.airtel.aaa4j.domain.service;
+
+import com.csg.airtel.aaa4j.domain.model.DBWriteRequest;
+import com.csg.airtel.aaa4j.domain.model.response.NasTermination;
+import com.csg.airtel.aaa4j.domain.model.session.Balance;
+import com.csg.airtel.aaa4j.domain.model.session.Session;
+import com.csg.airtel.aaa4j.domain.model.session.SessionIndex;
+import com.csg.airtel.aaa4j.domain.model.session.UserSessionData;
+import com.csg.airtel.aaa4j.domain.produce.AccountProducer;
+import com.csg.airtel.aaa4j.domain.profiling.AllocationProfiler;
+import com.csg.airtel.aaa4j.external.clients.CacheClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient.SessionPage;
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient.SessionRef;
+import io.smallrye.mutiny.Uni;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_MOCKS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Closing the sessions of a NAS: the SSCAN walk over the NAS index, and the close of each
+ * user's sessions through the real balance write path, with Redis, Kafka and the index mocked.
+ */
+class NasSessionTerminatorTest {
+
+    private static final String NAS = "10.0.0.1";
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2026, 10, 19, 8, 0);
+
+    private final Map<String, UserSessionData> documents = new HashMap<>();
+    private final Map<String, UserSessionData> written = new HashMap<>();
+    private SessionIndexClient indexClient;
+    private AccountProducer producer;
+    private CdrWriter cdrWriter;
+    private NasSessionTerminator terminator;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        indexClient = mock(SessionIndexClient.class);
+        when(indexClient.removeNasSessions(anyString(), anyCollection())).thenReturn(Uni.createFrom().voidItem());
+        CacheClient cacheClient = mock(CacheClient.class);
+        when(cacheClient.getUserData(anyString())).thenAnswer(invocation ->
+                Uni.createFrom().item(documents.get(invocation.<String>getArgument(0))));
+        when(cacheClient.updateUserAndRelatedCaches(anyString(), any())).thenAnswer(invocation -> {
+            written.put(invocation.getArgument(0), invocation.getArgument(1));
+            return Uni.createFrom().voidItem();
+        });
+        producer = mock(AccountProducer.class);
+        when(producer.produceDBWriteEvent(any())).thenReturn(Uni.createFrom().voidItem());
+        UserMutationMailbox mailbox = mock(UserMutationMailbox.class);
+        when(mailbox.submit(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<Uni<?>>>getArgument(1).get());
+        cdrWriter = mock(CdrWriter.class);
+        MetricRegistry registry = mock(MetricRegistry.class, RETURNS_MOCKS);
+
+        Clock clock = Clock.fixed(CUTOFF.plusMinutes(1).atZone(ZoneId.systemDefault()).toInstant(), ZoneId.systemDefault());
+        QuotaGrantManager quotaGrantManager = new QuotaGrantManager(true, 52_428_800L,
+                Duration.ofMinutes(15), Duration.ofMinutes(15));
+        AccountingUtil accountingUtil = new AccountingUtil(producer, cacheClient, clock, quotaGrantManager,
+                mock(CoaDispatcher.class), new ExecutionPolicy(ExecutionPolicy.Mode.INLINE), mock(SessionStatistics.class),
+                new AllocationProfiler(registry, 0), mock(ActiveSessionIndex.class), mock(GroupBalanceWriter.class));
+        terminator = new NasSessionTerminator(indexClient, cacheClient, accountingUtil, mailbox, cdrWriter,
+                mock(SessionStatistics.class), mock(ActiveSessionIndex.class), registry, 4, 2);
+    }
+
+    @Test
+    void walksEveryPageOfTheNasIndexUntilTheCursorWraps() {
+        documents.put("alice", user("alice", session("s-1", NAS, CUTOFF.minusHours(1))));
+        documents.put("bob", user("bob", session("s-2", NAS, CUTOFF.minusHours(2))));
+        documents.put("carol", user("carol", session("s-3", NAS, CUTOFF.minusHours(3))));
+        page("0", "17", new SessionRef("alice", "s-1"), new SessionRef("bob", "s-2"));
+        page("17", "42", new SessionRef("carol", "s-3"));
+        page("42", "0");
+
+        NasTermination result = terminator.terminate(NAS, CUTOFF).await().indefinitely();
+
+        assertThat(result.closedSessions()).isEqualTo(3);
+        assertThat(result.failedSessions()).isZero();
+        verify(indexClient).scanNasSessions(NAS, "17", 2);
+        verify(indexClient).scanNasSessions(NAS, "42", 2);
+        verify(indexClient, times(3)).scanNasSessions(eq(NAS), anyString(), anyInt());
+        assertThat(written).containsOnlyKeys("alice", "bob", "carol");
+    }
+
+    @Test
+    void closesAUsersSessionsWithOneBucketWriteAndAStopCdrEach() {
+        Balance bucket = balance("b-1", "alice");
+        Session first = session("s-1", NAS, CUTOFF.minusHours(2));
+        Session second = session("s-2", NAS, CUTOFF.minusHours(1));
+        Session afterReboot = session("s-3", NAS, CUTOFF.plusSeconds(30));
+        Session moved = session("s-4", "10.0.0.2", CUTOFF.minusHours(1));
+        first.setPreviousUsageBucketId("b-1");
+        second.setPreviousUsageBucketId("b-1");
+        documents.put("alice", user("alice", bucket, first, second, afterReboot, moved));
+        page("0", "0", new SessionRef("alice", "s-1"), new SessionRef("alice", "s-2"),
+                new SessionRef("alice", "s-3"), new SessionRef("alice", "s-4"), new SessionRef("alice", "s-5"));
+
+        NasTermination result = terminator.terminate(NAS, CUTOFF).await().indefinitely();
+
+        assertThat(result.closedSessions()).isEqualTo(2);
+        assertThat(result.keptSessions()).isEqualTo(1);
+        assertThat(result.staleEntries()).isEqualTo(2);
+
+        ArgumentCaptor<DBWriteRequest> writes = ArgumentCaptor.forClass(DBWriteRequest.class);
+        verify(producer).produceDBWriteEvent(writes.capture());
+        DBWriteRequest write = writes.getValue();
+        assertThat(write.getTableName()).isEqualTo("BUCKET_INSTANCE");
+        assertThat(write.getSessionId()).isEqualTo("s-1");
+        assertThat(write.getUserName()).isEqualTo("alice");
+        assertThat(write.getWhereConditions()).containsEntry("ID", "b-1");
+        assertThat(write.getColumnValues()).containsEntry("CURRENT_BALANCE", 700L)
+                .containsEntry("USAGE", 300L)
+                .containsEntry("UPDATED_AT", CUTOFF.plusMinutes(1));
+
+        UserSessionData stored = written.get("alice");
+        assertThat(stored.getSessions().contains(first)).isFalse();
+        assertThat(stored.getSessions().contains(second)).isFalse();
+        assertThat(stored.getSessions().contains(afterReboot)).isTrue();
+        assertThat(stored.getSessions().contains(moved)).isTrue();
+        verify(cdrWriter, times(2)).write(any(), any(), any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SessionRef>> stale = ArgumentCaptor.forClass(List.class);
+        verify(indexClient).removeNasSessions(eq(NAS), stale.capture());
+        assertThat(stale.getValue()).containsExactly(new SessionRef("alice", "s-4"), new SessionRef("alice", "s-5"));
+    }
+
+    @Test
+    void userWithoutSessionsToCloseIsNotWritten() {
+        documents.put("alice", user("alice", session("s-1", NAS, CUTOFF.plusMinutes(5))));
+        page("0", "0", new SessionRef("alice", "s-1"));
+
+        NasTermination result = terminator.terminate(NAS, CUTOFF).await().indefinitely();
+
+        assertThat(result.keptSessions()).isEqualTo(1);
+        assertThat(written).isEmpty();
+        verify(producer, never()).produceDBWriteEvent(any());
+    }
+
+    private void page(String cursor, String next, SessionRef... sessions) {
+        when(indexClient.scanNasSessions(NAS, cursor, 2))
+                .thenReturn(Uni.createFrom().item(new SessionPage(next, List.of(sessions))));
+    }
+
+    private static UserSessionData user(String userName, Session... sessions) {
+        return user(userName, balance("b-" + userName, userName), sessions);
+    }
+
+    private static UserSessionData user(String userName, Balance balance, Session... sessions) {
+        return UserSessionData.builder()
+                .userName(userName)
+                .balance(new ArrayList<>(List.of(balance)))
+                .sessions(new SessionIndex(List.of(sessions)))
+                .build();
+    }
+
+    private static Balance balance(String bucketId, String owner) {
+        Balance balance = new Balance();
+        balance.setBucketId(bucketId);
+        balance.setServiceId("service-1");
+        balance.setBucketUsername(owner);
+        balance.setQuota(700L);
+        balance.setInitialBalance(1_000L);
+        return balance;
+    }
+
+    private static Session session(String sessionId, String nasIp, LocalDateTime startedAt) {
+        return new Session(sessionId, startedAt, null, 600, 300L, "100.64.0.1", nasIp,
+                null, null, "plan-1", 100L, 200L);
+    }
+}
@@ -0,0 +1,38 @@
+package com.csg.airtel.aaa4j.external.clients;
+
+import io.smallrye.config.SmallRyeConfig;
+import io.smallrye.config.SmallRyeConfigBuilder;
+import io.smallrye.config.source.yaml.YamlConfigSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URL;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The fault tolerance overrides of CacheClient.getUserData in application.yml must flatten to the
+ * {@code quarkus.fault-tolerance."<class>/<method>".*} names the extension reads.
+ */
+class CacheClientFaultToleranceConfigTest {
+
+    private static final String PREFIX =
+            "quarkus.fault-tolerance.\"com.csg.airtel.aaa4j.external.clients.CacheClient/getUserData\".";
+
+    @Test
+    void getUserDataOverridesResolve() throws IOException {
+        URL yaml = getClass().getClassLoader().getResource("application.yml");
+        SmallRyeConfig config = new SmallRyeConfigBuilder()
+                .withSources(new YamlConfigSource(yaml))
+                .build();
+
+        assertThat(config.getValue(PREFIX + "circuit-breaker.request-volume-threshold", Integer.class)).isEqualTo(10);
+        assertThat(config.getValue(PREFIX + "circuit-breaker.failure-ratio", Double.class)).isEqualTo(0.5);
+        assertThat(config.getValue(PREFIX + "circuit-breaker.delay", Long.class)).isEqualTo(5000L);
+        assertThat(config.getValue(PREFIX + "circuit-breaker.success-threshold", Integer.class)).isEqualTo(2);
+        assertThat(config.getValue(PREFIX + "retry.max-retries", Integer.class)).isEqualTo(2);
+        assertThat(config.getValue(PREFIX + "retry.delay", Long.class)).isEqualTo(100L);
+        assertThat(config.getValue(PREFIX + "retry.max-duration", Long.class)).isEqualTo(5000L);
+        assertThat(config.getValue(PREFIX + "timeout.value", Long.class)).isEqualTo(5000L);
+    }
+}
@@ -0,0 +1,33 @@
+package com.csg.airtel.aaa4j.external.clients;
+
+import com.csg.airtel.aaa4j.external.clients.SessionIndexClient.SessionRef;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Set members of the session indexes: user names and session ids holding the separator or the
+ * escape character must split back into the same pair.
+ */
+class SessionIndexClientMemberTest {
+
+    @Test
+    void separatorAndEscapeRoundTrip() {
+        SessionRef[] refs = {
+                new SessionRef("alice", "s-1"),
+                new SessionRef("ali|ce", "s|1"),
+                new SessionRef("a\\|", "|\\"),
+                new SessionRef("bob\\", "s-2\\")
+        };
+        for (SessionRef ref : refs) {
+            assertThat(SessionIndexClient.toSessionRef(SessionIndexClient.member(ref))).isEqualTo(ref);
+        }
+    }
+
+    @Test
+    void membersWrittenBeforeEscapingStillParse() {
+        assertThat(SessionIndexClient.toSessionRef("alice|s-1")).isEqualTo(new SessionRef("alice", "s-1"));
+        assertThat(SessionIndexClient.toSessionRef("alice")).isNull();
+        assertThat(SessionIndexClient.toSessionRef("|s-1")).isNull();
+    }
+}